@@ -1,12 +1,38 @@
 package sba.sms;
 
+import sba.sms.dao.CourseI;
+import sba.sms.dao.StudentI;
 import sba.sms.models.Course;
+import sba.sms.models.EnrollmentStatus;
 import sba.sms.models.Student;
+import sba.sms.services.CachedCourseService;
+import sba.sms.services.CachedStudentService;
 import sba.sms.services.CourseService;
+import sba.sms.services.EnrollmentReplay;
+import sba.sms.services.IndexedCourseService;
+import sba.sms.services.IndexedStudentService;
+import sba.sms.services.InstrumentedCourseService;
+import sba.sms.services.InstrumentedStudentService;
+import sba.sms.services.OutboxRelay;
+import sba.sms.services.ReportService;
 import sba.sms.services.StudentService;
 import sba.sms.utils.CommandLine;
+import sba.sms.utils.EnrollmentIndex;
+import sba.sms.utils.EventLog;
+import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.SchemaMigrator;
 
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
@@ -18,7 +44,17 @@ import java.util.Scanner;
  * App uses <br />
  * Initialize dummy data: {@link CommandLine#addData()} <br />
  * Two models: {@link Student} & {@link Course} <br />
- * Two services: {@link StudentService} & {@link CourseService}
+ * Two services: {@link StudentService} & {@link CourseService},
+ * the course catalog is read through {@link CachedCourseService} and searched through
+ * {@link IndexedCourseService}, student profiles through {@link CachedStudentService}. The courses of a
+ * student are listed from the {@link EnrollmentIndex} loaded at startup and kept current by
+ * {@link IndexedStudentService}. Every call is
+ * timed by {@link InstrumentedStudentService} & {@link InstrumentedCourseService} <br />
+ * Run with '--batch [file] [--tx-size N]' to read commands from a file or stdin, see {@link BatchRunner},
+ * or with '--export-roster [file]' to write every enrollment as CSV to a file or stdout, see {@link ReportService},
+ * or with '--migrate' to apply the pending schema scripts of the profile's database, see {@link SchemaMigrator},
+ * or with '--relay dir' to move the outbox events of the profile's database to the event log in dir until stopped,
+ * see {@link OutboxRelay}, or with '--replay dir' to print the enrollment state rebuilt from that log, see {@link EnrollmentReplay}
  *
  *
  * <b style="color:red">WARNING! </b>
@@ -29,19 +65,53 @@ import java.util.Scanner;
  */
 
 public class App {
-    static final  StudentService studentService = new StudentService();
-    static final  CourseService courseService = new CourseService();
+    static StudentI studentService;
+    static EnrollmentIndex enrollmentIndex;
+    static final  CourseI courseService = new InstrumentedCourseService(new CachedCourseService(new IndexedCourseService(new CourseService())));
+    static final int COURSE_PAGE_SIZE = 50;
+    static final String EXPORT_ROSTER_FLAG = "--export-roster";
+    static final String MIGRATE_FLAG = "--migrate";
+    static final String RELAY_FLAG = "--relay";
+    static final String REPLAY_FLAG = "--replay";
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && BatchRunner.BATCH_FLAG.equals(args[0])) {
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && EXPORT_ROSTER_FLAG.equals(args[0])) {
+            exportRoster(args.length > 1 ? args[1] : "-");
+            return;
+        }
+        if (args.length > 0 && MIGRATE_FLAG.equals(args[0])) {
+            migrate();
+            return;
+        }
+        if (args.length > 1 && RELAY_FLAG.equals(args[0])) {
+            relay(args[1]);
+            return;
+        }
+        if (args.length > 1 && REPLAY_FLAG.equals(args[0])) {
+            replay(args[1]);
+            return;
+        }
 
 //       CommandLine.addData();
 
+        enrollmentIndex = EnrollmentIndex.load();
+        studentService = new InstrumentedStudentService(new CachedStudentService(
+                new IndexedStudentService(new StudentService(), enrollmentIndex)));
+
         Scanner input = new Scanner(System.in);
         int userInput;
         do {
-            System.out.printf("Select # from menu:%n1.Student%n2.Quit%n");
+            System.out.printf("Select # from menu:%n1.Student%n2.Quit%n3.Metrics%n4.Reports%n");
             userInput = input.nextInt();
-            if (userInput == 1) {
+            if (userInput == 3) {
+                CommandLine.printServiceMetrics();
+            } else if (userInput == 4) {
+                CommandLine.printReports();
+            } else if (userInput == 1) {
                 System.out.print("Enter student email: ");
                 String email = input.next();
                 System.out.printf("Enter %s's password: ", email.substring(0, email.indexOf("@")));
@@ -53,21 +123,26 @@ public class App {
                     if (userInput == 2) {
                         System.exit(0);
                     } else {
-                        List<Course> courseList = courseService.getAllCourses();
-                        System.out.printf("All courses:%n-----------------------------%n");
-                        System.out.printf("%-2s | %-20s | %s%n", "ID", "Course", "Instructor");
-                        if (courseList.isEmpty()) System.out.printf("No courses to view%n");
-                        for (Course course : courseList) {
-                            System.out.printf("%-2d | %-20s | %s%n", course.getId(), course.getName(), course.getInstructor());
+                        input.nextLine();
+                        System.out.print("search courses by name or instructor (blank for all): ");
+                        String query = input.nextLine().trim();
+                        if (query.isEmpty()) {
+                            printAllCourses();
+                        } else {
+                            printCourses(query, courseService.searchCourses(query, COURSE_PAGE_SIZE));
                         }
                         System.out.print("select course #: ");
                         int courseId = input.nextInt();
-                        if (courseId > 0 && courseId <= courseList.size()) {
-                            studentService.registerStudentToCourse(email, (courseId));
-                            System.out.printf("successfully register %s to %s%n", studentService.getStudentByEmail(email).getName(), courseService.getCourseById(courseId).getName());
-                            printStudentCourses(email);
-                        } else {
+                        EnrollmentStatus status = courseId > 0 ? studentService.registerStudentToCourse(email, (courseId)) : EnrollmentStatus.UNKNOWN_COURSE;
+                        if (status == EnrollmentStatus.UNKNOWN_COURSE) {
                             System.out.printf("course id not found!%n");
+                        } else {
+                            if (status == EnrollmentStatus.COURSE_FULL) {
+                                System.out.printf("%s is full!%n", courseService.getCourseById(courseId).getName());
+                            } else {
+                                System.out.printf("successfully register %s to %s%n", studentService.getStudentByEmail(email).getName(), courseService.getCourseById(courseId).getName());
+                            }
+                            printStudentCourses(email);
                         }
                         System.out.printf("session ended!%n");
                     }
@@ -79,12 +154,90 @@ public class App {
         input.close();
     }
 
+    // Builds the session factory with migrations on, which applies the pending scripts before validating
+    private static void migrate() {
+        System.setProperty(SchemaMigrator.MIGRATE_PROPERTY, "true");
+        try {
+            HibernateUtil.getSessionFactory();
+            System.err.printf("# schema of profile %s is at version %d%n", HibernateUtil.getProfile(), SchemaMigrator.latestVersion());
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    // Relays the outbox to the log in the directory until the JVM is stopped
+    private static void relay(String directory) {
+        EventLog log = EventLog.open(Paths.get(directory));
+        OutboxRelay relay = new OutboxRelay(log);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            relay.close();
+            log.close();
+        }, "outbox-relay-shutdown"));
+        System.err.printf("# relaying the outbox of profile %s to %s from offset %d%n",
+                HibernateUtil.getProfile(), directory, log.getEndOffset());
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Prints the enrollment per course rebuilt from the log in the directory
+    private static void replay(String directory) {
+        EnrollmentReplay replay = EnrollmentReplay.of(Paths.get(directory));
+        System.out.printf("%-4s | %s%n", "ID", "Enrolled");
+        for (Map.Entry<Integer, Integer> course : replay.getEnrolledPerCourse().entrySet()) {
+            System.out.printf("%-4d | %d%n", course.getKey(), course.getValue());
+        }
+        System.err.printf("# replayed %d events up to offset %d: %d students, %d courses, %d enrollments%n",
+                replay.getEvents(), replay.getOffset(), replay.getStudents().size(), replay.getCourses().size(),
+                replay.getEnrollmentCount());
+    }
+
+    // Streams the roster export to the file, or to stdout for '-', and prints the row count to stderr
+    private static void exportRoster(String file) throws IOException {
+        OutputStream stream = "-".equals(file) ? System.out : new FileOutputStream(file);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16)) {
+            System.err.printf("# exported %d enrollments%n", new ReportService().exportRoster(out));
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    // Prints the catalog one keyset page at a time so memory does not grow with the table
+    private static void printAllCourses() {
+        System.out.printf("All courses:%n-----------------------------%n");
+        System.out.printf("%-2s | %-20s | %s%n", "ID", "Course", "Instructor");
+        int afterId = 0;
+        List<Course> page = courseService.getCoursesPage(afterId, COURSE_PAGE_SIZE);
+        if (page.isEmpty()) System.out.printf("No courses to view%n");
+        while (!page.isEmpty()) {
+            for (Course course : page) {
+                System.out.printf("%-2d | %-20s | %s%n", course.getId(), course.getName(), course.getInstructor());
+            }
+            afterId = page.get(page.size() - 1).getId();
+            page = page.size() < COURSE_PAGE_SIZE ? List.of() : courseService.getCoursesPage(afterId, COURSE_PAGE_SIZE);
+        }
+    }
+
+    private static void printCourses(String query, List<Course> courses) {
+        System.out.printf("Courses matching '%s':%n-----------------------------%n", query);
+        System.out.printf("%-2s | %-20s | %s%n", "ID", "Course", "Instructor");
+        if (courses.isEmpty()) System.out.printf("No courses to view%n");
+        for (Course course : courses) {
+            System.out.printf("%-2d | %-20s | %s%n", course.getId(), course.getName(), course.getInstructor());
+        }
+    }
+
+    // Lists the student's courses from the enrollment index and the cached catalog, without a join query
     private static void printStudentCourses(String email) {
         System.out.printf("%s courses:%n-----------------------------%n", email);
         System.out.printf("%-2s | %-20s | %s%n", "ID", "Course", "Instructor");
-        List<Course> userCourses = studentService.getStudentCourses(email);
-        if (userCourses.isEmpty()) System.out.printf("No courses to view%n");
-        for (Course course : userCourses) {
+        int[] courseIds = enrollmentIndex.getCourseIds(email);
+        Arrays.sort(courseIds);
+        if (courseIds.length == 0) System.out.printf("No courses to view%n");
+        for (int courseId : courseIds) {
+            Course course = courseService.getCourseById(courseId);
             System.out.printf("%-2d | %-20s | %s%n", course.getId(), course.getName(), course.getInstructor());
         }
     }
@@ -0,0 +1,399 @@
+package sba.sms;
+
+import sba.sms.models.Course;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.services.BatchSession;
+import sba.sms.utils.HibernateUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BatchRunner is the non-interactive mode of the App. It reads one command per line
+ * from a file or stdin and writes the results as tab separated lines:
+ * <pre>
+ * login &lt;email&gt; &lt;password&gt;                 login  email  ok|denied
+ * list-courses                               course  id  name  instructor     (one per course)
+ * show-courses &lt;email&gt;                       student-course  email  id  name  instructor
+ * register &lt;email&gt; &lt;courseId&gt;              register  email  courseId  ADDED|ALREADY_ENROLLED|...
+ * create-student &lt;email&gt; &lt;name&gt; &lt;password&gt;  create-student  email
+ * create-course &lt;name&gt; &lt;instructor&gt; [capacity]   create-course  id  name
+ * </pre>
+ * Arguments are separated by blanks; use double quotes for values with blanks. Blank
+ * lines and lines starting with '#' are skipped, and a bad command produces
+ * "error  line  message".
+ *
+ * Every command runs on one {@link BatchSession}. Writes are grouped into transactions
+ * of 'transactionSize' writes and the output of a group is written once it commits. If a
+ * command of a group fails, the group is rolled back and its commands run again one
+ * transaction each, so only the failing command reports an error.
+ */
+public class BatchRunner {
+    public static final String BATCH_FLAG = "--batch";
+    public static final String TRANSACTION_SIZE_FLAG = "--tx-size";
+    public static final int DEFAULT_TRANSACTION_SIZE = 100;
+    // commits a group after this many commands even if it holds few writes, bounding the buffered output
+    static final int MAX_GROUP_COMMANDS = 10_000;
+
+    private final int transactionSize;
+    private final List<Command> group = new ArrayList<>();
+    private final StringBuilder groupOutput = new StringBuilder();
+    private int groupWrites;
+    private Summary summary;
+
+    /**
+     * @param transactionSize{int} - number of writes committed together
+     */
+    public BatchRunner(int transactionSize) {
+        if (transactionSize < 1) {
+            throw new IllegalArgumentException("transaction size must be positive: " + transactionSize);
+        }
+        this.transactionSize = transactionSize;
+    }
+
+    /**
+     * Runs the batch mode: App --batch [file|-] [--tx-size N]. Reads stdin when no file
+     * (or '-') is given and prints the summary to stderr.
+     * @param args{String[]} - the arguments after --batch
+     */
+    public static void main(String[] args) throws IOException {
+        String file = null;
+        int transactionSize = DEFAULT_TRANSACTION_SIZE;
+        for (int i = 0; i < args.length; i++) {
+            if (TRANSACTION_SIZE_FLAG.equals(args[i]) && i + 1 < args.length) {
+                transactionSize = Integer.parseInt(args[++i]);
+            } else {
+                file = args[i];
+            }
+        }
+        InputStream input = file == null || "-".equals(file) ? System.in : new FileInputStream(file);
+        Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+            Summary summary = new BatchRunner(transactionSize).run(reader, output);
+            System.err.printf("# %s%n", summary);
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    /**
+     * Runs every command of the input and flushes the output. Commands are parsed and run
+     * as they are read, so the input can be a stream of any length.
+     * @param input{Reader} - one command per line
+     * @param output{Writer} - receives one line per result
+     * @return {object} the totals of the run
+     */
+    public Summary run(Reader input, Writer output) throws IOException {
+        summary = new Summary();
+        PrintWriter out = new PrintWriter(output);
+        BufferedReader lines = new BufferedReader(input, 1 << 16);
+        long started;
+        try (BatchSession batch = new BatchSession()) {
+            // the session factory is built by now and not part of the timing
+            started = System.nanoTime();
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                Command command = Command.parse(lineNumber, trimmed);
+                group.add(command);
+                if (command.isWrite()) {
+                    groupWrites++;
+                }
+                try {
+                    command.execute(batch, groupOutput);
+                } catch (RuntimeException e) {
+                    batch.rollback();
+                    replayGroup(batch, out);
+                    continue;
+                }
+                if (groupWrites >= transactionSize || group.size() >= MAX_GROUP_COMMANDS) {
+                    commitGroup(batch, out);
+                }
+            }
+            commitGroup(batch, out);
+        }
+        out.flush();
+        summary.elapsedNanos = System.nanoTime() - started;
+        return summary;
+    }
+
+    // commits the group and writes its output, or runs it again one command at a time
+    private void commitGroup(BatchSession batch, PrintWriter out) {
+        if (group.isEmpty()) {
+            return;
+        }
+        try {
+            batch.commit();
+        } catch (RuntimeException e) {
+            batch.rollback();
+            replayGroup(batch, out);
+            return;
+        }
+        out.append(groupOutput);
+        summary.transactions++;
+        for (Command command : group) {
+            summary.count(command, false);
+        }
+        clearGroup();
+    }
+
+    private void replayGroup(BatchSession batch, PrintWriter out) {
+        StringBuilder result = new StringBuilder();
+        for (Command command : group) {
+            result.setLength(0);
+            boolean failed = false;
+            try {
+                command.execute(batch, result);
+                batch.commit();
+                summary.transactions++;
+            } catch (RuntimeException e) {
+                batch.rollback();
+                result.setLength(0);
+                Command.error(result, command.lineNumber, rootMessage(e));
+                failed = true;
+            }
+            out.append(result);
+            summary.count(command, failed);
+        }
+        clearGroup();
+    }
+
+    private void clearGroup() {
+        group.clear();
+        groupOutput.setLength(0);
+        groupWrites = 0;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        String message = root.getMessage() == null ? root.getClass().getSimpleName() : root.getMessage();
+        int newline = message.indexOf('\n');
+        return newline < 0 ? message : message.substring(0, newline);
+    }
+
+    /**
+     * Command is one parsed line of the input.
+     */
+    static class Command {
+        final int lineNumber;
+        final String name;
+        final List<String> args;
+        final String problem;
+
+        private Command(int lineNumber, String name, List<String> args, String problem) {
+            this.lineNumber = lineNumber;
+            this.name = name;
+            this.args = args;
+            this.problem = problem;
+        }
+
+        static Command parse(int lineNumber, String line) {
+            List<String> tokens = tokenize(line);
+            String name = tokens.remove(0);
+            String problem = null;
+            switch (name) {
+                case "list-courses":
+                    problem = arity(tokens, 0, 0, "list-courses");
+                    break;
+                case "login":
+                    problem = arity(tokens, 2, 2, "login <email> <password>");
+                    break;
+                case "show-courses":
+                    problem = arity(tokens, 1, 1, "show-courses <email>");
+                    break;
+                case "register":
+                    problem = arity(tokens, 2, 2, "register <email> <courseId>");
+                    if (problem == null && !isInt(tokens.get(1))) {
+                        problem = "course id is not a number: " + tokens.get(1);
+                    }
+                    break;
+                case "create-student":
+                    problem = arity(tokens, 3, 3, "create-student <email> <name> <password>");
+                    break;
+                case "create-course":
+                    problem = arity(tokens, 2, 3, "create-course <name> <instructor> [capacity]");
+                    if (problem == null && tokens.size() == 3 && !isInt(tokens.get(2))) {
+                        problem = "capacity is not a number: " + tokens.get(2);
+                    }
+                    break;
+                default:
+                    problem = "unknown command: " + name;
+            }
+            return new Command(lineNumber, name, tokens, problem);
+        }
+
+        boolean isWrite() {
+            return problem == null && (name.equals("register") || name.startsWith("create-"));
+        }
+
+        void execute(BatchSession batch, StringBuilder out) {
+            if (problem != null) {
+                error(out, lineNumber, problem);
+                return;
+            }
+            switch (name) {
+                case "login":
+                    line(out, "login", args.get(0), batch.validateStudent(args.get(0), args.get(1)) ? "ok" : "denied");
+                    break;
+                case "list-courses":
+                    for (Course course : batch.getAllCourses()) {
+                        line(out, "course", String.valueOf(course.getId()), course.getName(), course.getInstructor());
+                    }
+                    break;
+                case "show-courses":
+                    for (Course course : batch.getStudentCourses(args.get(0))) {
+                        line(out, "student-course", args.get(0), String.valueOf(course.getId()),
+                                course.getName(), course.getInstructor());
+                    }
+                    break;
+                case "register":
+                    EnrollmentStatus status = batch.registerStudentToCourse(args.get(0), Integer.parseInt(args.get(1)));
+                    line(out, "register", args.get(0), args.get(1), status.name());
+                    break;
+                case "create-student":
+                    batch.createStudent(new Student(args.get(0), args.get(1), args.get(2)));
+                    line(out, "create-student", args.get(0));
+                    break;
+                default:
+                    Course course = args.size() == 3
+                            ? new Course(args.get(0), args.get(1), Integer.parseInt(args.get(2)))
+                            : new Course(args.get(0), args.get(1));
+                    batch.createCourse(course);
+                    line(out, "create-course", String.valueOf(course.getId()), course.getName());
+            }
+        }
+
+        static void error(StringBuilder out, int lineNumber, String message) {
+            line(out, "error", String.valueOf(lineNumber), message);
+        }
+
+        private static void line(StringBuilder out, String... fields) {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    out.append('\t');
+                }
+                out.append(fields[i].replace('\t', ' '));
+            }
+            out.append('\n');
+        }
+
+        private static String arity(List<String> args, int min, int max, String usage) {
+            return args.size() < min || args.size() > max ? "usage: " + usage : null;
+        }
+
+        private static boolean isInt(String value) {
+            try {
+                Integer.parseInt(value);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        // splits on blanks, keeping double quoted values together
+        static List<String> tokenize(String line) {
+            List<String> tokens = new ArrayList<>();
+            StringBuilder token = new StringBuilder();
+            boolean quoted = false;
+            boolean inToken = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                    inToken = true;
+                } else if (Character.isWhitespace(c) && !quoted) {
+                    if (inToken) {
+                        tokens.add(token.toString());
+                        token.setLength(0);
+                        inToken = false;
+                    }
+                } else {
+                    token.append(c);
+                    inToken = true;
+                }
+            }
+            if (inToken) {
+                tokens.add(token.toString());
+            }
+            return tokens;
+        }
+    }
+
+    /**
+     * Summary holds the totals of one run.
+     */
+    public static class Summary {
+        private long commands;
+        private long reads;
+        private long writes;
+        private long errors;
+        private long transactions;
+        private long elapsedNanos;
+
+        private void count(Command command, boolean failed) {
+            commands++;
+            if (failed || command.problem != null) {
+                errors++;
+            } else if (command.isWrite()) {
+                writes++;
+            } else {
+                reads++;
+            }
+        }
+
+        public long getCommands() {
+            return commands;
+        }
+
+        public long getReads() {
+            return reads;
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getTransactions() {
+            return transactions;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        public double getCommandsPerSecond() {
+            return elapsedNanos == 0 ? 0 : commands * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("commands: %d, reads: %d, writes: %d, errors: %d, transactions: %d, "
+                            + "elapsed: %d ms, %.0f commands/s",
+                    commands, reads, writes, errors, transactions, getElapsedMillis(), getCommandsPerSecond());
+        }
+    }
+}
@@ -3,14 +3,28 @@ package sba.sms.dao;
 import sba.sms.models.Course;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The CourseI interface declares abstract methods and
  * is implemented by other classes to provide services for a course.
+ * Each method declares its {@link StatementBudget}.
  */
 public interface CourseI {
+    @StatementBudget(max = 1)
     void createCourse(Course course);
+    @StatementBudget(max = 1)
     Course getCourseById(int courseId);
+    @StatementBudget(max = 1)
     List<Course> getAllCourses();
 
+    @StatementBudget(max = 1)
+    List<Course> getCoursesPage(int afterId, int limit);
+
+    @StatementBudget(max = 1)
+    long forEachCourse(Consumer<Course> action);
+
+    @StatementBudget(max = 1)
+    List<Course> searchCourses(String query, int limit);
+
 }
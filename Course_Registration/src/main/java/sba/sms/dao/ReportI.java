@@ -0,0 +1,25 @@
+package sba.sms.dao;
+
+import sba.sms.models.CourseEnrollment;
+import sba.sms.models.InstructorLoad;
+
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * The ReportI interface declares the read-only reports over courses and
+ * enrollments. The aggregates are computed by the database and returned as
+ * plain values, never as entities. Each method declares its {@link StatementBudget}.
+ */
+public interface ReportI {
+    // one GROUP BY over course and student_course
+    @StatementBudget(min = 1, max = 1)
+    List<CourseEnrollment> getEnrollmentPerCourse();
+
+    @StatementBudget(min = 1, max = 1)
+    List<InstructorLoad> getInstructorLoads();
+
+    // one streamed query, however many rows are exported
+    @StatementBudget(min = 1, max = 1)
+    long exportRoster(Writer out);
+}
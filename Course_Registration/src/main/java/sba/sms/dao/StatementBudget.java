@@ -0,0 +1,37 @@
+package sba.sms.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * StatementBudget declares how many SQL statements one call of a StudentI or
+ * CourseI method may run against the database, whatever the size of the data.
+ * A method that works through its collection argument in chunks declares the budget
+ * of one chunk and the chunk size with perItems: a call on n elements may then run
+ * between min and max statements for each of its ceil(n / perItems) chunks, and for
+ * one chunk when the collection is empty.
+ * The budgets are checked by StatementBudgetTest, so a change that adds an N+1
+ * load or an extra round trip fails the build until the budget is reviewed here.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface StatementBudget {
+    /**
+     * @return {int} the most statements one call may run
+     */
+    int max();
+
+    /**
+     * @return {int} the fewest statements one call may run, e.g. equal to max for a single query
+     */
+    int min() default 0;
+
+    /**
+     * @return {int} number of elements of the collection argument the budget applies to, 0 for the whole call
+     */
+    int perItems() default 0;
+}
@@ -1,23 +1,48 @@
 package sba.sms.dao;
 
 import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
 import sba.sms.models.Student;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The StudentI interface declares abstract methods and
  * is implemented by other classes to provide services for a student.
+ * Each method declares its {@link StatementBudget}.
  */
 public interface StudentI {
+    @StatementBudget(max = 1)
     List<Student> getAllStudents();
+
+    @StatementBudget(max = 1)
+    List<Student> getStudentsPage(String afterEmail, int limit);
+
+    @StatementBudget(max = 1)
+    long forEachStudent(Consumer<Student> action);
+
+    @StatementBudget(max = 1)
     void createStudent(Student student);
 
+    // the student and their courses in one join
+    @StatementBudget(min = 1, max = 1)
     Student getStudentByEmail(String email);
 
+    // the password hash, plus the rewrite of a legacy plaintext password
+    @StatementBudget(max = 2)
     boolean validateStudent(String email, String password);
 
-    void registerStudentToCourse(String email, int courseId);
+    // the seat update, then the join row insert or the lookup of why no seat was taken
+    @StatementBudget(min = 2, max = 3)
+    EnrollmentStatus registerStudentToCourse(String email, int courseId);
+
+    // per chunk of enrollments: the students, the locked courses, the batched join row inserts and seat updates
+    @StatementBudget(max = 4, perItems = 500)
+    List<EnrollmentStatus> registerStudentsToCourses(Collection<Enrollment> enrollments);
 
+    @StatementBudget(min = 1, max = 1)
     List<Course> getStudentCourses(String email);
 }
@@ -1,9 +1,9 @@
 package sba.sms.models;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
-import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -11,17 +11,31 @@ import java.util.Set;
  * name 'course' in the database. A Course object contains fields that represent course
  * information and a mapping of 'courses' that indicate an inverse or referencing side
  * of the relationship. Implement Lombok annotations to eliminate boilerplate code.
+ * The 'enrolled' seat counter is maintained by the registration methods of
+ * StudentService and never exceeds 'capacity'. The 'students' roster is loaded
+ * lazily; ask for the {@link #WITH_STUDENTS} entity graph to load it with the course.
+ * A course is identified by its generated id only: two sections may share a name and an
+ * instructor, and an unsaved course equals nothing but itself.
  */
 
 @Entity
 @Table
+@NamedEntityGraph(name = Course.WITH_STUDENTS, attributeNodes = @NamedAttributeNode("students"))
 public class Course {
+    // fetch plan that loads the course together with its roster
+    public static final String WITH_STUDENTS = "Course.students";
+    public static final int UNLIMITED_CAPACITY = Integer.MAX_VALUE;
+
     @Id
     @GeneratedValue(strategy=GenerationType.IDENTITY )
     private int id;
     private String name;
     private String instructor;
-    @ManyToMany(mappedBy = "courses", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @ColumnDefault("2147483647")
+    private int capacity = UNLIMITED_CAPACITY;
+    @ColumnDefault("0")
+    private int enrolled;
+    @ManyToMany(mappedBy = "courses", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private Set<Student> students = new HashSet<>();
 
     // no args constructor
@@ -40,6 +54,13 @@ public class Course {
         this.instructor = instructor;
     }
 
+    // require arg constructor with seat limit
+    public Course(String name, String instructor, int capacity) {
+        this.name = name;
+        this.instructor = instructor;
+        this.capacity = capacity;
+    }
+
     // getter and setter methods
     public int getId() {
         return id;
@@ -65,6 +86,27 @@ public class Course {
         this.instructor = instructor;
     }
 
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getEnrolled() {
+        return enrolled;
+    }
+
+    public void setEnrolled(int enrolled) {
+        this.enrolled = enrolled;
+    }
+
+    // Helper method checks to see if every seat is taken
+    public boolean isFull() {
+        return enrolled >= capacity;
+    }
+
     public Set<Student> getStudents() {
         return students;
     }
@@ -73,7 +115,7 @@ public class Course {
         this.students = students;
     }
 
-    // Helper method checks to see if student is enrolled in course
+    // Helper method checks to see if student is enrolled in course, a hash lookup on the student email
     public boolean containsStudent(Student student) {
         return students.contains(student);
     }
@@ -84,32 +126,23 @@ public class Course {
         return "Course[id: " + id + ", name: " + name + ", instructor: " + instructor + "]";
     }
 
-    // Override hashCode method
+    // Override hashCode method returns the same value for every course: the id is only generated
+    // on save, and name and instructor are neither unique nor fixed, so no field gives a hash that
+    // holds for the whole life of the object. Student#isEnrolledCourse looks courses up by id instead
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + id;
-        result = prime * result + ((name == null) ? 0 : name.hashCode());
-        result = prime * result + ((instructor == null) ? 0 : instructor.hashCode());
-        return result;
+        return Course.class.hashCode();
     }
 
-    // Override equals method
+    // Override equals method compares the generated id; an unsaved course (id 0) only equals itself
     @Override
     public boolean equals(Object o) {
-        if (this.toString().equals(o.toString())) {
+        if (this == o) {
             return true;
         }
         if (o instanceof Course) {
             Course other = (Course) o;
-            boolean sameId = (this.id == other.getId());
-            boolean sameName = (this.name.equals(other.getName()));
-            boolean sameInstructor = (this.instructor.equals(other.getInstructor()));
-            boolean sameStudents = (this.students.equals(other.getStudents()));
-            if(sameId && sameName && sameInstructor && sameStudents) {
-                return true;
-            }
+            return getId() != 0 && getId() == other.getId();
         }
         return false;
     }
@@ -0,0 +1,77 @@
+package sba.sms.models;
+
+import java.util.Objects;
+
+/**
+ * CourseEnrollment is a read-only row of the enrollment per course report: a course
+ * and the number of students in its roster, counted by the database. It is not an
+ * entity and holds no roster.
+ */
+public class CourseEnrollment {
+    private final int courseId;
+    private final String name;
+    private final String instructor;
+    private final int capacity;
+    private final long enrolled;
+
+    // required args constructor
+    public CourseEnrollment(int courseId, String name, String instructor, int capacity, long enrolled) {
+        this.courseId = courseId;
+        this.name = name;
+        this.instructor = instructor;
+        this.capacity = capacity;
+        this.enrolled = enrolled;
+    }
+
+    // getter methods
+    public int getCourseId() {
+        return courseId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getInstructor() {
+        return instructor;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getEnrolled() {
+        return enrolled;
+    }
+
+    public long getFreeSeats() {
+        return Math.max(0, capacity - enrolled);
+    }
+
+    // Override toString method
+    @Override
+    public String toString() {
+        return "CourseEnrollment[courseId: " + courseId + ", name: " + name + ", instructor: " + instructor
+                + ", capacity: " + capacity + ", enrolled: " + enrolled + "]";
+    }
+
+    // Override hashCode method
+    @Override
+    public int hashCode() {
+        return Objects.hash(courseId, name, instructor, capacity, enrolled);
+    }
+
+    // Override equals method
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof CourseEnrollment) {
+            CourseEnrollment other = (CourseEnrollment) o;
+            return courseId == other.courseId && capacity == other.capacity && enrolled == other.enrolled
+                    && Objects.equals(name, other.name) && Objects.equals(instructor, other.instructor);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,54 @@
+package sba.sms.models;
+
+import java.util.Objects;
+
+/**
+ * Enrollment is a plain value object pairing a student email with a course id.
+ * It is the unit of work of {@link sba.sms.dao.StudentI#registerStudentsToCourses}
+ * and is not itself persisted; each successful enrollment becomes a row in the
+ * 'student_course' join table.
+ */
+public class Enrollment {
+    private final String email;
+    private final int courseId;
+
+    // required args constructor
+    public Enrollment(String email, int courseId) {
+        this.email = email;
+        this.courseId = courseId;
+    }
+
+    // getter methods
+    public String getEmail() {
+        return email;
+    }
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    // Override toString method
+    @Override
+    public String toString() {
+        return "Enrollment[email: " + email + ", courseId: " + courseId + "]";
+    }
+
+    // Override hashCode method
+    @Override
+    public int hashCode() {
+        return Objects.hash(email, courseId);
+    }
+
+    // Override equals method
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof Enrollment) {
+            Enrollment other = (Enrollment) o;
+            return courseId == other.courseId && Objects.equals(email, other.email);
+        }
+        return false;
+    }
+}
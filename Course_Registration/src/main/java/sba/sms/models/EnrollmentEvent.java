@@ -0,0 +1,110 @@
+package sba.sms.models;
+
+import java.util.Objects;
+
+/**
+ * EnrollmentEvent is a plain value object for one committed change of the enrollment state,
+ * as written to the 'enrollment_outbox' table and then to the {@link sba.sms.utils.EventLog}.
+ * The sequence is the id of the outbox row, unique per database; the email is null for a
+ * course event and the course id 0 for a student event.
+ */
+public class EnrollmentEvent {
+
+    /**
+     * The kinds of change, stored by their code.
+     */
+    public enum Type {
+        STUDENT_CREATED(1),
+        COURSE_CREATED(2),
+        ENROLLMENT_ADDED(3);
+
+        private final int code;
+
+        Type(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * @param code{int} - the stored code
+         * @return {object} the type with that code
+         */
+        public static Type ofCode(int code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("unknown event type " + code);
+        }
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final String email;
+    private final int courseId;
+    private final long timestamp;
+
+    // required args constructor
+    public EnrollmentEvent(long sequence, Type type, String email, int courseId, long timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.email = email;
+        this.courseId = courseId;
+        this.timestamp = timestamp;
+    }
+
+    // getter methods
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    /**
+     * @return {long} the time the change was committed, in ms since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // Override toString method
+    @Override
+    public String toString() {
+        return "EnrollmentEvent[sequence: " + sequence + ", type: " + type + ", email: " + email +
+               ", courseId: " + courseId + ", timestamp: " + timestamp + "]";
+    }
+
+    // Override hashCode method
+    @Override
+    public int hashCode() {
+        return Objects.hash(sequence, type, email, courseId, timestamp);
+    }
+
+    // Override equals method
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof EnrollmentEvent) {
+            EnrollmentEvent other = (EnrollmentEvent) o;
+            return sequence == other.sequence && type == other.type && courseId == other.courseId
+                   && timestamp == other.timestamp && Objects.equals(email, other.email);
+        }
+        return false;
+    }
+}
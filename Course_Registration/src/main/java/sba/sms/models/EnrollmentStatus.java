@@ -0,0 +1,17 @@
+package sba.sms.models;
+
+/**
+ * EnrollmentStatus is the outcome of registering one student to one course.
+ */
+public enum EnrollmentStatus {
+    // the student_course row was written
+    ADDED,
+    // the student already takes the course, nothing was written
+    ALREADY_ENROLLED,
+    // no student has the given email
+    UNKNOWN_STUDENT,
+    // no course has the given id
+    UNKNOWN_COURSE,
+    // every seat of the course is taken, nothing was written
+    COURSE_FULL
+}
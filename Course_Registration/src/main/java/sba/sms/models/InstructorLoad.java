@@ -0,0 +1,67 @@
+package sba.sms.models;
+
+import java.util.Objects;
+
+/**
+ * InstructorLoad is a read-only row of the load per instructor report: how many
+ * courses an instructor teaches, how many enrollments those courses hold and how
+ * many different students take them, counted by the database.
+ */
+public class InstructorLoad {
+    private final String instructor;
+    private final long courses;
+    private final long enrollments;
+    private final long students;
+
+    // required args constructor
+    public InstructorLoad(String instructor, long courses, long enrollments, long students) {
+        this.instructor = instructor;
+        this.courses = courses;
+        this.enrollments = enrollments;
+        this.students = students;
+    }
+
+    // getter methods
+    public String getInstructor() {
+        return instructor;
+    }
+
+    public long getCourses() {
+        return courses;
+    }
+
+    public long getEnrollments() {
+        return enrollments;
+    }
+
+    public long getStudents() {
+        return students;
+    }
+
+    // Override toString method
+    @Override
+    public String toString() {
+        return "InstructorLoad[instructor: " + instructor + ", courses: " + courses
+                + ", enrollments: " + enrollments + ", students: " + students + "]";
+    }
+
+    // Override hashCode method
+    @Override
+    public int hashCode() {
+        return Objects.hash(instructor, courses, enrollments, students);
+    }
+
+    // Override equals method
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof InstructorLoad) {
+            InstructorLoad other = (InstructorLoad) o;
+            return courses == other.courses && enrollments == other.enrollments && students == other.students
+                    && Objects.equals(instructor, other.instructor);
+        }
+        return false;
+    }
+}
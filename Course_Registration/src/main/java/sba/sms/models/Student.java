@@ -10,21 +10,36 @@ import java.util.*;
  * login credentials and a join table containing a registered student's email and course(s)
  * data. The Student class can be viewed as the owner of the bi-directional relationship.
  * Implement Lombok annotations to eliminate boilerplate code.
+ * The 'courses' are loaded lazily; service methods that need them ask for the
+ * {@link #WITH_COURSES} entity graph so they arrive in the same query.
+ * Course hashes are constant (see Course#hashCode), so {@link #isEnrolledCourse(Course)}
+ * looks the course id up in a set of the ids of the saved courses instead; it is built on
+ * first use and dropped whenever the courses change through {@link #getCourses()}.
  */
 
 @Entity
 @Table
+@NamedEntityGraph(name = Student.WITH_COURSES, attributeNodes = @NamedAttributeNode("courses"))
 public class Student {
+    // fetch plan that loads the student together with the courses they take
+    public static final String WITH_COURSES = "Student.courses";
+
     @Id
     private String email;
     private String name;
     private String password;
-    @ManyToMany(targetEntity = Course.class, fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @ManyToMany(targetEntity = Course.class, fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     @JoinTable (
         name = "student_course",
         joinColumns = @JoinColumn(name = "student_email", referencedColumnName = "email"),
-        inverseJoinColumns = @JoinColumn(name = "course_id", referencedColumnName = "id"))
+        inverseJoinColumns = @JoinColumn(name = "course_id", referencedColumnName = "id"),
+        indexes = @Index(name = "idx_student_course_course", columnList = "course_id"))
     private Set<Course> courses = new HashSet<>();
+    // ids of the saved courses of 'indexed', the 'courses' set they were read from
+    @Transient
+    private Set<Integer> courseIds;
+    @Transient
+    private Set<Course> indexed;
 
     // no args constructor
     public Student() {
@@ -70,17 +85,87 @@ public class Student {
         this.password = password;
     }
 
+    // the courses, as a view whose changes drop the course id index
     public Set<Course> getCourses() {
-        return courses;
+        return new CourseView();
     }
 
     public void setCourses(Set<Course> courses) {
         this.courses = courses;
+        this.courseIds = null;
     }
 
-    // Helper method checks to see if student is enrolled in the course;
+    // Helper method checks to see if student is enrolled in the course, a hash lookup on the course id;
+    // an unsaved course only equals itself and is looked for in the courses
     public boolean isEnrolledCourse(Course course) {
-        return courses.contains(course);
+        if (course.getId() == 0) {
+            return courses.contains(course);
+        }
+        Set<Integer> ids = courseIds;
+        if (ids == null || indexed != courses || ids.size() != courses.size()) {
+            ids = new HashSet<>();
+            for (Course taken : courses) {
+                ids.add(taken.getId());
+            }
+            // an unsaved course gets its id later, so the ids are kept only when every course has one
+            boolean complete = !ids.contains(0);
+            courseIds = complete ? ids : null;
+            indexed = courses;
+        }
+        return ids.contains(course.getId());
+    }
+
+    // the 'courses' set, dropping the course id index on every change
+    private class CourseView extends AbstractSet<Course> {
+        @Override
+        public Iterator<Course> iterator() {
+            Iterator<Course> iterator = courses.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Course next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    courseIds = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return courses.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return courses.contains(o);
+        }
+
+        @Override
+        public boolean add(Course course) {
+            courseIds = null;
+            return courses.add(course);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            courseIds = null;
+            return courses.remove(o);
+        }
+
+        @Override
+        public void clear() {
+            courseIds = null;
+            courses.clear();
+        }
     }
 
     // Override toString method returns the string format of student object
@@ -89,37 +174,23 @@ public class Student {
         return "Student[email: " + email + ", name: " + name + ", password: " + password +"]";
     }
 
-    // Override hashCode method returns hashCode of object
+    // Override hashCode method returns the hashCode of the email, the primary key,
+    // which is assigned before the student is saved so the hash never changes
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((email == null) ? 0 : email.hashCode());
-        result = prime * result + ((name == null) ? 0 : name.hashCode());
-        result = prime * result + ((password == null) ? 0 : password.hashCode());
-        result = prime * result + (((courses == null)) ? 0 : courses.hashCode());
-        return result;
+        return Objects.hashCode(getEmail());
     }
 
-    // Override equals method compares the other student object and returns true or false
+    // Override equals method compares the email of the other student object and returns true or false
     @Override
     public boolean equals(Object o) {
-        if (this.toString().equals((o.toString()))) {
+        if (this == o) {
             return true;
         }
         if (o instanceof Student) {
             Student other = (Student) o;
-            boolean sameEmail = (this.email.equals(other.getEmail()));
-            boolean sameName = (this.name.equals(other.getName()));
-            boolean password = (this.password.equals(other.getPassword()));
-            boolean courses = (this.courses.equals(other.getCourses()));
-            if(sameEmail && sameName && password && courses) {
-                return true;
-            }
+            return getEmail() != null && getEmail().equals(other.getEmail());
         }
         return false;
     }
 }
-
-
-
@@ -0,0 +1,41 @@
+package sba.sms.services;
+
+import sba.sms.dao.CourseI;
+import sba.sms.models.Course;
+import sba.sms.utils.BoundedExecutor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AsyncCourseService is a non-blocking facade over a CourseI. Every method runs the
+ * matching blocking call on a {@link BoundedExecutor} and returns a CompletableFuture.
+ */
+public class AsyncCourseService {
+    private final CourseI delegate;
+    private final BoundedExecutor executor;
+
+    public AsyncCourseService(CourseI delegate, BoundedExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Void> createCourse(Course course) {
+        return executor.submit(() -> {
+            delegate.createCourse(course);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Course> getCourseById(int courseId) {
+        return executor.submit(() -> delegate.getCourseById(courseId));
+    }
+
+    public CompletableFuture<List<Course>> getAllCourses() {
+        return executor.submit(delegate::getAllCourses);
+    }
+
+    public CompletableFuture<List<Course>> getCoursesPage(int afterId, int limit) {
+        return executor.submit(() -> delegate.getCoursesPage(afterId, limit));
+    }
+}
@@ -0,0 +1,63 @@
+package sba.sms.services;
+
+import sba.sms.dao.StudentI;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.BoundedExecutor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AsyncStudentService is a non-blocking facade over a StudentI. Every method runs the
+ * matching blocking call on a {@link BoundedExecutor} and returns a CompletableFuture,
+ * so front ends do not need a platform thread per waiting user. Share one executor
+ * with {@link AsyncCourseService} to bound the calls of both by the connection pool.
+ */
+public class AsyncStudentService {
+    private final StudentI delegate;
+    private final BoundedExecutor executor;
+
+    public AsyncStudentService(StudentI delegate, BoundedExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<List<Student>> getAllStudents() {
+        return executor.submit(delegate::getAllStudents);
+    }
+
+    public CompletableFuture<List<Student>> getStudentsPage(String afterEmail, int limit) {
+        return executor.submit(() -> delegate.getStudentsPage(afterEmail, limit));
+    }
+
+    public CompletableFuture<Void> createStudent(Student student) {
+        return executor.submit(() -> {
+            delegate.createStudent(student);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Student> getStudentByEmail(String email) {
+        return executor.submit(() -> delegate.getStudentByEmail(email));
+    }
+
+    public CompletableFuture<Boolean> validateStudent(String email, String password) {
+        return executor.submit(() -> delegate.validateStudent(email, password));
+    }
+
+    public CompletableFuture<EnrollmentStatus> registerStudentToCourse(String email, int courseId) {
+        return executor.submit(() -> delegate.registerStudentToCourse(email, courseId));
+    }
+
+    public CompletableFuture<List<EnrollmentStatus>> registerStudentsToCourses(Collection<Enrollment> enrollments) {
+        return executor.submit(() -> delegate.registerStudentsToCourses(enrollments));
+    }
+
+    public CompletableFuture<List<Course>> getStudentCourses(String email) {
+        return executor.submit(() -> delegate.getStudentCourses(email));
+    }
+}
@@ -0,0 +1,195 @@
+package sba.sms.services;
+
+import jakarta.persistence.PersistenceException;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.EnrollmentIndex;
+import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.PasswordHasher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BatchSession runs student and course operations for the batch mode of the App
+ * on one session. Reads and writes share the open transaction, so reads see the
+ * writes made before them, and the caller decides when to {@link #commit()}:
+ * many writes then share one transaction and their JDBC batches. Nothing is
+ * committed per call. After a failed call the caller must {@link #rollback()},
+ * which also starts over with a fresh session. Not thread safe.
+ *
+ * The session flushes only at commit and before a query that follows a create, not
+ * before every query, so the cost of a call does not grow with the entities loaded
+ * since the last commit. The outbox events of the writes commit with them, and so do
+ * the registrations of the {@link EnrollmentIndex} the session may be given.
+ */
+public class BatchSession implements AutoCloseable {
+    private final Logins logins = new Logins();
+    private final EnrollmentIndex index;
+    private final List<Enrollment> uncommitted = new ArrayList<>();
+    private Session session;
+    private Transaction transaction;
+    private boolean unflushed;
+
+    public BatchSession() {
+        this(null);
+    }
+
+    /**
+     * @param index{object} - index to add the committed registrations to, or null for none
+     */
+    public BatchSession(EnrollmentIndex index) {
+        this.index = index;
+        this.session = openSession();
+    }
+
+    private static Session openSession() {
+        Session session = HibernateUtil.getSessionFactory().openSession();
+        session.setHibernateFlushMode(FlushMode.COMMIT);
+        return session;
+    }
+
+    // joins the open transaction, or starts one
+    private Session inTransaction() {
+        if (transaction == null || !transaction.isActive()) {
+            transaction = session.beginTransaction();
+        }
+        return session;
+    }
+
+    // like inTransaction, and writes pending creates first so queries see them
+    private Session active() {
+        inTransaction();
+        if (unflushed) {
+            session.flush();
+            unflushed = false;
+        }
+        return session;
+    }
+
+    /**
+     * Checks the credentials like {@link StudentService#validateStudent(String, String)},
+     * without rewriting legacy plaintext passwords.
+     * @param email{String} - email of student
+     * @param password{String} - password of student
+     * @return {boolean} - true if the student exists and the password matches
+     */
+    public boolean validateStudent(String email, String password) {
+        if (email == null || password == null) {
+            return false;
+        }
+        return logins.isVerified(email, password) || logins.verify(active(), email, password) != null;
+    }
+
+    /**
+     * @return {object} every course ordered by id, without their rosters
+     */
+    public List<Course> getAllCourses() {
+        return active().createQuery("FROM Course c ORDER BY c.id", Course.class).getResultList();
+    }
+
+    /**
+     * @param email{String} - email of student
+     * @return {object} the courses the student takes, ordered by id
+     */
+    public List<Course> getStudentCourses(String email) {
+        return active().createNativeQuery("SELECT c.* FROM course c " +
+                                          "INNER JOIN student_course sc ON c.id = sc.course_id " +
+                                          "WHERE sc.student_email = :email ORDER BY c.id", Course.class)
+                .setParameter("email", email)
+                .getResultList();
+    }
+
+    /**
+     * Adds the student to the open transaction. The plaintext password is replaced by its hash.
+     * @param student{object} - Student object
+     */
+    public void createStudent(Student student) {
+        if (student.getPassword() != null && !PasswordHasher.isHashed(student.getPassword())) {
+            student.setPassword(PasswordHasher.hash(student.getPassword()));
+        }
+        inTransaction().persist(student);
+        Outbox.studentCreated(session, student.getEmail());
+        unflushed = true;
+    }
+
+    /**
+     * Adds the course to the open transaction; its generated id is set on return.
+     * @param course{object} - course object containing the course information
+     */
+    public void createCourse(Course course) {
+        inTransaction().persist(course);
+        Outbox.courseCreated(session, course.getId());
+        unflushed = true;
+    }
+
+    /**
+     * Registers the student to the course in the open transaction, with the outcomes of
+     * {@link StudentService#registerStudentToCourse(String, int)} and the same statements, see
+     * {@link Registration}. A rejected registration writes nothing and never fails the transaction.
+     * @param email{String} - email of student
+     * @param courseId{int} courseId of courses
+     * @return {Object} - the outcome of the registration
+     */
+    public EnrollmentStatus registerStudentToCourse(String email, int courseId) {
+        EnrollmentStatus status = Registration.register(active(), email, courseId, true);
+        if (index != null && (status == EnrollmentStatus.ADDED || status == EnrollmentStatus.ALREADY_ENROLLED)) {
+            uncommitted.add(new Enrollment(email, courseId));
+        }
+        return status;
+    }
+
+    /**
+     * Commits the open transaction, if any, and empties the session so memory
+     * does not grow with the run.
+     * @throws PersistenceException if the commit fails, the caller should then rollback
+     */
+    public void commit() {
+        if (transaction != null && transaction.isActive()) {
+            transaction.commit();
+            HibernateUtil.markWritten();
+        }
+        for (Enrollment enrollment : uncommitted) {
+            index.add(enrollment.getEmail(), enrollment.getCourseId());
+        }
+        uncommitted.clear();
+        unflushed = false;
+        session.clear();
+    }
+
+    /**
+     * Rolls back the open transaction, if any, and replaces the session.
+     */
+    public void rollback() {
+        try {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+        } finally {
+            transaction = null;
+            unflushed = false;
+            uncommitted.clear();
+            session.close();
+            session = openSession();
+        }
+    }
+
+    /**
+     * Rolls back whatever was not committed and closes the session.
+     */
+    @Override
+    public void close() {
+        try {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package sba.sms.services;
+
+import sba.sms.dao.CourseI;
+import sba.sms.models.Course;
+import sba.sms.utils.LruCache;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * CachedCourseService puts a bounded in-process cache in front of another CourseI.
+ * The catalog changes a few times a term but is read on every session, so
+ * getAllCourses and getCourseById are answered from memory until the entries expire
+ * or createCourse invalidates them. The cached courses are shared between callers and
+ * must be treated as read only; their seat counter ('enrolled') is as of the time
+ * they were loaded. Both caches are bounded by the same maximum number of courses: a
+ * catalog with more courses than that is loaded on every getAllCourses call instead of
+ * being cached, and its courses are not put in the by-id cache either.
+ */
+public class CachedCourseService implements CourseI {
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000L;
+    private static final String ALL_COURSES = "FROM Course";
+
+    private final CourseI delegate;
+    private final int maxSize;
+    private final LruCache<String, List<Course>> catalog;
+    private final LruCache<Integer, Course> courses;
+
+    public CachedCourseService(CourseI delegate) {
+        this(delegate, DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param delegate{object} - the service that reads and writes the database
+     * @param maxSize{int} - maximum number of courses kept by id, and in the cached catalog
+     * @param ttlMillis{long} - time in ms a cached course or catalog stays valid
+     */
+    public CachedCourseService(CourseI delegate, int maxSize, long ttlMillis) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.catalog = new LruCache<>(maxSize, ttlMillis, List::size);
+        this.courses = new LruCache<>(maxSize, ttlMillis);
+    }
+
+    /**
+     * Creates the course through the delegate and drops every cached entry so the
+     * next read sees the new course.
+     * @param course {object} - course object containing the course information
+     */
+    public void createCourse(Course course) {
+        try {
+            delegate.createCourse(course);
+        } finally {
+            catalog.invalidateAll();
+            courses.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the course with the given id from the cache, loading it on a miss.
+     * @param courseId {int} - the id of the course
+     * @return {object} the course that has the matching courseId
+     */
+    public Course getCourseById(int courseId) {
+        return courses.get(courseId, delegate::getCourseById);
+    }
+
+    /**
+     * Returns the whole catalog from the cache, loading it on a miss. A load of a catalog
+     * that fits in the cache also fills the by-id entries so the follow-up getCourseById
+     * calls are free.
+     * @return {object} an unmodifiable list of the courses offered
+     */
+    public List<Course> getAllCourses() {
+        return catalog.get(ALL_COURSES, key -> {
+            List<Course> all = List.copyOf(delegate.getAllCourses());
+            if (all.size() <= maxSize) {
+                for (Course course : all) {
+                    courses.put(course.getId(), course);
+                }
+            }
+            return all;
+        });
+    }
+
+    public List<Course> getCoursesPage(int afterId, int limit) {
+        return delegate.getCoursesPage(afterId, limit);
+    }
+
+    public long forEachCourse(Consumer<Course> action) {
+        return delegate.forEachCourse(action);
+    }
+
+    public List<Course> searchCourses(String query, int limit) {
+        return delegate.searchCourses(query, limit);
+    }
+
+    /**
+     * Drops every cached entry, e.g. after the catalog was changed outside this service.
+     */
+    public void invalidate() {
+        catalog.invalidateAll();
+        courses.invalidateAll();
+    }
+
+    public LruCache.Stats getCatalogStats() {
+        return catalog.stats();
+    }
+
+    public LruCache.Stats getCourseStats() {
+        return courses.stats();
+    }
+}
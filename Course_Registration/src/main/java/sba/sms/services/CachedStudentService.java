@@ -0,0 +1,108 @@
+package sba.sms.services;
+
+import sba.sms.dao.StudentI;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.LruCache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * CachedStudentService puts a bounded LRU/TTL cache of student profiles (the student
+ * with their courses) in front of another StudentI, keyed by email. Every write through
+ * this service drops the profiles it touched after the delegate has committed, and a
+ * profile load that overlaps such a write is not stored, so readers never see an
+ * enrollment list older than the last write. The cached students are shared between
+ * callers and must be treated as read only.
+ */
+public class CachedStudentService implements StudentI {
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000L;
+
+    private final StudentI delegate;
+    private final LruCache<String, Student> profiles;
+
+    public CachedStudentService(StudentI delegate) {
+        this(delegate, DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param delegate{object} - the service that reads and writes the database
+     * @param maxSize{int} - maximum number of cached profiles
+     * @param ttlMillis{long} - time in ms a cached profile stays valid
+     */
+    public CachedStudentService(StudentI delegate, int maxSize, long ttlMillis) {
+        this.delegate = delegate;
+        this.profiles = new LruCache<>(maxSize, ttlMillis);
+    }
+
+    public List<Student> getAllStudents() {
+        return delegate.getAllStudents();
+    }
+
+    public List<Student> getStudentsPage(String afterEmail, int limit) {
+        return delegate.getStudentsPage(afterEmail, limit);
+    }
+
+    public long forEachStudent(Consumer<Student> action) {
+        return delegate.forEachStudent(action);
+    }
+
+    public void createStudent(Student student) {
+        try {
+            delegate.createStudent(student);
+        } finally {
+            profiles.invalidate(student.getEmail());
+        }
+    }
+
+    /**
+     * Returns the cached profile of the student, loading it on a miss.
+     * @param email{String} - String represent a student email
+     * @return {Object} Student - the student found by the email, with their courses
+     */
+    public Student getStudentByEmail(String email) {
+        return profiles.get(email, delegate::getStudentByEmail);
+    }
+
+    public boolean validateStudent(String email, String password) {
+        return delegate.validateStudent(email, password);
+    }
+
+    public EnrollmentStatus registerStudentToCourse(String email, int courseId) {
+        try {
+            return delegate.registerStudentToCourse(email, courseId);
+        } finally {
+            profiles.invalidate(email);
+        }
+    }
+
+    public List<EnrollmentStatus> registerStudentsToCourses(Collection<Enrollment> enrollments) {
+        try {
+            return delegate.registerStudentsToCourses(enrollments);
+        } finally {
+            for (Enrollment enrollment : enrollments) {
+                profiles.invalidate(enrollment.getEmail());
+            }
+        }
+    }
+
+    public List<Course> getStudentCourses(String email) {
+        return delegate.getStudentCourses(email);
+    }
+
+    /**
+     * Drops every cached profile, e.g. after students were changed outside this service.
+     */
+    public void invalidate() {
+        profiles.invalidateAll();
+    }
+
+    public LruCache.Stats getStats() {
+        return profiles.stats();
+    }
+}
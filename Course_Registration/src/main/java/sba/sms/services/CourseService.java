@@ -2,25 +2,56 @@ package sba.sms.services;
 
 import jakarta.persistence.PersistenceException;
 import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
-import org.hibernate.cfg.Configuration;
 import org.hibernate.query.Query;
 import sba.sms.dao.CourseI;
 import sba.sms.models.Course;
 import sba.sms.models.Student;
+import sba.sms.utils.CourseSearchIndex;
 import sba.sms.utils.HibernateUtil;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * CourseService is a concrete class. This class implements the
  * CourseI interface, overrides all abstract service methods and
- * provides implementation for each method.
+ * provides implementation for each method. The reads run on a read
+ * replica when the profile has some, like those of StudentService, and a
+ * new course adds its event to the outbox when it is enabled.
  */
 public class CourseService implements CourseI {
+    // runs of characters that are neither letters nor digits, what CourseSearchIndex.normalize turns into one space
+    private static final String SEPARATORS = "[^\\p{L}\\p{Nd}]+";
+
+    // null to run on the shared factories of HibernateUtil, else every call runs on this one
+    private final SessionFactory sessionFactory;
+
+    public CourseService() {
+        this(null);
+    }
+
+    /**
+     * @param sessionFactory{object} - factory every call runs on, reads included, e.g. one shard
+     *                               of {@link ShardedCourseService}; null for the shared factories of HibernateUtil
+     */
+    public CourseService(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    private SessionFactory writeFactory() {
+        return sessionFactory != null ? sessionFactory : HibernateUtil.getSessionFactory();
+    }
+
+    private SessionFactory readFactory() {
+        return sessionFactory != null ? sessionFactory : HibernateUtil.getReadSessionFactory();
+    }
 
     /**
      * Creates courses for Students to take and saves the course into the Course table. If the transaction
@@ -29,13 +60,14 @@ public class CourseService implements CourseI {
      * @param course {object} - course object containing the course information
      */
     public void createCourse(Course course) {
-        SessionFactory factory = new Configuration().configure("hibernate.cfg.xml").addAnnotatedClass(Course.class).buildSessionFactory();
-        Session session = factory.openSession();
+        Session session = writeFactory().openSession();
         Transaction transaction = null;
         try {
             transaction = session.beginTransaction();
             session.persist(course);
+            Outbox.courseCreated(session, course.getId());
             transaction.commit();
+            HibernateUtil.markWritten();
         }catch (Exception e) {
             if(transaction != null) {
                 transaction.rollback();
@@ -47,13 +79,12 @@ public class CourseService implements CourseI {
     }
 
     /**
-     * Gets all the created course from the Course Table. If any errors occur a PersistenceException
+     * Gets all the created course from the Course Table, without their rosters. If any errors occur a PersistenceException
      * will be thrown with an error msg. Close session at the end regardless of errors.
      * @return {object} a list of the courses offered
      */
     public List<Course> getAllCourses() {
-        SessionFactory factory = new Configuration().configure("hibernate.cfg.xml").addAnnotatedClass(Course.class).buildSessionFactory();
-        Session session = factory.openSession();
+        Session session = readFactory().openSession();
         try {
             String query = "FROM Course";
             Query<Course> allCourses = session.createQuery(query, Course.class);
@@ -67,15 +98,122 @@ public class CourseService implements CourseI {
     }
 
     /**
-     * Finds the course where the course id equals the given courseId. if any errors occur a
+     * Returns one page of courses ordered by id, without their rosters. The page starts right after
+     * afterId (keyset pagination). If any errors occur a PersistenceException will be thrown with an
+     * error msg. Close session at the end regardless of errors.
+     * @param afterId {int} - id of the last course of the previous page, 0 for the first page
+     * @param limit {int} - maximum number of courses in the page
+     * @return {object} the page of courses, empty after the last page
+     */
+    public List<Course> getCoursesPage(int afterId, int limit) {
+        Session session = readFactory().openSession();
+        try {
+            String query = "FROM Course c WHERE c.id > :afterId ORDER BY c.id";
+            return session.createQuery(query, Course.class)
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(limit)
+                    .getResultList();
+        } catch (Exception e) {
+            throw new PersistenceException("Error getting page of courses", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Streams every course, ordered by id and without its roster, to the given action through a
+     * forward only cursor of a stateless session, in constant memory. The session is closed when
+     * the stream ends or fails. If any errors occur a PersistenceException will be thrown with an
+     * error msg.
+     * @param action {Consumer} - called once per course
+     * @return {long} the number of courses streamed
+     */
+    public long forEachCourse(Consumer<Course> action) {
+        StatelessSession session = readFactory().openStatelessSession();
+        try (ScrollableResults<Course> courses = session.createQuery("FROM Course c ORDER BY c.id", Course.class)
+                .setFetchSize(StudentService.STREAM_FETCH_SIZE)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            long count = 0;
+            while (courses.next()) {
+                action.accept(courses.get());
+                count++;
+            }
+            return count;
+        } catch (Exception e) {
+            throw new PersistenceException("Error streaming courses", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Finds the courses whose name or instructor matches every word of the query with one
+     * {@code LIKE} per word and field, as {@link CourseSearchIndex} matches them: a word of 3
+     * characters or more anywhere, a shorter one at the start of a word. Both sides are normalized
+     * the same way, the query by {@link CourseSearchIndex#normalize(String)} and the columns by
+     * {@code REGEXP_REPLACE} (MySQL 8 and H2), so "spring-boot" finds "Spring Boot" and "c++" finds
+     * "C++ Primer". The patterns start with '%', so the database scans and normalizes the whole
+     * catalog; IndexedCourseService answers from memory.
+     * Courses whose name starts with the query come first, then the shorter names. If any errors
+     * occur a PersistenceException will be thrown with an error msg. Close session at the end
+     * regardless of errors.
+     * @param query {String} - words to look for in the course names and instructors, in any case
+     * @param limit {int} - maximum number of courses returned
+     * @return {object} the matching courses, empty for a blank query
+     */
+    public List<Course> searchCourses(String query, int limit) {
+        String normalized = CourseSearchIndex.normalize(query);
+        if (normalized.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        String[] words = normalized.split(" ");
+        String name = normalizedColumn("c.name");
+        String instructor = normalizedColumn("c.instructor");
+        StringBuilder hql = new StringBuilder("FROM Course c WHERE 1 = 1");
+        for (int i = 0; i < words.length; i++) {
+            hql.append(words[i].length() < 3
+                    ? " AND (" + name + " LIKE :start" + i + " OR " + name + " LIKE :word" + i +
+                      " OR " + instructor + " LIKE :start" + i + " OR " + instructor + " LIKE :word" + i + ")"
+                    : " AND (" + name + " LIKE :word" + i + " OR " + instructor + " LIKE :word" + i + ")");
+        }
+        hql.append(" ORDER BY CASE WHEN " + name + " LIKE :phrase THEN 0 ELSE 1 END, LENGTH(" + name + "), c.id");
+        Session session = readFactory().openSession();
+        try {
+            Query<Course> search = session.createQuery(hql.toString(), Course.class)
+                    .setParameter("separators", SEPARATORS);
+            for (int i = 0; i < words.length; i++) {
+                if (words[i].length() < 3) {
+                    search.setParameter("start" + i, words[i] + "%");
+                    search.setParameter("word" + i, "% " + words[i] + "%");
+                } else {
+                    search.setParameter("word" + i, "%" + words[i] + "%");
+                }
+            }
+            return search.setParameter("phrase", normalized + "%")
+                    .setMaxResults(limit)
+                    .getResultList();
+        } catch (Exception e) {
+            throw new PersistenceException("Error searching courses", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    // the column as CourseSearchIndex.normalize makes it: lower case, one space between runs of letters and digits
+    private static String normalizedColumn(String column) {
+        return "TRIM(CAST(FUNCTION('regexp_replace', LOWER(" + column + "), :separators, ' ') AS String))";
+    }
+
+    /**
+     * Finds the course where the course id equals the given courseId, without its roster. if any errors occur a
      * PersistenceException will be thrown with an error msg. Close session at the end regardless
      * of errors.
      * @param courseId {int} - the id of the course
      * @return {object} the course that has the matching courseId
      */
     public Course getCourseById(int courseId) {
-        SessionFactory factory = new Configuration().configure("hibernate.cfg.xml").addAnnotatedClass(Course.class).buildSessionFactory();
-        Session session = factory.openSession();
+        Session session = readFactory().openSession();
 
         try {
             String query = "FROM Course c WHERE c.id = :courseId";
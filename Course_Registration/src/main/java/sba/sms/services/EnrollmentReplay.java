@@ -0,0 +1,122 @@
+package sba.sms.services;
+
+import sba.sms.models.EnrollmentEvent;
+import sba.sms.utils.EventLog;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * EnrollmentReplay rebuilds the enrollment state, the students and courses created and the
+ * courses of each student, from the events of an {@link EventLog}, without touching the
+ * database. Applying an event twice changes nothing, so the repeated events of a relay
+ * restart, see {@link OutboxRelay}, are harmless; a replay can also be resumed from
+ * {@link #getOffset()} as the log grows. Not thread safe.
+ */
+public class EnrollmentReplay {
+    private final Set<String> students = new HashSet<>();
+    private final Set<Integer> courses = new HashSet<>();
+    private final Map<String, Set<Integer>> enrollments = new HashMap<>();
+    private final Map<Integer, Integer> enrolled = new TreeMap<>();
+    private long offset;
+    private long events;
+    private long enrollmentCount;
+
+    /**
+     * Replays the whole log in the directory, up to its last event.
+     * @param directory{object} - directory of the log's segment files
+     * @return {object} the rebuilt state
+     */
+    public static EnrollmentReplay of(Path directory) {
+        EnrollmentReplay replay = new EnrollmentReplay();
+        replay.resume(directory);
+        return replay;
+    }
+
+    /**
+     * Applies the events appended to the log since the last replayed one.
+     * @param directory{object} - directory of the log's segment files
+     * @return {long} the number of events applied
+     */
+    public long resume(Path directory) {
+        try (EventLog.Tailer tailer = EventLog.tail(directory, offset)) {
+            long applied = 0;
+            EnrollmentEvent event;
+            while ((event = tailer.poll()) != null) {
+                apply(event);
+                applied++;
+            }
+            offset = tailer.getOffset();
+            return applied;
+        }
+    }
+
+    /**
+     * @param event{object} - the event to apply to the state
+     */
+    public void apply(EnrollmentEvent event) {
+        events++;
+        switch (event.getType()) {
+            case STUDENT_CREATED:
+                students.add(event.getEmail());
+                break;
+            case COURSE_CREATED:
+                courses.add(event.getCourseId());
+                break;
+            case ENROLLMENT_ADDED:
+                if (enrollments.computeIfAbsent(event.getEmail(), email -> new HashSet<>()).add(event.getCourseId())) {
+                    enrolled.merge(event.getCourseId(), 1, Integer::sum);
+                    enrollmentCount++;
+                }
+                break;
+            default:
+                throw new IllegalStateException("unknown event type " + event.getType());
+        }
+    }
+
+    public Set<String> getStudents() {
+        return Collections.unmodifiableSet(students);
+    }
+
+    public Set<Integer> getCourses() {
+        return Collections.unmodifiableSet(courses);
+    }
+
+    /**
+     * @param email{String} - email of student
+     * @return {Set} the ids of the courses the student registered to
+     */
+    public Set<Integer> getStudentCourses(String email) {
+        return Collections.unmodifiableSet(enrollments.getOrDefault(email, Collections.emptySet()));
+    }
+
+    /**
+     * @return {Map} the number of students of each course with any, by course id
+     */
+    public Map<Integer, Integer> getEnrolledPerCourse() {
+        return Collections.unmodifiableMap(enrolled);
+    }
+
+    public long getEnrollmentCount() {
+        return enrollmentCount;
+    }
+
+    /**
+     * @return {long} the number of events applied, repeated ones included
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * @return {long} the log offset after the last replayed event
+     */
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,90 @@
+package sba.sms.services;
+
+import sba.sms.dao.CourseI;
+import sba.sms.models.Course;
+import sba.sms.utils.CourseSearchIndex;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * IndexedCourseService answers {@link #searchCourses(String, int)} from a
+ * {@link CourseSearchIndex} instead of the LIKE scan of another CourseI. Unless one is
+ * given, the index is filled on first use by streaming the delegate's catalog, and every
+ * course created through this service is added to it once committed. Courses created
+ * around this service are only found by a new IndexedCourseService.
+ */
+public class IndexedCourseService implements CourseI {
+    private final CourseI delegate;
+    private volatile CourseSearchIndex index;
+
+    /**
+     * @param delegate{object} - the service that reads and writes the database
+     */
+    public IndexedCourseService(CourseI delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param delegate{object} - the service that reads and writes the database
+     * @param index{object} - the index to search and keep current, null to fill one from the delegate on first use
+     */
+    public IndexedCourseService(CourseI delegate, CourseSearchIndex index) {
+        this.delegate = delegate;
+        this.index = index;
+    }
+
+    /**
+     * @return {object} the index, filled from the delegate's catalog on the first call
+     */
+    public CourseSearchIndex getIndex() {
+        CourseSearchIndex loaded = index;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = index;
+                if (loaded == null) {
+                    loaded = new CourseSearchIndex();
+                    delegate.forEachCourse(loaded::add);
+                    index = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Creates the course through the delegate, then adds it to the index, filling the index
+     * first if it was not yet.
+     * @param course {object} - course object containing the course information
+     */
+    public void createCourse(Course course) {
+        delegate.createCourse(course);
+        getIndex().add(course);
+    }
+
+    public Course getCourseById(int courseId) {
+        return delegate.getCourseById(courseId);
+    }
+
+    public List<Course> getAllCourses() {
+        return delegate.getAllCourses();
+    }
+
+    public List<Course> getCoursesPage(int afterId, int limit) {
+        return delegate.getCoursesPage(afterId, limit);
+    }
+
+    public long forEachCourse(Consumer<Course> action) {
+        return delegate.forEachCourse(action);
+    }
+
+    /**
+     * Searches the index, see {@link CourseSearchIndex#search(String, int)}; no SQL runs once it is filled.
+     * @param query {String} - words to look for in the course names and instructors, in any case
+     * @param limit {int} - maximum number of courses returned
+     * @return {object} the matching courses, best ranked first; shared and read only
+     */
+    public List<Course> searchCourses(String query, int limit) {
+        return getIndex().search(query, limit);
+    }
+}
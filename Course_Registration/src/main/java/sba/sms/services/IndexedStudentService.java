@@ -0,0 +1,90 @@
+package sba.sms.services;
+
+import sba.sms.dao.StudentI;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.EnrollmentIndex;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * IndexedStudentService keeps an {@link EnrollmentIndex} current with the registrations
+ * made through another StudentI. Every registration the delegate reports as ADDED, or
+ * as ALREADY_ENROLLED, is added to the index once it has committed, so roster and
+ * membership questions can be answered from {@link #getIndex()} without SQL.
+ * Wrap the delegate of a {@link RegistrationQueue} to index its batches, and load the index
+ * of a {@link ShardedStudentService} from every shard; a {@link BatchSession} is given the
+ * index itself. Registrations made around these, and the committed chunks of a
+ * registerStudentsToCourses call that failed, are only seen after the index is loaded again.
+ */
+public class IndexedStudentService implements StudentI {
+    private final StudentI delegate;
+    private final EnrollmentIndex index;
+
+    /**
+     * @param delegate{object} - the service that reads and writes the database
+     * @param index{object} - the index to keep current, usually from {@link EnrollmentIndex#load()}
+     */
+    public IndexedStudentService(StudentI delegate, EnrollmentIndex index) {
+        this.delegate = delegate;
+        this.index = index;
+    }
+
+    public List<Student> getAllStudents() {
+        return delegate.getAllStudents();
+    }
+
+    public List<Student> getStudentsPage(String afterEmail, int limit) {
+        return delegate.getStudentsPage(afterEmail, limit);
+    }
+
+    public long forEachStudent(Consumer<Student> action) {
+        return delegate.forEachStudent(action);
+    }
+
+    public void createStudent(Student student) {
+        delegate.createStudent(student);
+    }
+
+    public Student getStudentByEmail(String email) {
+        return delegate.getStudentByEmail(email);
+    }
+
+    public boolean validateStudent(String email, String password) {
+        return delegate.validateStudent(email, password);
+    }
+
+    public EnrollmentStatus registerStudentToCourse(String email, int courseId) {
+        EnrollmentStatus status = delegate.registerStudentToCourse(email, courseId);
+        record(email, courseId, status);
+        return status;
+    }
+
+    public List<EnrollmentStatus> registerStudentsToCourses(Collection<Enrollment> enrollments) {
+        List<EnrollmentStatus> statuses = delegate.registerStudentsToCourses(enrollments);
+        Iterator<EnrollmentStatus> status = statuses.iterator();
+        for (Enrollment enrollment : enrollments) {
+            record(enrollment.getEmail(), enrollment.getCourseId(), status.next());
+        }
+        return statuses;
+    }
+
+    private void record(String email, int courseId, EnrollmentStatus status) {
+        if (status == EnrollmentStatus.ADDED || status == EnrollmentStatus.ALREADY_ENROLLED) {
+            index.add(email, courseId);
+        }
+    }
+
+    public List<Course> getStudentCourses(String email) {
+        return delegate.getStudentCourses(email);
+    }
+
+    public EnrollmentIndex getIndex() {
+        return index;
+    }
+}
@@ -0,0 +1,84 @@
+package sba.sms.services;
+
+import sba.sms.dao.CourseI;
+import sba.sms.models.Course;
+import sba.sms.utils.ServiceMetrics;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * InstrumentedCourseService records every call to another CourseI in
+ * {@link ServiceMetrics}: latency, errors, and the statements, entities and
+ * collections the call loaded. Calls answered by a cache report no SQL. The time
+ * of forEachCourse includes the time spent in the caller's action.
+ */
+public class InstrumentedCourseService implements CourseI {
+    private static final ServiceMetrics.Operation CREATE_COURSE = ServiceMetrics.operation("CourseI.createCourse");
+    private static final ServiceMetrics.Operation GET_COURSE_BY_ID = ServiceMetrics.operation("CourseI.getCourseById");
+    private static final ServiceMetrics.Operation GET_ALL_COURSES = ServiceMetrics.operation("CourseI.getAllCourses");
+    private static final ServiceMetrics.Operation GET_COURSES_PAGE = ServiceMetrics.operation("CourseI.getCoursesPage");
+    private static final ServiceMetrics.Operation FOR_EACH_COURSE = ServiceMetrics.operation("CourseI.forEachCourse");
+    private static final ServiceMetrics.Operation SEARCH_COURSES = ServiceMetrics.operation("CourseI.searchCourses");
+
+    private final CourseI delegate;
+
+    public InstrumentedCourseService(CourseI delegate) {
+        this.delegate = delegate;
+    }
+
+    public void createCourse(Course course) {
+        long started = CREATE_COURSE.begin();
+        try {
+            delegate.createCourse(course);
+            CREATE_COURSE.success(started);
+        } catch (RuntimeException e) {
+            throw CREATE_COURSE.failure(started, e);
+        }
+    }
+
+    public Course getCourseById(int courseId) {
+        long started = GET_COURSE_BY_ID.begin();
+        try {
+            return GET_COURSE_BY_ID.success(started, delegate.getCourseById(courseId));
+        } catch (RuntimeException e) {
+            throw GET_COURSE_BY_ID.failure(started, e);
+        }
+    }
+
+    public List<Course> getAllCourses() {
+        long started = GET_ALL_COURSES.begin();
+        try {
+            return GET_ALL_COURSES.success(started, delegate.getAllCourses());
+        } catch (RuntimeException e) {
+            throw GET_ALL_COURSES.failure(started, e);
+        }
+    }
+
+    public List<Course> getCoursesPage(int afterId, int limit) {
+        long started = GET_COURSES_PAGE.begin();
+        try {
+            return GET_COURSES_PAGE.success(started, delegate.getCoursesPage(afterId, limit));
+        } catch (RuntimeException e) {
+            throw GET_COURSES_PAGE.failure(started, e);
+        }
+    }
+
+    public long forEachCourse(Consumer<Course> action) {
+        long started = FOR_EACH_COURSE.begin();
+        try {
+            return FOR_EACH_COURSE.success(started, delegate.forEachCourse(action));
+        } catch (RuntimeException e) {
+            throw FOR_EACH_COURSE.failure(started, e);
+        }
+    }
+
+    public List<Course> searchCourses(String query, int limit) {
+        long started = SEARCH_COURSES.begin();
+        try {
+            return SEARCH_COURSES.success(started, delegate.searchCourses(query, limit));
+        } catch (RuntimeException e) {
+            throw SEARCH_COURSES.failure(started, e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package sba.sms.services;
+
+import sba.sms.dao.StudentI;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.ServiceMetrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * InstrumentedStudentService records every call to another StudentI in
+ * {@link ServiceMetrics}: latency, errors, and the statements, entities and
+ * collections the call loaded. Calls answered by a cache report no SQL. The time
+ * of forEachStudent includes the time spent in the caller's action.
+ */
+public class InstrumentedStudentService implements StudentI {
+    private static final ServiceMetrics.Operation GET_ALL_STUDENTS = ServiceMetrics.operation("StudentI.getAllStudents");
+    private static final ServiceMetrics.Operation GET_STUDENTS_PAGE = ServiceMetrics.operation("StudentI.getStudentsPage");
+    private static final ServiceMetrics.Operation FOR_EACH_STUDENT = ServiceMetrics.operation("StudentI.forEachStudent");
+    private static final ServiceMetrics.Operation CREATE_STUDENT = ServiceMetrics.operation("StudentI.createStudent");
+    private static final ServiceMetrics.Operation GET_STUDENT_BY_EMAIL = ServiceMetrics.operation("StudentI.getStudentByEmail");
+    private static final ServiceMetrics.Operation VALIDATE_STUDENT = ServiceMetrics.operation("StudentI.validateStudent");
+    private static final ServiceMetrics.Operation REGISTER_STUDENT_TO_COURSE = ServiceMetrics.operation("StudentI.registerStudentToCourse");
+    private static final ServiceMetrics.Operation REGISTER_STUDENTS_TO_COURSES = ServiceMetrics.operation("StudentI.registerStudentsToCourses");
+    private static final ServiceMetrics.Operation GET_STUDENT_COURSES = ServiceMetrics.operation("StudentI.getStudentCourses");
+
+    private final StudentI delegate;
+
+    public InstrumentedStudentService(StudentI delegate) {
+        this.delegate = delegate;
+    }
+
+    public List<Student> getAllStudents() {
+        long started = GET_ALL_STUDENTS.begin();
+        try {
+            return GET_ALL_STUDENTS.success(started, delegate.getAllStudents());
+        } catch (RuntimeException e) {
+            throw GET_ALL_STUDENTS.failure(started, e);
+        }
+    }
+
+    public List<Student> getStudentsPage(String afterEmail, int limit) {
+        long started = GET_STUDENTS_PAGE.begin();
+        try {
+            return GET_STUDENTS_PAGE.success(started, delegate.getStudentsPage(afterEmail, limit));
+        } catch (RuntimeException e) {
+            throw GET_STUDENTS_PAGE.failure(started, e);
+        }
+    }
+
+    public long forEachStudent(Consumer<Student> action) {
+        long started = FOR_EACH_STUDENT.begin();
+        try {
+            return FOR_EACH_STUDENT.success(started, delegate.forEachStudent(action));
+        } catch (RuntimeException e) {
+            throw FOR_EACH_STUDENT.failure(started, e);
+        }
+    }
+
+    public void createStudent(Student student) {
+        long started = CREATE_STUDENT.begin();
+        try {
+            delegate.createStudent(student);
+            CREATE_STUDENT.success(started);
+        } catch (RuntimeException e) {
+            throw CREATE_STUDENT.failure(started, e);
+        }
+    }
+
+    public Student getStudentByEmail(String email) {
+        long started = GET_STUDENT_BY_EMAIL.begin();
+        try {
+            return GET_STUDENT_BY_EMAIL.success(started, delegate.getStudentByEmail(email));
+        } catch (RuntimeException e) {
+            throw GET_STUDENT_BY_EMAIL.failure(started, e);
+        }
+    }
+
+    public boolean validateStudent(String email, String password) {
+        long started = VALIDATE_STUDENT.begin();
+        try {
+            return VALIDATE_STUDENT.success(started, delegate.validateStudent(email, password));
+        } catch (RuntimeException e) {
+            throw VALIDATE_STUDENT.failure(started, e);
+        }
+    }
+
+    public EnrollmentStatus registerStudentToCourse(String email, int courseId) {
+        long started = REGISTER_STUDENT_TO_COURSE.begin();
+        try {
+            return REGISTER_STUDENT_TO_COURSE.success(started, delegate.registerStudentToCourse(email, courseId));
+        } catch (RuntimeException e) {
+            throw REGISTER_STUDENT_TO_COURSE.failure(started, e);
+        }
+    }
+
+    public List<EnrollmentStatus> registerStudentsToCourses(Collection<Enrollment> enrollments) {
+        long started = REGISTER_STUDENTS_TO_COURSES.begin();
+        try {
+            return REGISTER_STUDENTS_TO_COURSES.success(started, delegate.registerStudentsToCourses(enrollments));
+        } catch (RuntimeException e) {
+            throw REGISTER_STUDENTS_TO_COURSES.failure(started, e);
+        }
+    }
+
+    public List<Course> getStudentCourses(String email) {
+        long started = GET_STUDENT_COURSES.begin();
+        try {
+            return GET_STUDENT_COURSES.success(started, delegate.getStudentCourses(email));
+        } catch (RuntimeException e) {
+            throw GET_STUDENT_COURSES.failure(started, e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package sba.sms.services;
+
+import org.hibernate.Session;
+import sba.sms.utils.LruCache;
+import sba.sms.utils.PasswordHasher;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.List;
+
+/**
+ * Logins checks student credentials for {@link StudentService} and {@link BatchSession}.
+ * Only the stored password of the email is selected, and an unknown email is checked
+ * against a dummy hash so it costs as much as a wrong password. A successful check is
+ * remembered for {@link StudentService#VERIFIED_LOGIN_TTL_MILLIS} ms as a keyed digest
+ * of the credentials, so repeated checks of the same credentials skip the hash.
+ */
+final class Logins {
+    private static final byte[] PEPPER = pepper();
+
+    private final LruCache<String, byte[]> verified = new LruCache<>(10_000, StudentService.VERIFIED_LOGIN_TTL_MILLIS);
+
+    /**
+     * @param email{String} - email of student
+     * @param password{String} - password of student
+     * @return {boolean} true if these credentials were verified within the ttl
+     */
+    boolean isVerified(String email, String password) {
+        byte[] known = verified.get(email);
+        return known != null && MessageDigest.isEqual(known, fingerprint(email, password));
+    }
+
+    /**
+     * Checks the password against the one stored for the email, read on the session,
+     * and remembers a match.
+     * @param session{object} - session the stored password is read on
+     * @param email{String} - email of student
+     * @param password{String} - password of student
+     * @return {String} the stored hash or legacy plaintext password if it matches, else null
+     */
+    String verify(Session session, String email, String password) {
+        List<String> stored = session.createQuery("SELECT s.password FROM Student s WHERE s.email = :email", String.class)
+                .setParameter("email", email)
+                .getResultList();
+        if (stored.isEmpty()) {
+            PasswordHasher.verifyMissing(password);
+            return null;
+        }
+        if (!PasswordHasher.verify(password, stored.get(0))) {
+            return null;
+        }
+        verified.put(email, fingerprint(email, password));
+        return stored.get(0);
+    }
+
+    // random key of the fingerprints, from the regular generator: the blocking entropy of generateSeed buys nothing here
+    private static byte[] pepper() {
+        byte[] pepper = new byte[16];
+        new SecureRandom().nextBytes(pepper);
+        return pepper;
+    }
+
+    // Cheap keyed digest of the credentials, compared against the verified login cache
+    private static byte[] fingerprint(String email, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(PEPPER);
+            digest.update(email.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(password.getBytes(StandardCharsets.UTF_8));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package sba.sms.services;
+
+import org.hibernate.Session;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentEvent;
+import sba.sms.utils.HibernateUtil;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Collection;
+
+/**
+ * Outbox adds events to the 'enrollment_outbox' table on the connection of the caller's
+ * session, so they commit or roll back with the change they describe; {@link OutboxRelay}
+ * moves them to the event log once committed. Nothing is written unless the session's
+ * factory has sms.outbox.enabled, see {@link HibernateUtil#isOutboxEnabled}.
+ */
+final class Outbox {
+    private Outbox() {
+        // Utility classes should not have public constructors
+    }
+
+    static final String INSERT_EVENT = "INSERT INTO enrollment_outbox (event_type, student_email, course_id) VALUES (?, ?, ?)";
+
+    static void studentCreated(Session session, String email) {
+        record(session, EnrollmentEvent.Type.STUDENT_CREATED, email, 0);
+    }
+
+    static void courseCreated(Session session, int courseId) {
+        record(session, EnrollmentEvent.Type.COURSE_CREATED, null, courseId);
+    }
+
+    static void enrollmentAdded(Session session, String email, int courseId) {
+        record(session, EnrollmentEvent.Type.ENROLLMENT_ADDED, email, courseId);
+    }
+
+    /**
+     * Adds the ENROLLMENT_ADDED events of a chunk as one JDBC batch.
+     * @param session{object} - session of the transaction that registers them
+     * @param added{Collection} - the enrollments the transaction added
+     */
+    static void enrollmentsAdded(Session session, Collection<Enrollment> added) {
+        if (added.isEmpty() || !HibernateUtil.isOutboxEnabled(session.getSessionFactory())) {
+            return;
+        }
+        session.doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_EVENT)) {
+                for (Enrollment enrollment : added) {
+                    insert.setInt(1, EnrollmentEvent.Type.ENROLLMENT_ADDED.getCode());
+                    insert.setString(2, enrollment.getEmail());
+                    insert.setInt(3, enrollment.getCourseId());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+    }
+
+    private static void record(Session session, EnrollmentEvent.Type type, String email, int courseId) {
+        if (!HibernateUtil.isOutboxEnabled(session.getSessionFactory())) {
+            return;
+        }
+        session.doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_EVENT)) {
+                insert.setInt(1, type.getCode());
+                if (email == null) {
+                    insert.setNull(2, Types.VARCHAR);
+                } else {
+                    insert.setString(2, email);
+                }
+                if (courseId == 0) {
+                    insert.setNull(3, Types.INTEGER);
+                } else {
+                    insert.setInt(3, courseId);
+                }
+                insert.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,188 @@
+package sba.sms.services;
+
+import jakarta.persistence.PersistenceException;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.jdbc.Work;
+import sba.sms.models.EnrollmentEvent;
+import sba.sms.utils.EventLog;
+import sba.sms.utils.HibernateUtil;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * OutboxRelay moves the committed events of the 'enrollment_outbox' table to an {@link EventLog},
+ * so the downstream systems tail the log instead of scanning 'student_course'. One thread reads
+ * the outbox in id order every 'pollMillis', at most {@link #RELAY_BATCH_SIZE} rows at a time,
+ * appends them to the log, forces the log to the disk and only then deletes the rows. An event
+ * is therefore never lost, but a crash between the force and the delete appends its batch again
+ * on restart, so consumers see each event at least once.
+ *
+ * An event's sequence is its outbox id, and on MySQL a lower id may commit after a higher one
+ * was relayed, so the log is not in sequence order. A consumer must not skip every sequence up
+ * to the highest one it saw, that would drop a late commit. Instead it either applies events
+ * idempotently, like {@link EnrollmentReplay}, or keeps the set of sequences seen over a bounded
+ * window. The repeats of a restart are the rows of the last batch, relayed again in id order
+ * together with the rows that were still uncommitted below them, so a window of the last
+ * 2 * {@link #RELAY_BATCH_SIZE} events covers them unless more than a batch of events was
+ * uncommitted when the relay stopped. For the same reason the rows are deleted by id, not by range.
+ *
+ * One relay, with a log of its own, runs per database: the primary, or each shard.
+ */
+public class OutboxRelay implements AutoCloseable {
+    public static final int RELAY_BATCH_SIZE = 500;
+    public static final long DEFAULT_POLL_MILLIS = 10;
+
+    private final SessionFactory sessionFactory;
+    private final EventLog log;
+    private final long pollNanos;
+    private final Thread relay;
+    private final LongAdder relayed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean closed;
+
+    public OutboxRelay(EventLog log) {
+        this(HibernateUtil.getSessionFactory(), log, DEFAULT_POLL_MILLIS);
+    }
+
+    /**
+     * @param sessionFactory{object} - the database whose outbox is relayed
+     * @param log{object} - the log the events are appended to, owned by the caller
+     * @param pollMillis{long} - time in ms the relay waits after it found less than a full batch
+     */
+    public OutboxRelay(SessionFactory sessionFactory, EventLog log, long pollMillis) {
+        if (pollMillis < 1) {
+            throw new IllegalArgumentException("poll interval must be positive");
+        }
+        this.sessionFactory = sessionFactory;
+        this.log = log;
+        this.pollNanos = TimeUnit.MILLISECONDS.toNanos(pollMillis);
+        this.relay = new Thread(this::run, "outbox-relay");
+        this.relay.setDaemon(true);
+        this.relay.start();
+    }
+
+    private void run() {
+        while (!closed) {
+            int moved = 0;
+            try {
+                moved = relayBatch();
+            } catch (RuntimeException e) {
+                // the rows stay in the outbox and are tried again at the next poll
+                failures.increment();
+            }
+            if (moved < RELAY_BATCH_SIZE && !closed) {
+                LockSupport.parkNanos(this, pollNanos);
+            }
+        }
+    }
+
+    /**
+     * Relays every event committed so far, on the calling thread.
+     * @return {long} the number of events relayed
+     */
+    public long relayPending() {
+        long total = 0;
+        int moved;
+        do {
+            moved = relayBatch();
+            total += moved;
+        } while (moved == RELAY_BATCH_SIZE);
+        return total;
+    }
+
+    /**
+     * Appends the oldest outbox rows, up to {@link #RELAY_BATCH_SIZE}, to the log, forces it and
+     * deletes them. If any error occurs a PersistenceException will be thrown with an error msg
+     * and the rows stay in the outbox.
+     * @return {int} the number of events relayed
+     */
+    public synchronized int relayBatch() {
+        List<EnrollmentEvent> batch = new ArrayList<>(RELAY_BATCH_SIZE);
+        try {
+            inConnection(connection -> {
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT id, event_type, student_email, course_id, created_on FROM enrollment_outbox " +
+                        "ORDER BY id LIMIT " + RELAY_BATCH_SIZE);
+                     ResultSet rows = select.executeQuery()) {
+                    while (rows.next()) {
+                        batch.add(new EnrollmentEvent(rows.getLong(1), EnrollmentEvent.Type.ofCode(rows.getInt(2)),
+                                rows.getString(3), rows.getInt(4), rows.getTimestamp(5).getTime()));
+                    }
+                }
+            });
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            for (EnrollmentEvent event : batch) {
+                log.append(event);
+            }
+            log.force();
+            inTransaction(connection -> {
+                try (PreparedStatement delete = connection.prepareStatement("DELETE FROM enrollment_outbox WHERE id = ?")) {
+                    for (EnrollmentEvent event : batch) {
+                        delete.setLong(1, event.getSequence());
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+            });
+        } catch (Exception e) {
+            throw new PersistenceException("Error relaying outbox events", e);
+        }
+        relayed.add(batch.size());
+        return batch.size();
+    }
+
+    public long getRelayed() {
+        return relayed.sum();
+    }
+
+    /**
+     * @return {long} the number of polls that failed and were tried again
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Stops the relay thread after its current batch. The rows left in the outbox are relayed
+     * by the next relay started on the database; the log stays open.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(relay);
+        try {
+            relay.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void inConnection(Work work) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.doWork(work);
+        }
+    }
+
+    private void inTransaction(Work work) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                session.doWork(work);
+                transaction.commit();
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package sba.sms.services;
+
+import org.hibernate.JDBCException;
+import org.hibernate.Session;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.exception.ConstraintViolationException;
+import sba.sms.models.EnrollmentStatus;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * Registration registers one student to one course on the caller's session and transaction,
+ * for {@link StudentService} and {@link BatchSession}.
+ *
+ * A seat is taken first with a single conditional update ({@code enrolled < capacity}), which
+ * locks the course row exclusively right away and keeps it locked until the commit, so
+ * registrations of one course queue on that lock. Taking it after the insert would deadlock on
+ * MySQL: the insert and its foreign key check hold a shared lock on the course row that two
+ * registrations would both need to upgrade. The 'student_course' row is then written with a
+ * plain {@code INSERT ... SELECT} from the student row, and the primary key of 'student_course'
+ * rejects an existing pair; nothing is read beforehand, so no gap lock is taken either.
+ *
+ * The insert is prepared through the session's JDBC coordinator instead of a query, so it is
+ * counted like any other statement but a rejected insert does not mark the transaction
+ * rollback-only. A caller on its own transaction rolls it
+ * back on any outcome but ADDED; a caller sharing the transaction with earlier writes asks for a
+ * savepoint before the seat update, and a rejection rolls back to it so only the seat is undone.
+ */
+final class Registration {
+    private static final String INSERT_ENROLLMENT = "INSERT INTO student_course (student_email, course_id) " +
+                                                    "SELECT s.email, ? FROM student s WHERE s.email = ?";
+
+    private Registration() {
+        // Utility classes should not have public constructors
+    }
+
+    /**
+     * Registers the student to the course and adds the outbox event of an ADDED registration.
+     * Every outcome takes two statements: the seat update and either the insert or the lookup
+     * of why no seat was taken. A rejected registration leaves its seat taken unless it was
+     * asked to keep the transaction, the caller then rolls back.
+     * @param session{object} - session with an open transaction
+     * @param email{String} - email of student
+     * @param courseId{int} - id of course
+     * @param keepTransaction{boolean} - true to undo a rejected registration with a savepoint
+     *                       and leave the transaction usable for the caller's other writes
+     * @return {object} the outcome of the registration
+     */
+    static EnrollmentStatus register(Session session, String email, int courseId, boolean keepTransaction) {
+        Savepoint savepoint = keepTransaction ? session.doReturningWork(Connection::setSavepoint) : null;
+        EnrollmentStatus status = seatAndInsert(session, email, courseId);
+        if (savepoint != null) {
+            session.doWork(connection -> {
+                if (status != EnrollmentStatus.ADDED) {
+                    connection.rollback(savepoint);
+                }
+                connection.releaseSavepoint(savepoint);
+            });
+        }
+        if (status == EnrollmentStatus.ADDED) {
+            Outbox.enrollmentAdded(session, email, courseId);
+        }
+        return status;
+    }
+
+    // The seat update, then the insert; the seat stays taken after a rejected insert
+    private static EnrollmentStatus seatAndInsert(Session session, String email, int courseId) {
+        int seated = session.createQuery("UPDATE Course c SET c.enrolled = c.enrolled + 1 " +
+                                         "WHERE c.id = :courseId AND c.enrolled < c.capacity")
+                .setParameter("courseId", courseId)
+                .executeUpdate();
+        if (seated == 0) {
+            return rejection(session, email, courseId);
+        }
+        SessionImplementor owner = (SessionImplementor) session;
+        JdbcCoordinator jdbc = owner.getJdbcCoordinator();
+        PreparedStatement insert = jdbc.getStatementPreparer().prepareStatement(INSERT_ENROLLMENT);
+        try {
+            insert.setInt(1, courseId);
+            insert.setString(2, email);
+            // the course exists as it gave a seat, so no row means no such student
+            return insert.executeUpdate() == 0 ? EnrollmentStatus.UNKNOWN_STUDENT : EnrollmentStatus.ADDED;
+        } catch (SQLException e) {
+            // converted without the error log of the SqlExceptionHelper, a duplicate is an expected outcome
+            JDBCException converted = owner.getJdbcServices().getSqlExceptionHelper().getSqlExceptionConverter()
+                    .convert(e, "Could not register student to course", INSERT_ENROLLMENT);
+            if (converted instanceof ConstraintViolationException) {
+                return EnrollmentStatus.ALREADY_ENROLLED;
+            }
+            throw converted;
+        } finally {
+            jdbc.getLogicalConnection().getResourceRegistry().release(insert);
+            jdbc.afterStatementExecution();
+        }
+    }
+
+    /**
+     * Why nothing was registered, in one query: a missing student or course, an existing
+     * enrollment or a full course, in that order. Also used by {@link ShardedStudentService}
+     * when the catalog had no seat.
+     * @param session{object} - session the lookup runs on
+     * @param email{String} - email of student
+     * @param courseId{int} - id of course
+     * @return {object} the outcome of the rejected registration
+     */
+    static EnrollmentStatus rejection(Session session, String email, int courseId) {
+        Object[] found = (Object[]) session.createNativeQuery("SELECT " +
+                        "(SELECT COUNT(*) FROM student WHERE email = :email), " +
+                        "(SELECT COUNT(*) FROM course WHERE id = :courseId), " +
+                        "(SELECT COUNT(*) FROM student_course WHERE student_email = :email AND course_id = :courseId)")
+                .setParameter("email", email)
+                .setParameter("courseId", courseId)
+                .getSingleResult();
+        if (((Number) found[0]).intValue() == 0) {
+            return EnrollmentStatus.UNKNOWN_STUDENT;
+        } else if (((Number) found[1]).intValue() == 0) {
+            return EnrollmentStatus.UNKNOWN_COURSE;
+        } else if (((Number) found[2]).intValue() > 0) {
+            return EnrollmentStatus.ALREADY_ENROLLED;
+        }
+        return EnrollmentStatus.COURSE_FULL;
+    }
+}
@@ -0,0 +1,187 @@
+package sba.sms.services;
+
+import sba.sms.dao.StudentI;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RegistrationQueue is an intake pipeline for registration bursts. Callers put their
+ * registration on a bounded queue and get a future; one writer thread drains the queue in
+ * micro-batches of up to 'batchSize' registrations, waiting at most 'lingerMillis' after
+ * the first one for the batch to fill, and runs each batch with
+ * {@link StudentI#registerStudentsToCourses}, so a batch costs one commit instead of one
+ * per registration. A full queue blocks the submitting caller until the writer catches up.
+ *
+ * If a batch fails as a whole its registrations are run again one at a time, so only the
+ * failing registration completes exceptionally. The queue writes only through its delegate, so an
+ * {@link IndexedStudentService} delegate keeps its index current with every batch.
+ */
+public class RegistrationQueue implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_LINGER_MILLIS = 5;
+
+    private final StudentI delegate;
+    private final BlockingQueue<Request> queue;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final Thread writer;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder registrations = new LongAdder();
+    private volatile boolean closed;
+
+    public RegistrationQueue(StudentI delegate) {
+        this(delegate, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_LINGER_MILLIS);
+    }
+
+    /**
+     * @param delegate{object} - the service that writes the batches, registerStudentsToCourses commits
+     *                         up to {@link StudentService#ENROLLMENT_CHUNK_SIZE} registrations at once
+     * @param capacity{int} - maximum number of queued registrations before callers are blocked
+     * @param batchSize{int} - maximum number of registrations written together, keep it within the
+     *                        chunk size of the delegate for one commit per batch
+     * @param lingerMillis{long} - time in ms the writer waits for a batch to fill
+     */
+    public RegistrationQueue(StudentI delegate, int capacity, int batchSize, long lingerMillis) {
+        if (capacity < 1 || batchSize < 1 || lingerMillis < 0) {
+            throw new IllegalArgumentException("capacity and batch size must be positive, linger not negative");
+        }
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.writer = new Thread(this::drain, "registration-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a registration, blocking while the queue is full.
+     * @param email{String} - email of student
+     * @param courseId{int} - id of the course
+     * @return {CompletableFuture} completed with the status of this registration once its batch is written
+     */
+    public CompletableFuture<EnrollmentStatus> submit(String email, int courseId) {
+        if (closed) {
+            throw new RejectedExecutionException("registration queue is closed");
+        }
+        Request request = new Request(new Enrollment(email, courseId));
+        try {
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.result.completeExceptionally(e);
+        }
+        return request.result;
+    }
+
+    private void drain() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long wait = deadline - System.nanoTime();
+                    Request next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // nothing interrupts the writer, write what was taken and keep draining
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Request> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Enrollment> enrollments = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            enrollments.add(request.enrollment);
+        }
+        try {
+            List<EnrollmentStatus> statuses = delegate.registerStudentsToCourses(enrollments);
+            batches.increment();
+            registrations.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(statuses.get(i));
+            }
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                try {
+                    Enrollment enrollment = request.enrollment;
+                    request.result.complete(delegate.registerStudentToCourse(enrollment.getEmail(), enrollment.getCourseId()));
+                    batches.increment();
+                    registrations.increment();
+                } catch (RuntimeException failure) {
+                    request.result.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {long} the number of batches written, registrations run again alone count as one batch each
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getRegistrations() {
+        return registrations.sum();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting registrations, writes the queued ones and waits for the writer to finish.
+     * A registration that raced with close and missed the writer is rejected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Request late;
+        while ((late = queue.poll()) != null) {
+            late.result.completeExceptionally(new RejectedExecutionException("registration queue is closed"));
+        }
+    }
+
+    // a queued registration and the future of its caller
+    private static final class Request {
+        final Enrollment enrollment;
+        final CompletableFuture<EnrollmentStatus> result = new CompletableFuture<>();
+
+        Request(Enrollment enrollment) {
+            this.enrollment = enrollment;
+        }
+    }
+}
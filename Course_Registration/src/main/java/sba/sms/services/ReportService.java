@@ -0,0 +1,151 @@
+package sba.sms.services;
+
+import jakarta.persistence.PersistenceException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import sba.sms.dao.ReportI;
+import sba.sms.models.CourseEnrollment;
+import sba.sms.models.InstructorLoad;
+import sba.sms.utils.HibernateUtil;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ReportService is a concrete class. This class implements the ReportI
+ * interface with native GROUP BY queries over the 'course' and 'student_course'
+ * tables, so a report costs one statement and never loads a Course or Student
+ * entity, however large the rosters are. The reports run on a read replica when the
+ * profile has some.
+ */
+public class ReportService implements ReportI {
+    public static final String ROSTER_HEADER = "course_id,course_name,instructor,student_email,student_name";
+
+    /**
+     * Counts the roster of every course, including the empty ones, in course id order.
+     * If any errors occur a PersistenceException will be thrown with an error msg. Close
+     * session at the end regardless of errors.
+     * @return {object} one row per course
+     */
+    @SuppressWarnings("unchecked")
+    public List<CourseEnrollment> getEnrollmentPerCourse() {
+        Session session = HibernateUtil.getReadSessionFactory().openSession();
+        try {
+            List<Object[]> rows = session.createNativeQuery("SELECT c.id, c.name, c.instructor, c.capacity, " +
+                            "COUNT(sc.student_email) FROM course c LEFT JOIN student_course sc ON sc.course_id = c.id " +
+                            "GROUP BY c.id, c.name, c.instructor, c.capacity ORDER BY c.id")
+                    .getResultList();
+            List<CourseEnrollment> result = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                result.add(new CourseEnrollment(((Number) row[0]).intValue(), (String) row[1], (String) row[2],
+                        ((Number) row[3]).intValue(), ((Number) row[4]).longValue()));
+            }
+            return result;
+        } catch (Exception e) {
+            throw new PersistenceException("Error counting enrollment per course", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Sums the courses, enrollments and distinct students of every instructor, busiest
+     * instructor first. If any errors occur a PersistenceException will be thrown with an
+     * error msg. Close session at the end regardless of errors.
+     * @return {object} one row per instructor
+     */
+    @SuppressWarnings("unchecked")
+    public List<InstructorLoad> getInstructorLoads() {
+        Session session = HibernateUtil.getReadSessionFactory().openSession();
+        try {
+            List<Object[]> rows = session.createNativeQuery("SELECT c.instructor, COUNT(DISTINCT c.id), " +
+                            "COUNT(sc.student_email), COUNT(DISTINCT sc.student_email) " +
+                            "FROM course c LEFT JOIN student_course sc ON sc.course_id = c.id " +
+                            "GROUP BY c.instructor ORDER BY COUNT(sc.student_email) DESC, c.instructor")
+                    .getResultList();
+            List<InstructorLoad> result = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                result.add(new InstructorLoad((String) row[0], ((Number) row[1]).longValue(),
+                        ((Number) row[2]).longValue(), ((Number) row[3]).longValue()));
+            }
+            return result;
+        } catch (Exception e) {
+            throw new PersistenceException("Error counting load per instructor", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Writes every enrollment as a CSV line (see {@link #ROSTER_HEADER}) ordered by student and
+     * course, the primary key order of 'student_course', so the database streams the rows without
+     * sorting them; the names are primary key lookups rather than joins, which would let the
+     * database pick another driving table and sort. The rows are scrolled forward only through a
+     * stateless session and written one at a time, so memory stays flat for any number of rows
+     * (checked with 1M rows by ReportServiceTest, -Dsms.test.exportRows); pass a buffered writer. If any
+     * errors occur a PersistenceException will be thrown with an error msg and the output
+     * ends at the last row written. Close session at the end regardless of errors.
+     * @param out{Writer} - receives the header and one line per enrollment
+     * @return {long} the number of enrollments written
+     */
+    public long exportRoster(Writer out) {
+        StatelessSession session = HibernateUtil.getReadSessionFactory().openStatelessSession();
+        try (ScrollableResults<?> rows = session.createNativeQuery("SELECT sc.course_id, " +
+                        "(SELECT c.name FROM course c WHERE c.id = sc.course_id), " +
+                        "(SELECT c.instructor FROM course c WHERE c.id = sc.course_id), sc.student_email, " +
+                        "(SELECT s.name FROM student s WHERE s.email = sc.student_email) FROM student_course sc " +
+                        "ORDER BY sc.student_email, sc.course_id")
+                .setFetchSize(StudentService.STREAM_FETCH_SIZE)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            StringBuilder line = new StringBuilder(128);
+            out.write(ROSTER_HEADER);
+            out.write('\n');
+            long count = 0;
+            while (rows.next()) {
+                Object[] row = (Object[]) rows.get();
+                line.setLength(0);
+                line.append(row[0]).append(',');
+                csv(line, (String) row[1]).append(',');
+                csv(line, (String) row[2]).append(',');
+                csv(line, (String) row[3]).append(',');
+                csv(line, (String) row[4]).append('\n');
+                out.append(line);
+                count++;
+            }
+            out.flush();
+            return count;
+        } catch (Exception e) {
+            throw new PersistenceException("Error exporting roster", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    // appends the value, quoted (RFC 4180) when it holds a separator, a quote or a line break
+    static StringBuilder csv(StringBuilder line, String value) {
+        if (value == null) {
+            return line;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return line.append(value);
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        return line.append('"');
+    }
+}
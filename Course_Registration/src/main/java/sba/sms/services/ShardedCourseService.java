@@ -0,0 +1,88 @@
+package sba.sms.services;
+
+import jakarta.persistence.PersistenceException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import sba.sms.dao.CourseI;
+import sba.sms.models.Course;
+import sba.sms.utils.ShardSet;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ShardedCourseService is the CourseI of a sharded deployment, see {@link ShardSet}. The
+ * catalog lives on shard 0, which answers every read and generates the course ids; a new
+ * course is then copied, with its id, to every other shard so the registrations and
+ * course lists of the students there join locally.
+ */
+public class ShardedCourseService implements CourseI {
+    private final ShardSet shards;
+
+    public ShardedCourseService(ShardSet shards) {
+        this.shards = shards;
+    }
+
+    private CourseService catalog() {
+        return new CourseService(shards.getCatalog());
+    }
+
+    /**
+     * Creates the course in the catalog, then copies it to the other shards. If any errors
+     * occur a PersistenceException will be thrown with an error msg; a course that failed to
+     * copy stays in the catalog and the shards copied so far.
+     * @param course {object} - course object containing the course information
+     */
+    public void createCourse(Course course) {
+        catalog().createCourse(course);
+        List<SessionFactory> all = shards.getShards();
+        for (int shard = 1; shard < all.size(); shard++) {
+            copy(all.get(shard), course, shard);
+        }
+    }
+
+    // inserts the catalog row with its id and no enrollments
+    private static void copy(SessionFactory shard, Course course, int index) {
+        Session session = shard.openSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            session.createNativeQuery("INSERT INTO course (id, name, instructor, capacity, enrolled) " +
+                                      "VALUES (:id, :name, :instructor, :capacity, 0)")
+                    .setParameter("id", course.getId())
+                    .setParameter("name", course.getName())
+                    .setParameter("instructor", course.getInstructor())
+                    .setParameter("capacity", course.getCapacity())
+                    .executeUpdate();
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            throw new PersistenceException("Error copying course to shard " + index, e);
+        } finally {
+            session.close();
+        }
+    }
+
+    public Course getCourseById(int courseId) {
+        return catalog().getCourseById(courseId);
+    }
+
+    public List<Course> getAllCourses() {
+        return catalog().getAllCourses();
+    }
+
+    public List<Course> getCoursesPage(int afterId, int limit) {
+        return catalog().getCoursesPage(afterId, limit);
+    }
+
+    public long forEachCourse(Consumer<Course> action) {
+        return catalog().forEachCourse(action);
+    }
+
+    public List<Course> searchCourses(String query, int limit) {
+        return catalog().searchCourses(query, limit);
+    }
+}
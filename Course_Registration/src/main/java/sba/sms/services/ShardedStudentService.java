@@ -0,0 +1,207 @@
+package sba.sms.services;
+
+import jakarta.persistence.PersistenceException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import sba.sms.dao.StudentI;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.BoundedExecutor;
+import sba.sms.utils.ShardSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * ShardedStudentService is the StudentI of a sharded deployment, see {@link ShardSet}. A call
+ * about one student runs on the shard of the student's email, through a StudentService bound
+ * to that shard; the calls about every student are sent to all shards at once on a
+ * {@link BoundedExecutor} and their results merged in email order.
+ *
+ * Seats are counted by the catalog on shard 0. A registration of a student on another shard
+ * first takes a seat in the catalog, then registers on the student's shard, and gives the
+ * seat back if that did not add the enrollment; a crash in between leaks the seat. The
+ * course rows returned by {@link #getStudentCourses(String)} are the copies of the student's
+ * shard, whose 'enrolled' counts that shard's students only.
+ */
+public class ShardedStudentService implements StudentI {
+    private final ShardSet shards;
+    private final BoundedExecutor executor;
+    private final Map<SessionFactory, StudentService> services = new ConcurrentHashMap<>();
+
+    /**
+     * @param shards{object} - the shards and the ring placing the students
+     * @param executor{object} - runs the per shard calls of a scatter-gather, owned by the caller
+     */
+    public ShardedStudentService(ShardSet shards, BoundedExecutor executor) {
+        this.shards = shards;
+        this.executor = executor;
+    }
+
+    private StudentService serviceOf(SessionFactory shard) {
+        return services.computeIfAbsent(shard, StudentService::new);
+    }
+
+    private StudentService home(String email) {
+        return serviceOf(shards.getShards().get(shards.shardOf(email)));
+    }
+
+    // runs the call on every shard at once and returns the results in shard order
+    private <T> List<T> scatter(Function<StudentService, T> call) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (SessionFactory shard : shards.getShards()) {
+            StudentService service = serviceOf(shard);
+            futures.add(executor.submit(() -> call.apply(service)));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return results;
+    }
+
+    /**
+     * Gathers the students of every shard, queried in parallel, in email order.
+     * @return {Object} - list of all students, without their courses
+     */
+    public List<Student> getAllStudents() {
+        List<Student> all = new ArrayList<>();
+        scatter(StudentService::getAllStudents).forEach(all::addAll);
+        all.sort(Comparator.comparing(Student::getEmail));
+        return all;
+    }
+
+    /**
+     * Asks every shard, in parallel, for its page after afterEmail and keeps the first
+     * 'limit' students of the merged pages.
+     * @param afterEmail{String} - email of the last student of the previous page, null for the first page
+     * @param limit{int} - maximum number of students in the page
+     * @return {Object} - the page of students, empty after the last page
+     */
+    public List<Student> getStudentsPage(String afterEmail, int limit) {
+        List<Student> merged = new ArrayList<>();
+        scatter(service -> service.getStudentsPage(afterEmail, limit)).forEach(merged::addAll);
+        merged.sort(Comparator.comparing(Student::getEmail));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * Streams the students of one shard after the other, on the calling thread.
+     * @param action{Consumer} - called once per student
+     * @return {long} the number of students streamed
+     */
+    public long forEachStudent(Consumer<Student> action) {
+        long count = 0;
+        for (SessionFactory shard : shards.getShards()) {
+            count += serviceOf(shard).forEachStudent(action);
+        }
+        return count;
+    }
+
+    public void createStudent(Student student) {
+        home(student.getEmail()).createStudent(student);
+    }
+
+    public Student getStudentByEmail(String email) {
+        return home(email).getStudentByEmail(email);
+    }
+
+    public boolean validateStudent(String email, String password) {
+        return home(email).validateStudent(email, password);
+    }
+
+    public List<Course> getStudentCourses(String email) {
+        return home(email).getStudentCourses(email);
+    }
+
+    /**
+     * Registers the student on their shard once the catalog granted a seat; a student of
+     * shard 0 registers there directly, the catalog's counter being checked by that
+     * registration. When no seat is left the student's shard tells ALREADY_ENROLLED and
+     * UNKNOWN_STUDENT apart from COURSE_FULL, as the unsharded service does.
+     * @param email{String} - email of student
+     * @param courseId{int} courseId of courses
+     * @return {Object} - the outcome of the registration
+     */
+    public EnrollmentStatus registerStudentToCourse(String email, int courseId) {
+        int shard = shards.shardOf(email);
+        StudentService home = serviceOf(shards.getShards().get(shard));
+        if (shard == 0) {
+            return home.registerStudentToCourse(email, courseId);
+        }
+        if (!updateSeats(courseId, true)) {
+            return statusWithoutSeat(shards.getShards().get(shard), email, courseId);
+        }
+        EnrollmentStatus status;
+        try {
+            status = home.registerStudentToCourse(email, courseId);
+        } catch (RuntimeException e) {
+            updateSeats(courseId, false);
+            throw e;
+        }
+        if (status != EnrollmentStatus.ADDED) {
+            updateSeats(courseId, false);
+        }
+        return status;
+    }
+
+    /**
+     * Registers the enrollments one at a time, each as {@link #registerStudentToCourse(String, int)}.
+     * @param enrollments{Collection} - (email, courseId) pairs to register
+     * @return {Object} - the status of each enrollment, in the iteration order of enrollments
+     */
+    public List<EnrollmentStatus> registerStudentsToCourses(Collection<Enrollment> enrollments) {
+        List<EnrollmentStatus> results = new ArrayList<>(enrollments.size());
+        for (Enrollment enrollment : enrollments) {
+            results.add(registerStudentToCourse(enrollment.getEmail(), enrollment.getCourseId()));
+        }
+        return results;
+    }
+
+    // takes a free seat of the course in the catalog, or gives one back
+    private boolean updateSeats(int courseId, boolean take) {
+        Session session = shards.getCatalog().openSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            int updated = session.createQuery(take
+                            ? "UPDATE Course c SET c.enrolled = c.enrolled + 1 WHERE c.id = :courseId AND c.enrolled < c.capacity"
+                            : "UPDATE Course c SET c.enrolled = c.enrolled - 1 WHERE c.id = :courseId AND c.enrolled > 0")
+                    .setParameter("courseId", courseId)
+                    .executeUpdate();
+            transaction.commit();
+            return updated > 0;
+        } catch (Exception e) {
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            throw new PersistenceException("Error updating the seats of course " + courseId, e);
+        } finally {
+            session.close();
+        }
+    }
+
+    // the outcome of a registration the catalog had no seat for, looked up on the student's shard
+    private EnrollmentStatus statusWithoutSeat(SessionFactory shard, String email, int courseId) {
+        try (Session session = shard.openSession()) {
+            return Registration.rejection(session, email, courseId);
+        } catch (Exception e) {
+            throw new PersistenceException("Error checking registration of " + email, e);
+        }
+    }
+}
@@ -1,35 +1,104 @@
 package sba.sms.services;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.LockTimeoutException;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceException;
+import jakarta.persistence.PessimisticLockException;
 import jakarta.persistence.TypedQuery;
 import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
-import org.hibernate.cfg.Configuration;
+import org.hibernate.exception.LockAcquisitionException;
 import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 import sba.sms.dao.StudentI;
 import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
 import sba.sms.models.Student;
 import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.PasswordHasher;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 /**
  * StudentService is a concrete class. This class implements the
  * StudentI interface, overrides all abstract service methods and
  * provides implementation for each method. Lombok @Log used to
  * generate a logger file.
+ * The read-only methods run on {@link HibernateUtil#getReadSessionFactory()}, a read
+ * replica when the profile has some, and every committed write starts the caller's
+ * read-your-writes window with {@link HibernateUtil#markWritten()}. With the outbox enabled
+ * a new student or enrollment also adds its event to the outbox in the same transaction.
  */
 
 public class StudentService implements StudentI {
+    /**
+     * Number of enrollments resolved with one pair of IN-list queries and
+     * committed in one transaction by {@link #registerStudentsToCourses(Collection)}.
+     */
+    public static final int ENROLLMENT_CHUNK_SIZE = 500;
+
+    /**
+     * Number of times {@link #registerStudentToCourse(String, int)} tries again after
+     * losing a lock race on a busy course.
+     */
+    public static final int MAX_REGISTRATION_ATTEMPTS = 5;
+
+    /**
+     * Number of rows the JDBC driver fetches per round trip while streaming.
+     */
+    public static final int STREAM_FETCH_SIZE = 500;
+
+    // query hint that applies an entity graph as the fetch plan of a query
+    static final String FETCH_GRAPH = "jakarta.persistence.fetchgraph";
+
+    /**
+     * Time in ms a successful {@link #validateStudent(String, String)} is remembered.
+     */
+    public static final long VERIFIED_LOGIN_TTL_MILLIS = 60_000;
+
+    private final Logins logins = new Logins();
+
+    // null to run on the shared factories of HibernateUtil, else every call runs on this one
+    private final SessionFactory sessionFactory;
+
+    public StudentService() {
+        this(null);
+    }
+
+    /**
+     * @param sessionFactory{object} - factory every call runs on, reads included, e.g. one shard
+     *                               of {@link ShardedStudentService}; null for the shared factories of HibernateUtil
+     */
+    public StudentService(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    private SessionFactory writeFactory() {
+        return sessionFactory != null ? sessionFactory : HibernateUtil.getSessionFactory();
+    }
+
+    private SessionFactory readFactory() {
+        return sessionFactory != null ? sessionFactory : HibernateUtil.getReadSessionFactory();
+    }
+
     /**
      *  Given a student object save the student information in the Student table.
+     *  The plaintext password of the student is replaced by its salted hash before saving.
      *  if any error occurs during saving process check to see if there is a transaction
      *  in place. If so, rollback the transaction and throw a PersistenceException with error
      *  msg. Finally close session regardless of errors.
@@ -37,13 +106,17 @@ public class StudentService implements StudentI {
      * @throws PersistenceException
      */
     public void createStudent(Student student) throws PersistenceException {
-        SessionFactory factory = new Configuration().configure("hibernate.cfg.xml").addAnnotatedClass(Student.class).buildSessionFactory();
-        Session session = factory.openSession();
+        if (student.getPassword() != null && !PasswordHasher.isHashed(student.getPassword())) {
+            student.setPassword(PasswordHasher.hash(student.getPassword()));
+        }
+        Session session = writeFactory().openSession();
         Transaction transaction = null;
         try {
             transaction = session.beginTransaction();
             session.persist(student);
+            Outbox.studentCreated(session, student.getEmail());
             transaction.commit();
+            HibernateUtil.markWritten();
         } catch (Exception e) {
             if (transaction != null) {
                 transaction.rollback();
@@ -55,14 +128,13 @@ public class StudentService implements StudentI {
     }
 
     /**
-     * Return all students from the Student Table. If any error occurs throw
+     * Return all students from the Student Table, without their courses. If any error occurs throw
      * a PersistenceException error with the error msg. Close the session at the
      * end regardless of errors.
      * @return {Object} - list of all students in Student in table
      */
     public List<Student> getAllStudents() {
-        SessionFactory factory = new Configuration().configure("hibernate.cfg.xml").addAnnotatedClass(Student.class).buildSessionFactory();
-        Session session = factory.openSession();
+        Session session = readFactory().openSession();
         try {
             String query = "FROM Student";
             TypedQuery<Student> allStudents = session.createQuery(query, Student.class);
@@ -76,18 +148,73 @@ public class StudentService implements StudentI {
     }
 
     /**
-     * Returns the student that has the specify email. If any error occurs throw a PersistenceException
-     * with the error msg. Close the session at the end regardless of an error.
+     * Returns one page of students ordered by email, without their courses. The page starts right
+     * after afterEmail (keyset pagination), so every page costs the same however deep it is.
+     * If any error occurs throw a PersistenceException with the error msg. Close the session at the
+     * end regardless of errors.
+     * @param afterEmail{String} - email of the last student of the previous page, null for the first page
+     * @param limit{int} - maximum number of students in the page
+     * @return {Object} - the page of students, empty after the last page
+     */
+    public List<Student> getStudentsPage(String afterEmail, int limit) {
+        Session session = readFactory().openSession();
+        try {
+            String query = afterEmail == null
+                    ? "FROM Student s ORDER BY s.email"
+                    : "FROM Student s WHERE s.email > :afterEmail ORDER BY s.email";
+            Query<Student> page = session.createQuery(query, Student.class);
+            if (afterEmail != null) {
+                page.setParameter("afterEmail", afterEmail);
+            }
+            return page.setMaxResults(limit).getResultList();
+        } catch (Exception e) {
+            throw new PersistenceException("Error getting page of students", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Streams every student, ordered by email and without their courses, to the given action. Rows
+     * are read through a forward only cursor of a stateless session, so no student is kept after the
+     * action returns and memory stays constant whatever the table size. The session is closed when
+     * the stream ends or fails. If any error occurs throw a PersistenceException with the error msg.
+     * @param action{Consumer} - called once per student
+     * @return {long} - the number of students streamed
+     */
+    public long forEachStudent(Consumer<Student> action) {
+        StatelessSession session = readFactory().openStatelessSession();
+        try (ScrollableResults<Student> students = session.createQuery("FROM Student s ORDER BY s.email", Student.class)
+                .setFetchSize(STREAM_FETCH_SIZE)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            long count = 0;
+            while (students.next()) {
+                action.accept(students.get());
+                count++;
+            }
+            return count;
+        } catch (Exception e) {
+            throw new PersistenceException("Error streaming students", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Returns the student that has the specify email, together with the courses the student
+     * takes ({@link Student#WITH_COURSES} fetch plan, one query). If any error occurs throw a
+     * PersistenceException with the error msg. Close the session at the end regardless of an error.
      * @param email{String} - String represent a student email
      * @return {Object} Student - the student found by the email
      */
     public Student getStudentByEmail(String email) {
-        SessionFactory factory = new Configuration().configure("hibernate.cfg.xml").addAnnotatedClass(Student.class).buildSessionFactory();
-        Session session = factory.openSession();
+        Session session = readFactory().openSession();
         try {
             String query = "FROM Student s WHERE s.email = :email";
-            TypedQuery<Student> findStudent = session.createQuery(query);
+            TypedQuery<Student> findStudent = session.createQuery(query, Student.class);
             findStudent.setParameter("email", email);
+            findStudent.setHint(FETCH_GRAPH, session.getEntityGraph(Student.WITH_COURSES));
             Student student = findStudent.getSingleResult();
             return student;
         } catch (Exception e) {
@@ -99,57 +226,105 @@ public class StudentService implements StudentI {
 
     /**
      * Finds out if there is a student with the given email and password. Returns true if there is and false if not.
+     * Only the stored password hash of that one email is selected, no entity is loaded, and the password is checked
+     * with {@link PasswordHasher#verify(String, String)}. A successful check is remembered for
+     * {@link #VERIFIED_LOGIN_TTL_MILLIS} ms so repeated checks of the same credentials skip the expensive hash.
+     * A legacy plaintext password is replaced by its hash on the first successful check.
      * Otherwise, throw a PersistenceException with the error msg.
      * @param email{String} - email of student
      * @param password{String} - password of student
      * @return {boolean} - true or false that student exist in Student table.
      */
     public boolean validateStudent(String email, String password) {
-        SessionFactory factory = new Configuration().configure("hibernate.cfg.xml").addAnnotatedClass(Student.class).buildSessionFactory();
-        Session session = factory.openSession();
+        if (email == null || password == null) {
+            return false;
+        }
+        if (logins.isVerified(email, password)) {
+            return true;
+        }
+        String stored;
+        // the read session is closed before the upgrade opens a write session, both may draw on one pool
+        Session session = readFactory().openSession();
         try {
-            String query = "FROM Student s WHERE s.email = :email AND s.password = :password";
-            TypedQuery<Student> studentExist = session.createQuery(query, Student.class);
-            studentExist.setParameter("email", email);
-            studentExist.setParameter("password", password);
-            List<Student> student = studentExist.getResultList();
-            return !student.isEmpty();
+            stored = logins.verify(session, email, password);
         } catch (Exception e) {
             throw new RuntimeException("Error validating student", e);
         } finally {
             session.close();
         }
+        if (stored == null) {
+            return false;
+        }
+        if (!PasswordHasher.isHashed(stored)) {
+            try {
+                upgradeLegacyPassword(email, stored, password);
+            } catch (Exception e) {
+                throw new RuntimeException("Error validating student", e);
+            }
+        }
+        return true;
+    }
+
+    // Replaces a plaintext password with its hash on the primary, unless it changed in the meantime
+    private void upgradeLegacyPassword(String email, String legacy, String password) {
+        // hashed before a connection is taken, the hash is the slow part
+        String hash = PasswordHasher.hash(password);
+        Session session = writeFactory().openSession();
+        Transaction transaction = session.beginTransaction();
+        try {
+            session.createQuery("UPDATE Student s SET s.password = :hash WHERE s.email = :email AND s.password = :legacy")
+                    .setParameter("hash", hash)
+                    .setParameter("email", email)
+                    .setParameter("legacy", legacy)
+                    .executeUpdate();
+            transaction.commit();
+            HibernateUtil.markWritten();
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
     }
 
     /**
-     * Register the student into a course finds the student and course by the given
-     * email and courseId if both are found and student is not already register to the course
-     * add the course to the student courses and save and commit. Otherwise,
-     * rollback the transaction and close session.
+     * Register the student into a course in its own transaction, see {@link Registration} for how
+     * the seat is taken and the 'student_course' row written. Every outcome but ADDED rolls back.
+     * Lock timeouts and deadlocks are retried with a short jittered backoff up to
+     * {@link #MAX_REGISTRATION_ATTEMPTS} times before a PersistenceException is thrown.
      * @param email{String} - email of student
      * @param courseId{int} courseId of courses
+     * @return {Object} - the outcome of the registration
      */
-    public void registerStudentToCourse(String email, int courseId) {
-        SessionFactory factory = new Configuration().configure("hibernate.cfg.xml").addAnnotatedClass(Student.class).buildSessionFactory();
-        Session session = factory.openSession();
+    public EnrollmentStatus registerStudentToCourse(String email, int courseId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tryRegisterStudentToCourse(email, courseId);
+            } catch (PersistenceException e) {
+                if (attempt >= MAX_REGISTRATION_ATTEMPTS || !isLockConflict(e)) {
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    // One registration attempt in its own transaction
+    private EnrollmentStatus tryRegisterStudentToCourse(String email, int courseId) {
+        Session session = writeFactory().openSession();
         Transaction transaction = null;
         try {
             transaction = session.beginTransaction();
-            String findStudentQuery = "FROM Student s WHERE s.email = :email";
-            TypedQuery<Student> findStudent = session.createQuery(findStudentQuery, Student.class);
-            findStudent.setParameter("email", email);
-            Student student = findStudent.getSingleResult();
-            String findCourseQuery = "FROM Course c WHERE c.id = :courseId";
-            TypedQuery<Course> findCourse = session.createQuery(findCourseQuery, Course.class);
-            findCourse.setParameter("courseId", courseId);
-            Course course = findCourse.getSingleResult();
-            if (student != null && course != null && !student.isEnrolledCourse(course)) {
-                student.getCourses().add(course);
-                session.persist(student);
+            EnrollmentStatus status = Registration.register(session, email, courseId, false);
+            if (status != EnrollmentStatus.ADDED) {
+                transaction.rollback();
+                return status;
             }
             transaction.commit();
+            HibernateUtil.markWritten();
+            return status;
         } catch (Exception e) {
-            if (transaction != null) {
+            if (transaction != null && transaction.isActive()) {
                 transaction.rollback();
             }
             throw new PersistenceException("Error registering student to course", e);
@@ -158,15 +333,124 @@ public class StudentService implements StudentI {
         }
     }
 
+    // True when the failure was a lock timeout or deadlock that is worth retrying
+    private static boolean isLockConflict(Throwable e) {
+        return hasCause(e, LockAcquisitionException.class)
+                || hasCause(e, PessimisticLockException.class)
+                || hasCause(e, LockTimeoutException.class);
+    }
+
+    private static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Sleeps a random 0..2^attempt ms so retrying callers do not line up again
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1L << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Interrupted while registering student to course", e);
+        }
+    }
+
+    /**
+     * Registers many students to courses at once. The enrollments are split into chunks of
+     * {@link #ENROLLMENT_CHUNK_SIZE}; for each chunk the students and courses are found with one
+     * IN-list query each, the new courses are added to the students and the session is flushed so
+     * the 'student_course' rows go out as JDBC batches (hibernate.jdbc.batch_size). The courses of a
+     * chunk are locked in id order while their seats are handed out, so a full course reports
+     * COURSE_FULL and is never overbooked. Each chunk
+     * commits on its own, so if an error occurs the current chunk is rolled back, earlier chunks
+     * stay committed and a PersistenceException is thrown with the error msg.
+     * @param enrollments{Collection} - (email, courseId) pairs to register
+     * @return {Object} - the status of each enrollment, in the iteration order of enrollments
+     */
+    public List<EnrollmentStatus> registerStudentsToCourses(Collection<Enrollment> enrollments) {
+        List<Enrollment> pairs = new ArrayList<>(enrollments);
+        List<EnrollmentStatus> results = new ArrayList<>(pairs.size());
+        Session session = writeFactory().openSession();
+        Transaction transaction = null;
+        try {
+            for (int from = 0; from < pairs.size(); from += ENROLLMENT_CHUNK_SIZE) {
+                List<Enrollment> chunk = pairs.subList(from, Math.min(from + ENROLLMENT_CHUNK_SIZE, pairs.size()));
+                transaction = session.beginTransaction();
+                results.addAll(registerChunk(session, chunk));
+                transaction.commit();
+                HibernateUtil.markWritten();
+                session.clear();
+            }
+            return results;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new PersistenceException("Error registering students to courses", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    // Resolves one chunk of enrollments with IN-list queries and flushes the new rows in batches
+    private List<EnrollmentStatus> registerChunk(Session session, List<Enrollment> chunk) {
+        Set<String> emails = new HashSet<>();
+        Set<Integer> courseIds = new HashSet<>();
+        for (Enrollment enrollment : chunk) {
+            emails.add(enrollment.getEmail());
+            courseIds.add(enrollment.getCourseId());
+        }
+        Map<String, Student> students = new HashMap<>();
+        session.createQuery("FROM Student s WHERE s.email IN :emails", Student.class)
+                .setParameter("emails", emails)
+                .setHint(FETCH_GRAPH, session.getEntityGraph(Student.WITH_COURSES))
+                .getResultList()
+                .forEach(student -> students.put(student.getEmail(), student));
+        Map<Integer, Course> courses = new HashMap<>();
+        session.createQuery("FROM Course c WHERE c.id IN :courseIds ORDER BY c.id", Course.class)
+                .setParameter("courseIds", courseIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList()
+                .forEach(course -> courses.put(course.getId(), course));
+
+        List<EnrollmentStatus> results = new ArrayList<>(chunk.size());
+        List<Enrollment> added = new ArrayList<>();
+        for (Enrollment enrollment : chunk) {
+            Student student = students.get(enrollment.getEmail());
+            Course course = courses.get(enrollment.getCourseId());
+            if (student == null) {
+                results.add(EnrollmentStatus.UNKNOWN_STUDENT);
+            } else if (course == null) {
+                results.add(EnrollmentStatus.UNKNOWN_COURSE);
+            } else if (student.isEnrolledCourse(course)) {
+                results.add(EnrollmentStatus.ALREADY_ENROLLED);
+            } else if (course.isFull()) {
+                results.add(EnrollmentStatus.COURSE_FULL);
+            } else {
+                student.getCourses().add(course);
+                course.setEnrolled(course.getEnrolled() + 1);
+                results.add(EnrollmentStatus.ADDED);
+                added.add(enrollment);
+            }
+        }
+        session.flush();
+        Outbox.enrollmentsAdded(session, added);
+        return results;
+    }
+
     /**
      * Finds the student courses and returns the courses the student is taking. If any errors a PersistenceException
      * will be thrown with an error msg. Session will close at the end regardless of errors.
      * @param email{String} - email of student
+     * Only the course rows are loaded, not their rosters.
      * @return {Object} - list of courses and the information of the courses (id, name, instructor)
      */
     public List<Course> getStudentCourses(String email) {
-        SessionFactory factory = new Configuration().configure("hibernate.cfg.xml").addAnnotatedClass(Course.class).buildSessionFactory();
-        Session session = factory.openSession();
+        Session session = readFactory().openSession();
         try {
             String getCourses = "SELECT c.* FROM course c " +
                                 "INNER JOIN student_course sc ON c.id = sc.course_id " +
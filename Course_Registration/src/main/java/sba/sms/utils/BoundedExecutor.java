@@ -0,0 +1,116 @@
+package sba.sms.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * BoundedExecutor runs blocking service calls off the caller's thread. On JDK 21+
+ * every call gets its own virtual thread; on older JDKs a fixed pool of platform
+ * threads is used. Either way a call takes one of the 'maxInFlight' slots before it is
+ * handed over, and the submitting thread waits for a free slot, so at most 'maxInFlight'
+ * calls are pending or running at once: they never wait on more JDBC connections than
+ * the pool holds, and a burst slows its submitters down instead of queueing without bound.
+ */
+public class BoundedExecutor implements AutoCloseable {
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final boolean virtualThreads;
+
+    /**
+     * @param maxInFlight{int} - maximum number of calls running at once
+     */
+    public BoundedExecutor(int maxInFlight) {
+        this(maxInFlight, virtualThreadExecutor());
+    }
+
+    BoundedExecutor(int maxInFlight, ExecutorService virtual) {
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight, true);
+        this.virtualThreads = virtual != null;
+        // a worker may still be returning from the call whose slot was just taken again,
+        // so the queue holds at most one call per slot
+        this.executor = virtual != null ? virtual : new ThreadPoolExecutor(maxInFlight, maxInFlight,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxInFlight),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Creates an executor sized to the connection pool of the shared session factory.
+     * @return {object} a new executor
+     */
+    public static BoundedExecutor forConnectionPool() {
+        ConnectionPoolMetrics.Snapshot pool = HibernateUtil.getPoolMetrics();
+        return new BoundedExecutor(pool == null ? Runtime.getRuntime().availableProcessors() : pool.getMaxPoolSize());
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() when the running JDK has it, else null
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Waits for one of the 'maxInFlight' slots, then hands the call over; the slot is
+     * given back when the call returns.
+     * @param call{Supplier} - the blocking call
+     * @return {CompletableFuture} completed with the result or the exception of the call,
+     * or failed at once if the submitting thread is interrupted while it waits
+     * @throws RejectedExecutionException if the executor is closed
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.get();
+                } finally {
+                    inFlight.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Stops accepting calls and waits for the running ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package sba.sms.utils;
 
 import sba.sms.models.Course;
+import sba.sms.models.CourseEnrollment;
+import sba.sms.models.InstructorLoad;
 import sba.sms.models.Student;
 import sba.sms.services.CourseService;
+import sba.sms.services.ReportService;
 import sba.sms.services.StudentService;
 
 /**
@@ -22,31 +25,66 @@ public class CommandLine {
      * course objects to the 'course' table
      *
      * <b style="color:red">ATTENTION PLEASE READ</b>
-     * Uncomment the following code after creating both models and entities for ease of adding and dropping dummy data into the database, remember that
-     * in hibernate.cfg.xml <code>hibernate.hbm2ddl.auto = create-drop </code> will create and drop the tables every time the application
-     * re-runs.
-     *
+     * Run this once against an empty database; remember that the 'h2' profile (hibernate-h2.cfg.xml) sets
+     * <code>sms.schema.dropOnClose</code> and will create and drop the tables every time the
+     * application re-runs.
      *
+     * This is the small fixture the tests log in with; load large, skewed datasets with
+     * {@link DataGenerator} instead.
      */
     public static void addData(){
 
-//        StudentService studentService = new StudentService();
-//        CourseService courseService = new CourseService();
-//        studentService.createStudent(new Student("reema@gmail.com", "reema brown", PASSWORD));
-//        studentService.createStudent(new Student("annette@gmail.com", "annette allen", PASSWORD));
-//        studentService.createStudent(new Student("anthony@gmail.com", "anthony gallegos", PASSWORD));
-//        studentService.createStudent(new Student("ariadna@gmail.com", "ariadna ramirez", PASSWORD));
-//        studentService.createStudent(new Student("bolaji@gmail.com", "bolaji saibu", PASSWORD));
-//        studentService.createStudent(new Student("shirese@gmail.com", "shirese smith", PASSWORD));
-
-//        courseService.createCourse(new Course("Java", "Roger Boaitey"));
-//        courseService.createCourse(new Course("Frontend", "William Roales"));
-//        courseService.createCourse(new Course("JPA", "Jafer Alhaboubi"));
-//        courseService.createCourse(new Course("Spring Framework", "LaTonya Lewis"));
-//        courseService.createCourse(new Course("SQL", "Ezra Williams"));
-//        courseService.createCourse(new Course("GitHub", "Igor Adulyan"));
-//        courseService.createCourse(new Course("Web Services", "Raheem Abolfathzadeh"));
-//        courseService.createCourse(new Course("Microservices", "Eric Heilig"));
+        StudentService studentService = new StudentService();
+        CourseService courseService = new CourseService();
+        studentService.createStudent(new Student("reema@gmail.com", "reema brown", PASSWORD));
+        studentService.createStudent(new Student("annette@gmail.com", "annette allen", PASSWORD));
+        studentService.createStudent(new Student("anthony@gmail.com", "anthony gallegos", PASSWORD));
+        studentService.createStudent(new Student("ariadna@gmail.com", "ariadna ramirez", PASSWORD));
+        studentService.createStudent(new Student("bolaji@gmail.com", "bolaji saibu", PASSWORD));
+        studentService.createStudent(new Student("shirese@gmail.com", "shirese smith", PASSWORD));
+
+        courseService.createCourse(new Course("Java", "Roger Boaitey"));
+        courseService.createCourse(new Course("Frontend", "William Roales"));
+        courseService.createCourse(new Course("JPA", "Jafer Alhaboubi"));
+        courseService.createCourse(new Course("Spring Framework", "LaTonya Lewis"));
+        courseService.createCourse(new Course("SQL", "Ezra Williams"));
+        courseService.createCourse(new Course("GitHub", "Igor Adulyan"));
+        courseService.createCourse(new Course("Web Services", "Raheem Abolfathzadeh"));
+        courseService.createCourse(new Course("Microservices", "Eric Heilig"));
+
+    }
+
+    /**
+     * Prints the connection pool gauges and acquire-time histogram summary
+     * of the shared session factory.
+     */
+    public static void printPoolMetrics() {
+        ConnectionPoolMetrics.Snapshot metrics = HibernateUtil.getPoolMetrics();
+        System.out.printf("%s%n", metrics == null ? "No connection pool configured" : metrics);
+    }
+
+    /**
+     * Prints the latency, error and SQL counts of every service operation called so far.
+     */
+    public static void printServiceMetrics() {
+        System.out.print(ServiceMetrics.dump());
+    }
 
+    /**
+     * Prints the enrollment per course and the load per instructor, as counted by the database.
+     */
+    public static void printReports() {
+        ReportService reportService = new ReportService();
+        System.out.printf("Enrollment per course:%n-----------------------------%n");
+        System.out.printf("%-4s | %-20s | %-20s | %8s | %s%n", "ID", "Course", "Instructor", "Enrolled", "Capacity");
+        for (CourseEnrollment course : reportService.getEnrollmentPerCourse()) {
+            System.out.printf("%-4d | %-20s | %-20s | %8d | %s%n", course.getCourseId(), course.getName(), course.getInstructor(),
+                    course.getEnrolled(), course.getCapacity() == Course.UNLIMITED_CAPACITY ? "-" : String.valueOf(course.getCapacity()));
+        }
+        System.out.printf("Load per instructor:%n-----------------------------%n");
+        System.out.printf("%-20s | %7s | %11s | %s%n", "Instructor", "Courses", "Enrollments", "Students");
+        for (InstructorLoad load : reportService.getInstructorLoads()) {
+            System.out.printf("%-20s | %7d | %11d | %d%n", load.getInstructor(), load.getCourses(), load.getEnrollments(), load.getStudents());
+        }
     }
 }
@@ -0,0 +1,191 @@
+package sba.sms.utils;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConnectionPoolMetrics records gauges and an acquire-time histogram for the
+ * HikariCP pool behind a session factory. Pool size, acquire timeout and idle
+ * eviction are configured with the hibernate.hikari.* properties of the
+ * active profile.
+ *
+ * Acquire times are counted in power-of-two microsecond buckets: bucket 0
+ * holds acquires under 1us, bucket i holds acquires in [2^(i-1), 2^i) us.
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+    public static final int BUCKETS = 24;
+
+    private final HikariDataSource dataSource;
+    private final AtomicLongArray acquireBuckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    private ConnectionPoolMetrics(HikariDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Starts recording metrics for the pool behind the given session factory.
+     * @param factory{object} - a session factory
+     * @return {object} the metrics, or null when the factory does not use HikariCP
+     */
+    static ConnectionPoolMetrics attach(SessionFactory factory) {
+        ConnectionProvider provider = factory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        if (provider == null || !provider.isUnwrappableAs(HikariDataSource.class)) {
+            return null;
+        }
+        HikariDataSource dataSource = provider.unwrap(HikariDataSource.class);
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics(dataSource);
+        dataSource.setMetricsTrackerFactory(metrics);
+        return metrics;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireCount.increment();
+                acquireNanos.add(elapsedAcquiredNanos);
+                acquireBuckets.incrementAndGet(bucketOf(elapsedAcquiredNanos));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    // maps a duration to its power-of-two microsecond bucket
+    static int bucketOf(long nanos) {
+        long micros = nanos / 1_000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * Takes a point in time copy of the pool gauges and acquire-time histogram.
+     * @return {object} the current pool metrics
+     */
+    public Snapshot snapshot() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = acquireBuckets.get(i);
+        }
+        return new Snapshot(dataSource.getPoolName(),
+                pool == null ? 0 : pool.getActiveConnections(),
+                pool == null ? 0 : pool.getIdleConnections(),
+                pool == null ? 0 : pool.getTotalConnections(),
+                pool == null ? 0 : pool.getThreadsAwaitingConnection(),
+                dataSource.getMaximumPoolSize(),
+                acquireCount.sum(), acquireNanos.sum(), timeouts.sum(), buckets);
+    }
+
+    /**
+     * Snapshot is an immutable view of the pool metrics at one point in time.
+     */
+    public static class Snapshot {
+        private final String poolName;
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int waiting;
+        private final int maxPoolSize;
+        private final long acquireCount;
+        private final long acquireNanos;
+        private final long timeouts;
+        private final long[] acquireBuckets;
+
+        Snapshot(String poolName, int active, int idle, int total, int waiting, int maxPoolSize,
+                 long acquireCount, long acquireNanos, long timeouts, long[] acquireBuckets) {
+            this.poolName = poolName;
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.waiting = waiting;
+            this.maxPoolSize = maxPoolSize;
+            this.acquireCount = acquireCount;
+            this.acquireNanos = acquireNanos;
+            this.timeouts = timeouts;
+            this.acquireBuckets = acquireBuckets;
+        }
+
+        public String getPoolName() {
+            return poolName;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public long getAcquireCount() {
+            return acquireCount;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long[] getAcquireBuckets() {
+            return acquireBuckets.clone();
+        }
+
+        public double getMeanAcquireMicros() {
+            return acquireCount == 0 ? 0 : acquireNanos / 1e3 / acquireCount;
+        }
+
+        /**
+         * Estimates a percentile of the acquire time from the histogram.
+         * @param percentile{double} - between 0 and 100
+         * @return {long} the upper bound in microseconds of the bucket holding the percentile
+         */
+        public long getAcquirePercentileMicros(double percentile) {
+            long rank = (long) Math.ceil(acquireCount * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < acquireBuckets.length; i++) {
+                seen += acquireBuckets[i];
+                if (seen >= rank && seen > 0) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Pool[%s] active: %d, idle: %d, total: %d/%d, waiting: %d, "
+                            + "acquires: %d, timeouts: %d, acquire mean: %.1fus, p50: <%dus, p99: <%dus",
+                    poolName, active, idle, total, maxPoolSize, waiting, acquireCount, timeouts,
+                    getMeanAcquireMicros(), getAcquirePercentileMicros(50), getAcquirePercentileMicros(99));
+        }
+    }
+}
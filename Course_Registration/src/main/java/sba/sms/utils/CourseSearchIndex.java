@@ -0,0 +1,417 @@
+package sba.sms.utils;
+
+import sba.sms.models.Course;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * CourseSearchIndex answers course searches by name and instructor from memory, without a
+ * {@code LIKE '%x%'} scan of the catalog. Both fields are lower-cased and every character
+ * that is not a letter or digit becomes a word break. The index keeps one posting list of
+ * course numbers per 3-character gram of the text, a leading space marking the grams that
+ * start a word, plus one per 1-character word start. Next to each number a posting keeps
+ * whether the gram is in the name or the instructor, starts the name, or ends a word of it.
+ *
+ * A query matches a course when each of its words matches the name or the instructor: a word
+ * of 3 characters or more anywhere in it, a shorter one only at the start of a word. The
+ * posting lists of the query's grams are intersected, shortest first, and the courses left
+ * are checked against the text, since grams in a course need not be adjacent. They are ranked
+ * by how each word matched (whole word, word prefix, inside a word), a name match counting
+ * double and a name starting with the whole query ranking first; ties go to the shorter name,
+ * then the lower id. The flags of the postings bound the score a course can reach, so once
+ * 'limit' courses are kept the text is only checked for the courses that could displace one.
+ *
+ * Fill it with {@link #add(Course)}, see IndexedCourseService. The courses are kept as given,
+ * so results share them and their 'enrolled' is as of the time they were added. Searches
+ * take the read lock, adds the write lock. It holds up to 2^27 courses.
+ */
+public class CourseSearchIndex {
+    static final int GRAM = 3;
+    private static final int WHOLE_WORD = 3;
+    private static final int WORD_PREFIX = 2;
+    private static final int INSIDE_WORD = 1;
+    private static final int NAME_WEIGHT = 2;
+    private static final int NAME_PREFIX_BONUS = 8;
+
+    // the flags kept in the low bits of a posting, below the course number
+    private static final int FLAG_BITS = 4;
+    private static final int FLAGS = (1 << FLAG_BITS) - 1;
+    private static final int IN_NAME = 1;
+    private static final int IN_INSTRUCTOR = 2;
+    private static final int STARTS_NAME = 4;
+    private static final int ENDS_NAME_WORD = 8;
+    private static final int MAX_COURSES = 1 << (31 - FLAG_BITS);
+
+    private final StampedLock lock = new StampedLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, Integer> courseNumbers = new HashMap<>();
+    private Course[] courses = new Course[16];
+    private String[] names = new String[16];
+    private String[] instructors = new String[16];
+    // copies of the ids and name lengths, to break ties without touching the courses
+    private int[] ids = new int[16];
+    private int[] nameLengths = new int[16];
+    private int size;
+
+    /**
+     * Adds the course, unless a course with its id was added before.
+     * @param course{object} - the course, with its generated id
+     * @return {boolean} false if the index already held it
+     */
+    public boolean add(Course course) {
+        long stamp = lock.writeLock();
+        try {
+            if (courseNumbers.containsKey(course.getId())) {
+                return false;
+            }
+            if (size == MAX_COURSES) {
+                throw new IllegalStateException("Course search index is full at " + size + " courses");
+            }
+            int number = size++;
+            if (number == courses.length) {
+                int capacity = number + (number >> 1);
+                courses = Arrays.copyOf(courses, capacity);
+                names = Arrays.copyOf(names, capacity);
+                instructors = Arrays.copyOf(instructors, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                nameLengths = Arrays.copyOf(nameLengths, capacity);
+            }
+            courses[number] = course;
+            names[number] = normalize(course.getName());
+            instructors[number] = normalize(course.getInstructor());
+            ids[number] = course.getId();
+            nameLengths[number] = names[number].length();
+            courseNumbers.put(course.getId(), number);
+            indexText(names[number], number, true);
+            indexText(instructors[number], number, false);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // posts the course number under every gram and word start of the text
+    private void indexText(String text, int number, boolean name) {
+        if (text.isEmpty()) {
+            return;
+        }
+        String padded = " " + text;
+        for (int i = 0; i + GRAM <= padded.length(); i++) {
+            post(padded, i, GRAM, number, name);
+        }
+        for (int i = 0; i + 1 < padded.length(); i++) {
+            if (padded.charAt(i) == ' ') {
+                post(padded, i, 2, number, name);
+            }
+        }
+    }
+
+    private void post(String padded, int at, int length, int number, boolean name) {
+        int flags = IN_INSTRUCTOR;
+        if (name) {
+            flags = IN_NAME;
+            if (at == 0) {
+                flags |= STARTS_NAME;
+            }
+            if (at + length == padded.length() || padded.charAt(at + length) == ' ') {
+                flags |= ENDS_NAME_WORD;
+            }
+        }
+        postings.computeIfAbsent(padded.substring(at, at + length), gram -> new Postings()).add(number, flags);
+    }
+
+    /**
+     * Finds the courses matching every word of the query, best ranked first.
+     * @param query{String} - words to look for in the course names and instructors, in any case
+     * @param limit{int} - maximum number of courses returned
+     * @return {object} the matching courses, empty for a blank query
+     */
+    public List<Course> search(String query, int limit) {
+        Set<String> words = new LinkedHashSet<>(Arrays.asList(normalize(query).split(" ")));
+        words.remove("");
+        if (words.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        String phrase = String.join(" ", words);
+        long stamp = lock.readLock();
+        try {
+            Candidates candidates = null;
+            for (String word : words) {
+                Candidates matches = candidates(word, candidates == null);
+                candidates = candidates == null ? matches : candidates.retain(matches);
+            }
+            // the best 'limit' course numbers and their scores, best first
+            int[] best = new int[Math.min(limit, candidates.size)];
+            int[] bestScores = new int[best.length];
+            int found = 0;
+            for (int i = 0; i < candidates.size; i++) {
+                int number = candidates.numbers[i];
+                int worst = best.length - 1;
+                if (found == best.length && !ranksBefore(candidates.bounds[i], number, bestScores[worst], best[worst])) {
+                    continue;
+                }
+                int score = score(number, words, phrase);
+                int at;
+                if (score == 0) {
+                    continue;
+                } else if (found < best.length) {
+                    at = found++;
+                } else if (ranksBefore(score, number, bestScores[worst], best[worst])) {
+                    at = worst;
+                } else {
+                    continue;
+                }
+                while (at > 0 && ranksBefore(score, number, bestScores[at - 1], best[at - 1])) {
+                    best[at] = best[at - 1];
+                    bestScores[at] = bestScores[at - 1];
+                    at--;
+                }
+                best[at] = number;
+                bestScores[at] = score;
+            }
+            Course[] ranked = new Course[found];
+            for (int i = 0; i < found; i++) {
+                ranked[i] = courses[best[i]];
+            }
+            return Arrays.asList(ranked);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // the courses posted under every gram of the word, with the highest score the word can give them
+    private Candidates candidates(String word, boolean first) {
+        Postings starts = postings.get(" " + word.substring(0, Math.min(2, word.length())));
+        List<Postings> grams = new ArrayList<>();
+        if (word.length() < GRAM) {
+            grams.add(starts);
+        } else {
+            for (int i = 0; i + GRAM <= word.length(); i++) {
+                grams.add(postings.get(word.substring(i, i + GRAM)));
+            }
+        }
+        if (grams.contains(null)) {
+            return new Candidates(new int[0], new int[0], 0);
+        }
+        Postings last = grams.get(grams.size() - 1);
+        grams.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        // the numbers in every list, with the flags all lists share
+        Postings shortest = grams.get(0);
+        int[] numbers = new int[shortest.size];
+        int[] shared = new int[shortest.size];
+        for (int i = 0; i < shortest.size; i++) {
+            numbers[i] = shortest.entries[i] >>> FLAG_BITS;
+            shared[i] = shortest.entries[i] & FLAGS;
+        }
+        int length = numbers.length;
+        for (int l = 1; l < grams.size() && length > 0; l++) {
+            Postings other = grams.get(l);
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < length && from < other.size; i++) {
+                from = other.seek(from, numbers[i]);
+                if (from < other.size && other.entries[from] >>> FLAG_BITS == numbers[i]) {
+                    numbers[kept] = numbers[i];
+                    shared[kept++] = shared[i] & other.entries[from];
+                }
+            }
+            length = kept;
+        }
+
+        // whole word needs a word start and end in the name, a prefix a word start, short words one of them
+        int[] bounds = new int[length];
+        int startFrom = 0;
+        int lastFrom = 0;
+        for (int i = 0; i < length; i++) {
+            int start = shared[i];
+            int end = shared[i];
+            if (word.length() >= GRAM) {
+                start = 0;
+                if (starts != null) {
+                    startFrom = starts.seek(startFrom, numbers[i]);
+                    start = starts.flagsAt(startFrom, numbers[i]);
+                }
+                lastFrom = last.seek(lastFrom, numbers[i]);
+                end = last.flagsAt(lastFrom, numbers[i]);
+            }
+            int name = 0;
+            if ((shared[i] & IN_NAME) != 0) {
+                name = (start & IN_NAME) == 0 ? (word.length() < GRAM ? 0 : INSIDE_WORD)
+                        : (end & ENDS_NAME_WORD) != 0 ? WHOLE_WORD : WORD_PREFIX;
+            }
+            bounds[i] = Math.max(NAME_WEIGHT * name, (shared[i] & IN_INSTRUCTOR) != 0 ? WHOLE_WORD : 0);
+            if (first && (start & STARTS_NAME) != 0) {
+                bounds[i] += NAME_PREFIX_BONUS;
+            }
+        }
+        return new Candidates(numbers, bounds, length);
+    }
+
+    // 0 if a word does not match the course's text, else the sum of the word scores
+    private int score(int number, Set<String> words, String phrase) {
+        int total = names[number].startsWith(phrase) ? NAME_PREFIX_BONUS : 0;
+        for (String word : words) {
+            int score = Math.max(NAME_WEIGHT * matchOf(names[number], word), matchOf(instructors[number], word));
+            if (score == 0) {
+                return 0;
+            }
+            total += score;
+        }
+        return total;
+    }
+
+    // how well the word matches the text: whole word, word prefix, inside a word or not at all
+    static int matchOf(String text, String word) {
+        int best = 0;
+        for (int at = text.indexOf(word); at >= 0 && best < WHOLE_WORD; at = text.indexOf(word, at + 1)) {
+            boolean start = at == 0 || text.charAt(at - 1) == ' ';
+            boolean end = at + word.length() == text.length() || text.charAt(at + word.length()) == ' ';
+            int match = start ? (end ? WHOLE_WORD : WORD_PREFIX) : (word.length() < GRAM ? 0 : INSIDE_WORD);
+            best = Math.max(best, match);
+        }
+        return best;
+    }
+
+    // whether course a with score a ranks before course b with score b: higher score, then shorter name, then lower id
+    private boolean ranksBefore(int scoreA, int a, int scoreB, int b) {
+        if (scoreA != scoreB) {
+            return scoreA > scoreB;
+        }
+        if (nameLengths[a] != nameLengths[b]) {
+            return nameLengths[a] < nameLengths[b];
+        }
+        return ids[a] < ids[b];
+    }
+
+    /**
+     * @param text{String} - a course name, instructor or query
+     * @return {String} the text lower-cased, with single spaces between its letters and digits
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            } else if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        int end = normalized.length();
+        if (end > 0 && normalized.charAt(end - 1) == ' ') {
+            normalized.setLength(end - 1);
+        }
+        return normalized.toString();
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return {int} the number of distinct grams and word starts posted
+     */
+    public int getGramCount() {
+        long stamp = lock.readLock();
+        try {
+            return postings.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CourseSearchIndex courses: %d, grams: %d", size(), getGramCount());
+    }
+
+    // the ascending course numbers of one gram, each shifted left of its flags; a course adds
+    // each gram after the lower numbers, twice when it is in both its name and instructor
+    private static final class Postings {
+        private int[] entries = new int[4];
+        private int size;
+
+        void add(int number, int flags) {
+            if (size > 0 && entries[size - 1] >>> FLAG_BITS == number) {
+                entries[size - 1] |= flags;
+                return;
+            }
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size + (size >> 1));
+            }
+            entries[size++] = number << FLAG_BITS | flags;
+        }
+
+        // the first position from 'from' on holding a number not below the given one: the numbers
+        // looked for ascend and are mostly close together, so it looks at the next few, then gallops
+        int seek(int from, int number) {
+            int key = number << FLAG_BITS;
+            for (int probe = 0; probe < 4; probe++, from++) {
+                if (from == size || entries[from] >= key) {
+                    return from;
+                }
+            }
+            int step = 1;
+            int low = from;
+            while (from < size && entries[from] < key) {
+                low = from + 1;
+                from += step;
+                step <<= 1;
+            }
+            int at = Arrays.binarySearch(entries, low, Math.min(from, size), key);
+            return at >= 0 ? at : -at - 1;
+        }
+
+        // the flags of the number at the position, 0 if another number is there
+        int flagsAt(int at, int number) {
+            return at < size && entries[at] >>> FLAG_BITS == number ? entries[at] & FLAGS : 0;
+        }
+    }
+
+    // ascending course numbers with the highest score each can reach
+    private static final class Candidates {
+        private final int[] numbers;
+        private final int[] bounds;
+        private final int size;
+
+        Candidates(int[] numbers, int[] bounds, int size) {
+            this.numbers = numbers;
+            this.bounds = bounds;
+            this.size = size;
+        }
+
+        // the courses in both, their bounds added
+        Candidates retain(Candidates other) {
+            int kept = 0;
+            for (int i = 0, j = 0; i < size && j < other.size; ) {
+                if (numbers[i] < other.numbers[j]) {
+                    i++;
+                } else if (numbers[i] > other.numbers[j]) {
+                    j++;
+                } else {
+                    numbers[kept] = numbers[i];
+                    bounds[kept++] = bounds[i++] + other.bounds[j++];
+                }
+            }
+            return new Candidates(numbers, bounds, kept);
+        }
+    }
+}
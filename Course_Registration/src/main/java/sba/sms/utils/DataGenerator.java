@@ -0,0 +1,365 @@
+package sba.sms.utils;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import java.io.PrintStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * DataGenerator bulk-loads a synthetic, reproducible dataset into the database of
+ * the active profile: 'students' students, 'courses' courses and on average
+ * 'coursesPerStudent' enrollments per student, drawn from a Zipf distribution
+ * so a few courses are very popular and most are not. The same seed and sizes
+ * always give the same rows.
+ *
+ * Rows are written through the connection of a stateless session with JDBC
+ * batches of 'batchSize' rows, committing every {@link #ROWS_PER_TRANSACTION}
+ * students. Every student gets the hash of {@link #DEFAULT_PASSWORD}, hashed
+ * once, so loading millions of students does not hash millions of passwords.
+ * Each course's seat counter equals its enrollments, and about one course in ten
+ * is full.
+ *
+ * Run it with
+ * <code>java sba.sms.utils.DataGenerator --profile h2 --students 1000000 --courses 2000 --courses-per-student 5 --zipf 1.0 --seed 42</code>
+ */
+public class DataGenerator {
+    public static final String DEFAULT_PASSWORD = "password";
+    public static final int DEFAULT_BATCH_SIZE = 1_000;
+    public static final int ROWS_PER_TRANSACTION = 20_000;
+
+    private static final String[] FIRST_NAMES = {
+            "reema", "annette", "anthony", "ariadna", "bolaji", "shirese", "akira", "maria", "james", "li",
+            "fatima", "noah", "olivia", "mateo", "amara", "yuki", "omar", "sofia", "liam", "priya",
+            "chen", "elena", "kwame", "ines", "diego", "hana", "ivan", "zara", "lucas", "mei"};
+    private static final String[] LAST_NAMES = {
+            "brown", "allen", "gallegos", "ramirez", "saibu", "smith", "tran", "garcia", "johnson", "wang",
+            "khan", "muller", "rossi", "silva", "okafor", "tanaka", "haddad", "novak", "kim", "patel",
+            "nguyen", "ivanova", "mensah", "costa", "lopez", "sato", "petrov", "ali", "martin", "chen"};
+    private static final String[] SUBJECTS = {
+            "Java", "Frontend", "JPA", "Spring Framework", "SQL", "GitHub", "Web Services", "Microservices",
+            "Algorithms", "Data Structures", "Operating Systems", "Networks", "Compilers", "Security",
+            "Cloud Computing", "Machine Learning", "Statistics", "Linear Algebra", "Discrete Math", "Testing"};
+
+    private final long seed;
+    private final int students;
+    private final int courses;
+    private final int coursesPerStudent;
+    private final double zipfExponent;
+    private final int batchSize;
+    private final PrintStream progress;
+
+    public DataGenerator(long seed, int students, int courses, int coursesPerStudent, double zipfExponent) {
+        this(seed, students, courses, coursesPerStudent, zipfExponent, DEFAULT_BATCH_SIZE, null);
+    }
+
+    /**
+     * @param seed{long} - seed of every random choice
+     * @param students{int} - number of students
+     * @param courses{int} - number of courses, at least 1
+     * @param coursesPerStudent{int} - average number of courses per student, 0 for no enrollments
+     * @param zipfExponent{double} - skew of the course popularity, 0 is uniform, 1 is classic Zipf
+     * @param batchSize{int} - rows per JDBC batch
+     * @param progress{PrintStream} - receives a line per committed transaction, or null
+     */
+    public DataGenerator(long seed, int students, int courses, int coursesPerStudent, double zipfExponent,
+                         int batchSize, PrintStream progress) {
+        if (students < 0 || courses < 1 || coursesPerStudent < 0 || zipfExponent < 0 || batchSize < 1) {
+            throw new IllegalArgumentException("invalid dataset size");
+        }
+        this.seed = seed;
+        this.students = students;
+        this.courses = courses;
+        this.coursesPerStudent = Math.min(coursesPerStudent, courses);
+        this.zipfExponent = zipfExponent;
+        this.batchSize = batchSize;
+        this.progress = progress;
+    }
+
+    /**
+     * Loads the dataset: java sba.sms.utils.DataGenerator [--profile name] [--students n] [--courses n]
+     * [--courses-per-student n] [--zipf s] [--seed n] [--batch-size n]
+     * @param args{String[]} - the options
+     */
+    public static void main(String[] args) {
+        long seed = 42;
+        int students = 100_000;
+        int courses = 1_000;
+        int perStudent = 5;
+        double zipf = 1.0;
+        int batchSize = DEFAULT_BATCH_SIZE;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--profile": HibernateUtil.useProfile(value); break;
+                case "--students": students = Integer.parseInt(value); break;
+                case "--courses": courses = Integer.parseInt(value); break;
+                case "--courses-per-student": perStudent = Integer.parseInt(value); break;
+                case "--zipf": zipf = Double.parseDouble(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--batch-size": batchSize = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        try {
+            Report report = new DataGenerator(seed, students, courses, perStudent, zipf, batchSize, System.out).generate();
+            System.out.println(report);
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    // SplitMix64 finalizer, spreads (seed, n) over independent random streams
+    static long mix(long seed, long n) {
+        long z = seed + (n + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param n{int} - student number, from 0
+     * @return {String} the email of the n-th generated student
+     */
+    public String emailOf(int n) {
+        long h = mix(seed, n);
+        return FIRST_NAMES[(int) Math.floorMod(h, (long) FIRST_NAMES.length)] + "."
+                + LAST_NAMES[(int) Math.floorMod(h >>> 20, (long) LAST_NAMES.length)] + n + "@example.com";
+    }
+
+    private String nameOf(int n) {
+        long h = mix(seed, n);
+        return FIRST_NAMES[(int) Math.floorMod(h, (long) FIRST_NAMES.length)] + " "
+                + LAST_NAMES[(int) Math.floorMod(h >>> 20, (long) LAST_NAMES.length)];
+    }
+
+    // cumulative Zipf probabilities of the popularity ranks 0..courses-1
+    double[] zipfCdf() {
+        double[] cdf = new double[courses];
+        double total = 0;
+        for (int rank = 0; rank < courses; rank++) {
+            total += 1 / Math.pow(rank + 1, zipfExponent);
+            cdf[rank] = total;
+        }
+        for (int rank = 0; rank < courses; rank++) {
+            cdf[rank] /= total;
+        }
+        return cdf;
+    }
+
+    /**
+     * Draws the distinct popularity ranks of the courses the n-th student takes, the same
+     * ranks every time for the same seed and n.
+     * @return {int} the number of ranks written to 'ranks'
+     */
+    int drawEnrollments(int n, double[] cdf, int[] ranks) {
+        if (coursesPerStudent == 0) {
+            return 0;
+        }
+        SplittableRandom random = new SplittableRandom(mix(~seed, n));
+        int count = Math.min(1 + random.nextInt(2 * coursesPerStudent - 1), courses);
+        int drawn = 0;
+        for (int attempt = 0; drawn < count && attempt < 50 * count; attempt++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble());
+            rank = Math.min(rank < 0 ? -rank - 1 : rank, courses - 1);
+            if (!contains(ranks, drawn, rank)) {
+                ranks[drawn++] = rank;
+            }
+        }
+        // very skewed draws can keep hitting the same courses, take the most popular free ones
+        for (int rank = 0; drawn < count; rank++) {
+            if (!contains(ranks, drawn, rank)) {
+                ranks[drawn++] = rank;
+            }
+        }
+        return drawn;
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts the dataset into the database of the active profile. The students must not exist yet.
+     * @return {object} row counts and rates of the load
+     */
+    public Report generate() {
+        Report report = new Report();
+        double[] cdf = zipfCdf();
+        int[] ranks = new int[coursesPerStudent * 2];
+
+        // popularity rank -> position in the insert order, so the popular courses are spread over the ids
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] courseOfRank = new int[courses];
+        for (int i = 0; i < courses; i++) {
+            int j = random.nextInt(i + 1);
+            courseOfRank[i] = courseOfRank[j];
+            courseOfRank[j] = i;
+        }
+        // first pass: the enrollments of each course, to insert courses with their seat counters
+        int[] enrolled = new int[courses];
+        for (int n = 0; n < students; n++) {
+            int count = drawEnrollments(n, cdf, ranks);
+            for (int i = 0; i < count; i++) {
+                enrolled[courseOfRank[ranks[i]]]++;
+            }
+        }
+
+        try (StatelessSession session = HibernateUtil.getSessionFactory().openStatelessSession()) {
+            long started = System.nanoTime();
+            int[] courseIds = insertCourses(session, enrolled, random);
+            report.courses = courses;
+            report.courseNanos = System.nanoTime() - started;
+
+            started = System.nanoTime();
+            String password = PasswordHasher.hash(DEFAULT_PASSWORD);
+            for (int from = 0; from < students; from += ROWS_PER_TRANSACTION) {
+                int to = Math.min(students, from + ROWS_PER_TRANSACTION);
+                report.enrollments += insertStudents(session, from, to, password, cdf, ranks, courseOfRank, courseIds);
+                report.students = to;
+                report.studentNanos = System.nanoTime() - started;
+                if (progress != null) {
+                    progress.printf("students: %d/%d, enrollments: %d, %.0f rows/s%n", to, students,
+                            report.enrollments, report.rate(report.students + report.enrollments, report.studentNanos));
+                }
+            }
+        }
+        return report;
+    }
+
+    // inserts the courses in one transaction and returns their generated ids in insert order
+    private int[] insertCourses(StatelessSession session, int[] enrolled, SplittableRandom random) {
+        int[] ids = new int[courses];
+        Transaction transaction = session.beginTransaction();
+        try {
+            session.doWork(connection -> {
+                int maxBefore;
+                try (PreparedStatement max = connection.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM course");
+                     ResultSet rs = max.executeQuery()) {
+                    rs.next();
+                    maxBefore = rs.getInt(1);
+                }
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO course (name, instructor, capacity, enrolled) VALUES (?, ?, ?, ?)")) {
+                    for (int i = 0; i < courses; i++) {
+                        int slack = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(Math.max(10, enrolled[i] / 5));
+                        insert.setString(1, SUBJECTS[i % SUBJECTS.length] + " " + (101 + i / SUBJECTS.length));
+                        insert.setString(2, nameOf(-1 - i));
+                        insert.setInt(3, enrolled[i] + slack);
+                        insert.setInt(4, enrolled[i]);
+                        insert.addBatch();
+                        if ((i + 1) % batchSize == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT id FROM course WHERE id > ? ORDER BY id")) {
+                    select.setInt(1, maxBefore);
+                    try (ResultSet rs = select.executeQuery()) {
+                        for (int i = 0; i < courses && rs.next(); i++) {
+                            ids[i] = rs.getInt(1);
+                        }
+                    }
+                }
+            });
+            transaction.commit();
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            throw new RuntimeException("Error generating courses", e);
+        }
+        return ids;
+    }
+
+    // inserts students [from, to) with their enrollments in one transaction, returns the enrollments inserted
+    private long insertStudents(StatelessSession session, int from, int to, String password,
+                                double[] cdf, int[] ranks, int[] courseOfRank, int[] courseIds) {
+        long[] inserted = new long[1];
+        Transaction transaction = session.beginTransaction();
+        try {
+            session.doWork(connection -> {
+                try (PreparedStatement student = connection.prepareStatement(
+                        "INSERT INTO student (email, name, password) VALUES (?, ?, ?)");
+                     PreparedStatement enrollment = connection.prepareStatement(
+                             "INSERT INTO student_course (student_email, course_id) VALUES (?, ?)")) {
+                    for (int n = from; n < to; n++) {
+                        String email = emailOf(n);
+                        student.setString(1, email);
+                        student.setString(2, nameOf(n));
+                        student.setString(3, password);
+                        student.addBatch();
+                        int count = drawEnrollments(n, cdf, ranks);
+                        for (int i = 0; i < count; i++) {
+                            enrollment.setString(1, email);
+                            enrollment.setInt(2, courseIds[courseOfRank[ranks[i]]]);
+                            enrollment.addBatch();
+                        }
+                        inserted[0] += count;
+                        // the students go first, their join rows reference them
+                        if ((n - from + 1) % batchSize == 0) {
+                            student.executeBatch();
+                            enrollment.executeBatch();
+                        }
+                    }
+                    student.executeBatch();
+                    enrollment.executeBatch();
+                }
+            });
+            transaction.commit();
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            throw new RuntimeException("Error generating students " + from + " to " + to, e);
+        }
+        return inserted[0];
+    }
+
+    /**
+     * Report holds the row counts and load rates of one run.
+     */
+    public static class Report {
+        private long students;
+        private long courses;
+        private long enrollments;
+        private long courseNanos;
+        private long studentNanos;
+
+        public long getStudents() {
+            return students;
+        }
+
+        public long getCourses() {
+            return courses;
+        }
+
+        public long getEnrollments() {
+            return enrollments;
+        }
+
+        public long getElapsedMillis() {
+            return (courseNanos + studentNanos) / 1_000_000;
+        }
+
+        public double getRowsPerSecond() {
+            return rate(students + courses + enrollments, courseNanos + studentNanos);
+        }
+
+        private double rate(long rows, long nanos) {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("courses: %d, students: %d, enrollments: %d, elapsed: %d ms, %.0f rows/s",
+                    courses, students, enrollments, getElapsedMillis(), getRowsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package sba.sms.utils;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * EnrollmentIndex answers roster and membership questions ("is S in C", "who is
+ * in C", "how many seats of C are taken") from memory, without SQL. Students are
+ * interned to dense int ids and every enrollment is kept twice as a plain int: in
+ * the course list of the student and in the roster of the course, so an
+ * enrollment costs about 8 bytes instead of the entities and collections of the
+ * entity graph.
+ *
+ * Build it once with {@link #load()} and keep it current with {@link #add(String, int)}
+ * after each successful registration: IndexedStudentService does so for any StudentI,
+ * including a RegistrationQueue's delegate and a ShardedStudentService, and BatchSession
+ * when it is given the index. Lookups use an
+ * optimistic read that only falls back to a read lock while a write is running.
+ * Enrollments are never removed, since the services cannot unregister.
+ */
+public class EnrollmentIndex {
+    private static final int[] NO_IDS = new int[0];
+
+    private final StampedLock lock = new StampedLock();
+
+    private final StringIntMap studentIds = new StringIntMap();
+    private String[] emails = new String[16];
+    private int[][] coursesOfStudent = new int[16][];
+    private int[] studentDegree = new int[16];
+    private int students;
+
+    private final IntIntMap courseIds = new IntIntMap();
+    private int[] courseIdOf = new int[16];
+    private int[][] studentsOfCourse = new int[16][];
+    private int[] courseDegree = new int[16];
+    private int courses;
+
+    private long enrollments;
+
+    /**
+     * Builds the index from the 'course' and 'student_course' tables, streaming the rows
+     * through the connection of a stateless session.
+     * @return {object} the index of every enrollment in the database
+     */
+    public static EnrollmentIndex load() {
+        return load(List.of(HibernateUtil.getSessionFactory()));
+    }
+
+    /**
+     * Builds the index from the 'course' and 'student_course' tables of every database,
+     * e.g. the shards of a ShardedStudentService; a course found in several of them is
+     * indexed once.
+     * @param factories{List} - the databases to read
+     * @return {object} the index of every enrollment in those databases
+     */
+    public static EnrollmentIndex load(List<SessionFactory> factories) {
+        EnrollmentIndex index = new EnrollmentIndex();
+        for (SessionFactory factory : factories) {
+            try (StatelessSession session = factory.openStatelessSession()) {
+                session.doWork(connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.setFetchSize(500);
+                        try (ResultSet rows = statement.executeQuery("SELECT id FROM course")) {
+                            while (rows.next()) {
+                                index.courseOf(rows.getInt(1));
+                            }
+                        }
+                        try (ResultSet rows = statement.executeQuery("SELECT student_email, course_id FROM student_course")) {
+                            while (rows.next()) {
+                                index.addUnlocked(rows.getString(1), rows.getInt(2));
+                            }
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Error loading enrollment index", e);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Records an enrollment.
+     * @param email{String} - email of student
+     * @param courseId{int} - id of the course
+     * @return {boolean} false if the index already held it
+     */
+    public boolean add(String email, int courseId) {
+        long stamp = lock.writeLock();
+        try {
+            return addUnlocked(email, courseId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean addUnlocked(String email, int courseId) {
+        int student = studentOf(email);
+        int course = courseOf(courseId);
+        if (contains(coursesOfStudent[student], studentDegree[student], course)) {
+            return false;
+        }
+        coursesOfStudent[student] = append(coursesOfStudent[student], studentDegree[student]++, course);
+        studentsOfCourse[course] = append(studentsOfCourse[course], courseDegree[course]++, student);
+        enrollments++;
+        return true;
+    }
+
+    // dense id of the student, interning them on first sight
+    private int studentOf(String email) {
+        int student = studentIds.get(email);
+        if (student < 0) {
+            student = students++;
+            if (student == emails.length) {
+                int capacity = student + (student >> 1);
+                emails = Arrays.copyOf(emails, capacity);
+                coursesOfStudent = Arrays.copyOf(coursesOfStudent, capacity);
+                studentDegree = Arrays.copyOf(studentDegree, capacity);
+            }
+            emails[student] = email;
+            coursesOfStudent[student] = NO_IDS;
+            studentIds.put(email, student);
+        }
+        return student;
+    }
+
+    // dense id of the course, interning it on first sight
+    private int courseOf(int courseId) {
+        int course = courseIds.get(courseId);
+        if (course < 0) {
+            course = courses++;
+            if (course == courseIdOf.length) {
+                int capacity = course + (course >> 1);
+                courseIdOf = Arrays.copyOf(courseIdOf, capacity);
+                studentsOfCourse = Arrays.copyOf(studentsOfCourse, capacity);
+                courseDegree = Arrays.copyOf(courseDegree, capacity);
+            }
+            courseIdOf[course] = courseId;
+            studentsOfCourse[course] = NO_IDS;
+            courseIds.put(courseId, course);
+        }
+        return course;
+    }
+
+    private static int[] append(int[] ids, int size, int id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+        }
+        ids[size] = id;
+        return ids;
+    }
+
+    private static boolean contains(int[] ids, int size, int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param email{String} - email of student
+     * @param courseId{int} - id of the course
+     * @return {boolean} true if the student takes the course
+     */
+    public boolean isEnrolled(String email, int courseId) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                boolean enrolled = isEnrolledUnlocked(email, courseId);
+                if (lock.validate(stamp)) {
+                    return enrolled;
+                }
+            } catch (RuntimeException e) {
+                // arrays were resized under the optimistic read, read again under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return isEnrolledUnlocked(email, courseId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean isEnrolledUnlocked(String email, int courseId) {
+        int student = studentIds.get(email);
+        int course = courseIds.get(courseId);
+        return student >= 0 && course >= 0 && contains(coursesOfStudent[student], studentDegree[student], course);
+    }
+
+    /**
+     * @param courseId{int} - id of the course
+     * @return {int} the number of students in the course, 0 for an unknown course
+     */
+    public int getEnrolledCount(int courseId) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int count = enrolledCountUnlocked(courseId);
+                if (lock.validate(stamp)) {
+                    return count;
+                }
+            } catch (RuntimeException e) {
+                // arrays were resized under the optimistic read, read again under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return enrolledCountUnlocked(courseId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int enrolledCountUnlocked(int courseId) {
+        int course = courseIds.get(courseId);
+        return course < 0 ? 0 : courseDegree[course];
+    }
+
+    /**
+     * @param courseId{int} - id of the course
+     * @return {object} the emails of the students in the course, in enrollment order
+     */
+    public List<String> getRoster(int courseId) {
+        long stamp = lock.readLock();
+        try {
+            int course = courseIds.get(courseId);
+            if (course < 0) {
+                return List.of();
+            }
+            int[] roster = studentsOfCourse[course];
+            List<String> result = new ArrayList<>(courseDegree[course]);
+            for (int i = 0; i < courseDegree[course]; i++) {
+                result.add(emails[roster[i]]);
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param email{String} - email of student
+     * @return {int[]} the ids of the courses the student takes, in enrollment order
+     */
+    public int[] getCourseIds(String email) {
+        long stamp = lock.readLock();
+        try {
+            int student = studentIds.get(email);
+            if (student < 0) {
+                return NO_IDS;
+            }
+            int[] result = new int[studentDegree[student]];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = courseIdOf[coursesOfStudent[student][i]];
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int getStudentCount() {
+        long stamp = lock.readLock();
+        try {
+            return students;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int getCourseCount() {
+        long stamp = lock.readLock();
+        try {
+            return courses;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getEnrollmentCount() {
+        long stamp = lock.readLock();
+        try {
+            return enrollments;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Estimates the heap held by the index, assuming compressed references and
+     * Latin-1 emails, with array headers of 16 bytes and Strings of 40 bytes plus
+     * their characters.
+     * @return {long} the estimated size in bytes
+     */
+    public long estimateBytes() {
+        long stamp = lock.readLock();
+        try {
+            long bytes = studentIds.estimateBytes() + courseIds.estimateBytes();
+            bytes += 16 + 4L * emails.length + 16 + 4L * coursesOfStudent.length + 16 + 4L * studentDegree.length;
+            bytes += 16 + 4L * courseIdOf.length + 16 + 4L * studentsOfCourse.length + 16 + 4L * courseDegree.length;
+            for (int i = 0; i < students; i++) {
+                bytes += 40 + emails[i].length();
+                bytes += coursesOfStudent[i] == NO_IDS ? 0 : 16 + 4L * coursesOfStudent[i].length;
+            }
+            for (int i = 0; i < courses; i++) {
+                bytes += studentsOfCourse[i] == NO_IDS ? 0 : 16 + 4L * studentsOfCourse[i].length;
+            }
+            return bytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EnrollmentIndex students: %d, courses: %d, enrollments: %d, ~%d KB",
+                getStudentCount(), getCourseCount(), getEnrollmentCount(), estimateBytes() / 1024);
+    }
+
+    // open addressing String -> int map with linear probing, no boxing and no entry objects
+    private static final class StringIntMap {
+        private String[] keys = new String[32];
+        private int[] values = new int[32];
+        private int size;
+
+        int get(String key) {
+            String[] table = keys;
+            int[] found = values;
+            int mask = table.length - 1;
+            for (int slot = spread(key.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+                String candidate = table[slot];
+                if (candidate == null) {
+                    return -1;
+                }
+                if (candidate.equals(key)) {
+                    return found[slot];
+                }
+            }
+        }
+
+        void put(String key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = spread(key.hashCode()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            values[slot] = value;
+            keys[slot] = key;
+            size++;
+        }
+
+        private void resize() {
+            String[] newKeys = new String[keys.length * 2];
+            int[] newValues = new int[keys.length * 2];
+            int mask = newKeys.length - 1;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    int slot = spread(keys[i].hashCode()) & mask;
+                    while (newKeys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newKeys[slot] = keys[i];
+                    newValues[slot] = values[i];
+                }
+            }
+            values = newValues;
+            keys = newKeys;
+        }
+
+        long estimateBytes() {
+            return 16 + 4L * keys.length + 16 + 4L * values.length;
+        }
+    }
+
+    // open addressing int -> int map with linear probing, keys are stored plus one so 0 marks a free slot
+    private static final class IntIntMap {
+        private int[] keys = new int[32];
+        private int[] values = new int[32];
+        private int size;
+
+        int get(int key) {
+            int[] table = keys;
+            int[] found = values;
+            int mask = table.length - 1;
+            for (int slot = spread(key) & mask; ; slot = (slot + 1) & mask) {
+                int candidate = table[slot];
+                if (candidate == 0) {
+                    return -1;
+                }
+                if (candidate == key + 1) {
+                    return found[slot];
+                }
+            }
+        }
+
+        void put(int key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = spread(key) & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            values[slot] = value;
+            keys[slot] = key + 1;
+            size++;
+        }
+
+        private void resize() {
+            int[] newKeys = new int[keys.length * 2];
+            int[] newValues = new int[keys.length * 2];
+            int mask = newKeys.length - 1;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    int slot = spread(keys[i] - 1) & mask;
+                    while (newKeys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newKeys[slot] = keys[i];
+                    newValues[slot] = values[i];
+                }
+            }
+            values = newValues;
+            keys = newKeys;
+        }
+
+        long estimateBytes() {
+            return 16 + 4L * keys.length + 16 + 4L * values.length;
+        }
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
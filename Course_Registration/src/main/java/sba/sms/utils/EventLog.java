@@ -0,0 +1,432 @@
+package sba.sms.utils;
+
+import sba.sms.models.EnrollmentEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * EventLog is an append-only log of {@link EnrollmentEvent}s in a directory of memory-mapped
+ * segment files. A segment has a fixed size and is named after its base offset, the offset of
+ * an event being its byte position in the log; when an event does not fit in the current
+ * segment an end marker is written and the next segment starts at the old base plus the old
+ * size. Only one EventLog may append to a directory at a time.
+ *
+ * An event is one record aligned to 8 bytes: its length, a CRC32C of the rest, then the
+ * sequence, timestamp, course id, type code, email length (-1 for none) and UTF-8 email. The
+ * length is written last with release semantics and read with acquire semantics, so a
+ * {@link Tailer} never sees a record half written, and 0 marks the end of the written part of
+ * a segment. Appends land in the page cache; {@link #force()} writes them to the disk. On open
+ * the last segment is scanned and a torn record left by a crash, one with a wrong checksum,
+ * is cut off with everything after it.
+ */
+public class EventLog implements AutoCloseable {
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+    public static final int MIN_SEGMENT_BYTES = 4096;
+    /**
+     * Time in ns {@link Tailer#poll(long, TimeUnit)} parks between two looks at the log.
+     */
+    public static final long TAIL_PARK_NANOS = 20_000;
+
+    static final String SEGMENT_SUFFIX = ".log";
+    static final int ALIGNMENT = 8;
+    // length and checksum
+    static final int HEADER_BYTES = 8;
+    // sequence, timestamp, course id, type code and email length
+    static final int FIXED_BODY_BYTES = 8 + 8 + 4 + 1 + 2;
+    // length of the end marker of a segment
+    static final int END_OF_SEGMENT = -1;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long base;
+    private int position;
+    private volatile long endOffset;
+
+    private EventLog(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    public static EventLog open(Path directory) {
+        return open(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the log in the directory, creating both if needed, and positions it after the last
+     * complete event. If any errors occur an UncheckedIOException will be thrown with an error msg.
+     * @param directory{object} - directory of the segment files
+     * @param segmentBytes{int} - size of the new segments, a multiple of 8 of at least {@link #MIN_SEGMENT_BYTES}
+     * @return {object} the log, to be closed by the caller
+     */
+    public static EventLog open(Path directory, int segmentBytes) {
+        if (segmentBytes < MIN_SEGMENT_BYTES || segmentBytes % ALIGNMENT != 0) {
+            throw new IllegalArgumentException("segment size must be a multiple of " + ALIGNMENT +
+                                               " of at least " + MIN_SEGMENT_BYTES + " bytes");
+        }
+        EventLog log = new EventLog(directory, segmentBytes);
+        try {
+            Files.createDirectories(directory);
+            log.recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening event log " + directory, e);
+        }
+        return log;
+    }
+
+    /**
+     * Opens a tailer of the log in the directory, e.g. from another process or after a restart.
+     * @param directory{object} - directory of the segment files
+     * @param offset{long} - offset of the first event to read, 0 or an offset returned by the log or a tailer
+     * @return {object} the tailer
+     */
+    public static Tailer tail(Path directory, long offset) {
+        return new Tailer(directory, offset);
+    }
+
+    /**
+     * @param offset{long} - offset of the first event to read
+     * @return {object} a tailer of this log
+     */
+    public Tailer tail(long offset) {
+        return tail(directory, offset);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return {long} the offset the next event will be appended at
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Appends the event after the last one, rolling over to a new segment if it does not fit.
+     * If any errors occur an UncheckedIOException will be thrown with an error msg.
+     * @param event{object} - the event
+     * @return {long} the offset of the event
+     */
+    public synchronized long append(EnrollmentEvent event) {
+        if (segment == null) {
+            throw new IllegalStateException("event log " + directory + " is closed");
+        }
+        byte[] email = event.getEmail() == null ? null : event.getEmail().getBytes(StandardCharsets.UTF_8);
+        int length = align(HEADER_BYTES + FIXED_BODY_BYTES + (email == null ? 0 : email.length));
+        if (length > segmentBytes) {
+            throw new IllegalArgumentException("event of " + length + " bytes does not fit in a segment");
+        }
+        try {
+            if (position + length > segment.capacity()) {
+                roll();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error rolling over event log " + directory, e);
+        }
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(length);
+        }
+        scratch.clear();
+        scratch.putInt(0).putInt(0)
+                .putLong(event.getSequence())
+                .putLong(event.getTimestamp())
+                .putInt(event.getCourseId())
+                .put((byte) event.getType().getCode())
+                .putShort((short) (email == null ? -1 : email.length));
+        if (email != null) {
+            scratch.put(email);
+        }
+        while (scratch.position() < length) {
+            scratch.put((byte) 0);
+        }
+        crc.reset();
+        crc.update(scratch.duplicate().position(HEADER_BYTES).limit(length));
+        scratch.putInt(4, (int) crc.getValue());
+
+        ByteBuffer target = segment.duplicate();
+        target.position(position + 4);
+        target.put(scratch.position(4).limit(length));
+        INT.setRelease(segment, position, length);
+        long offset = base + position;
+        position += length;
+        endOffset = base + position;
+        return offset;
+    }
+
+    /**
+     * Writes the appended events of the current segment to the disk; the older segments were
+     * written when the log rolled over.
+     */
+    public synchronized void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Forces and closes the log. The tailers keep reading what was appended.
+     */
+    @Override
+    public synchronized void close() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error closing event log " + directory, e);
+        } finally {
+            segment = null;
+            channel = null;
+        }
+    }
+
+    // maps the last segment and finds the end of its complete events
+    private void recover() throws IOException {
+        List<Long> bases = segments(directory);
+        if (bases.isEmpty()) {
+            create(0);
+            return;
+        }
+        base = bases.get(bases.size() - 1);
+        channel = FileChannel.open(segmentPath(directory, base), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        int end = 0;
+        while (end + HEADER_BYTES <= segment.capacity()) {
+            int length = segment.getInt(end);
+            if (length == END_OF_SEGMENT) {
+                // crashed after the marker, before the next segment was created
+                position = end;
+                roll();
+                return;
+            }
+            if (length == 0 || !isValid(segment, end, length, crc)) {
+                break;
+            }
+            end += length;
+        }
+        for (int i = end; i + ALIGNMENT <= segment.capacity(); i += ALIGNMENT) {
+            segment.putLong(i, 0);
+        }
+        position = end;
+        endOffset = base + end;
+    }
+
+    // ends the current segment and starts the next one right after it
+    private void roll() throws IOException {
+        long next = base + segment.capacity();
+        FileChannel nextChannel = FileChannel.open(segmentPath(directory, next),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer nextSegment = nextChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        if (position < segment.capacity()) {
+            INT.setRelease(segment, position, END_OF_SEGMENT);
+        }
+        segment.force();
+        channel.close();
+        channel = nextChannel;
+        segment = nextSegment;
+        base = next;
+        position = 0;
+        endOffset = next;
+    }
+
+    private void create(long segmentBase) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, segmentBase),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        base = segmentBase;
+        position = 0;
+        endOffset = segmentBase;
+    }
+
+    static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    static Path segmentPath(Path directory, long segmentBase) {
+        return directory.resolve(String.format("%020d%s", segmentBase, SEGMENT_SUFFIX));
+    }
+
+    // the base offsets of the segments in the directory, in order
+    static List<Long> segments(Path directory) {
+        List<Long> bases = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return bases;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches("\\d{20}" + SEGMENT_SUFFIX.replace(".", "\\.")))
+                    .forEach(name -> bases.add(Long.parseLong(name.substring(0, 20))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error listing event log " + directory, e);
+        }
+        Collections.sort(bases);
+        return bases;
+    }
+
+    // true if a record of this length fits at the position and its checksum matches
+    static boolean isValid(ByteBuffer buffer, int position, int length, CRC32C crc) {
+        if (length < HEADER_BYTES + FIXED_BODY_BYTES || length % ALIGNMENT != 0 || length > buffer.capacity() - position) {
+            return false;
+        }
+        crc.reset();
+        crc.update(buffer.duplicate().position(position + HEADER_BYTES).limit(position + length));
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+
+    static EnrollmentEvent decode(ByteBuffer buffer, int position) {
+        int at = position + HEADER_BYTES;
+        long sequence = buffer.getLong(at);
+        long timestamp = buffer.getLong(at + 8);
+        int courseId = buffer.getInt(at + 16);
+        EnrollmentEvent.Type type = EnrollmentEvent.Type.ofCode(buffer.get(at + 20));
+        short emailLength = buffer.getShort(at + 21);
+        String email = null;
+        if (emailLength >= 0) {
+            byte[] bytes = new byte[emailLength];
+            buffer.duplicate().position(at + FIXED_BODY_BYTES).get(bytes);
+            email = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new EnrollmentEvent(sequence, type, email, courseId, timestamp);
+    }
+
+    /**
+     * Tailer reads the events of a log in order from an offset, through read-only mappings of
+     * the segment files, and follows the appends as they are made. Its offset after an event
+     * is where a new tailer resumes reading. A tailer is used by one thread at a time.
+     */
+    public static final class Tailer implements AutoCloseable {
+        private final Path directory;
+        private final CRC32C crc = new CRC32C();
+        private MappedByteBuffer segment;
+        private long base;
+        private int position;
+
+        Tailer(Path directory, long offset) {
+            this.directory = directory;
+            List<Long> bases = segments(directory);
+            long found = bases.isEmpty() ? 0 : -1;
+            for (long segmentBase : bases) {
+                if (segmentBase <= offset) {
+                    found = segmentBase;
+                }
+            }
+            if (found < 0 || offset < 0) {
+                throw new IllegalArgumentException("offset " + offset + " is before the first segment of " + directory);
+            }
+            this.base = found;
+            this.position = Math.toIntExact(offset - found);
+        }
+
+        /**
+         * @return {long} the offset of the next event to read
+         */
+        public long getOffset() {
+            return base + position;
+        }
+
+        /**
+         * Reads the next event if it was appended. If the record found is corrupt, or the offset
+         * was not that of an event, an IllegalStateException will be thrown with an error msg.
+         * @return {object} the next event, null if there is none yet
+         */
+        public EnrollmentEvent poll() {
+            while (true) {
+                if (segment == null && !map()) {
+                    return null;
+                }
+                if (position + HEADER_BYTES > segment.capacity()) {
+                    nextSegment();
+                    continue;
+                }
+                int length = (int) INT.getAcquire(segment, position);
+                if (length == 0) {
+                    return null;
+                }
+                if (length == END_OF_SEGMENT) {
+                    nextSegment();
+                    continue;
+                }
+                if (!isValid(segment, position, length, crc)) {
+                    throw new IllegalStateException("corrupt event at offset " + getOffset() + " of " + directory);
+                }
+                EnrollmentEvent event = decode(segment, position);
+                position += length;
+                return event;
+            }
+        }
+
+        /**
+         * Waits up to the timeout for the next event, parking {@link #TAIL_PARK_NANOS} ns between looks.
+         * @param timeout{long} - maximum time to wait
+         * @param unit{object} - unit of the timeout
+         * @return {object} the next event, null if none was appended in time or the thread was interrupted
+         */
+        public EnrollmentEvent poll(long timeout, TimeUnit unit) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            EnrollmentEvent event;
+            while ((event = poll()) == null) {
+                if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                LockSupport.parkNanos(TAIL_PARK_NANOS);
+            }
+            return event;
+        }
+
+        // maps the segment of the offset, false while it is not created yet
+        private boolean map() {
+            Path file = segmentPath(directory, base);
+            if (!Files.exists(file)) {
+                return false;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < MIN_SEGMENT_BYTES) {
+                    // being created
+                    return false;
+                }
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading event log " + directory, e);
+            }
+        }
+
+        private void nextSegment() {
+            base += segment.capacity();
+            position = 0;
+            segment = null;
+        }
+
+        @Override
+        public void close() {
+            segment = null;
+        }
+    }
+}
@@ -1,20 +1,47 @@
 package sba.sms.utils;
 
-import lombok.Getter;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.Metadata;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * HibernateUtil is a session factory helper class that builds a
  * secure connection to a database and permits CRUD operations on a table.
- * The session configuration derives from the hibernate.cfg.xml file in
- * the 'resources' folder.
+ * The session configuration derives from a named profile in the
+ * 'resources' folder: the default 'mysql' profile reads hibernate.cfg.xml,
+ * any other profile reads hibernate-{profile}.cfg.xml (e.g. the in-memory
+ * 'h2' profile used by tests and benchmarks).
+ *
+ * One session factory is built lazily on first use and shared by every
+ * service for the life of the process.
+ *
+ * The profiles set <code>hibernate.hbm2ddl.auto = validate</code>: the schema comes from
+ * the versioned scripts of {@link SchemaMigrator}, applied first when the profile (or the
+ * sms.schema.migrate system property) asks for it, and Hibernate only checks the mapping
+ * against the tables instead of introspecting and altering them on every start.
+ *
+ * A profile may list read replicas in sms.replica.urls; each gets a session factory of
+ * its own, built from the same configuration with the replica's URL, and the read-only
+ * service methods run on {@link #getReadSessionFactory()}, which a {@link ReplicaRouter}
+ * spreads over the replicas. Writes always run on the primary {@link #getSessionFactory()}.
  *
- *  <b style="color:red">WARNING! </b>
- *  <b>DO NOT MODIFY THIS CODE</b>
+ * For the sharded services the primary is shard 0 and sms.shard.urls lists the others,
+ * see {@link #getShardSessionFactories()}.
+ *
+ * With sms.outbox.enabled the writes also record their events for the event log, see
+ * {@link #isOutboxEnabled(SessionFactory)}.
  */
 public class HibernateUtil {
     private HibernateUtil() {
@@ -22,44 +49,361 @@ public class HibernateUtil {
     }
 
     /**
-     * @Getter builds a standard getter method for the object
-     * sessionFactory.
+     * System property (or SMS_PROFILE environment variable) that selects
+     * the configuration profile.
+     */
+    public static final String PROFILE_PROPERTY = "sms.profile";
+    public static final String DEFAULT_PROFILE = "mysql";
+    /**
+     * System property that overrides hibernate.hbm2ddl.auto of the profile, e.g. "update"
+     * to compare the old startup with the validated one.
+     */
+    public static final String SCHEMA_ACTION_PROPERTY = "sms.schema.action";
+    /**
+     * Setting with the comma separated JDBC URLs of the read replicas, none if blank.
+     * The replicas use the user and password of the primary.
+     */
+    public static final String REPLICA_URLS_PROPERTY = "sms.replica.urls";
+    /**
+     * Setting that picks a replica per read: "round-robin" (default) or "least-loaded".
+     */
+    public static final String REPLICA_SELECTION_PROPERTY = "sms.replica.selection";
+    /**
+     * Setting with the time in ms a thread reads from the primary after it wrote.
+     */
+    public static final String READ_YOUR_WRITES_PROPERTY = "sms.replica.readYourWritesMillis";
+    public static final long DEFAULT_READ_YOUR_WRITES_MILLIS = 2_000;
+    /**
+     * Setting with the comma separated JDBC URLs of the shards after the primary, which is
+     * shard 0. The shards use the user and password of the primary.
+     */
+    public static final String SHARD_URLS_PROPERTY = "sms.shard.urls";
+    /**
+     * Setting that makes the services add the event of each student, course and enrollment
+     * they write to the 'enrollment_outbox' table, in the same transaction, for an
+     * {@code OutboxRelay} to append to the event log.
+     */
+    public static final String OUTBOX_PROPERTY = "sms.outbox.enabled";
+
+    private static volatile SessionFactory sessionFactory;
+    private static volatile ConnectionPoolMetrics poolMetrics;
+    private static volatile ReplicaRouter replicaRouter;
+    // the shards after the primary, null until getShardSessionFactories builds them
+    private static List<SessionFactory> shards;
+    private static String profile;
+    private static boolean shutdownHookRegistered;
+
+    /**
+     * Returns the shared session factory, building it from the active
+     * profile the first time it is requested.
+     * @return {object} the process wide session factory
+     */
+    public static SessionFactory getSessionFactory() {
+        SessionFactory factory = sessionFactory;
+        if (factory == null) {
+            synchronized (HibernateUtil.class) {
+                factory = sessionFactory;
+                if (factory == null) {
+                    factory = buildSessionFactory(getProfile());
+                    poolMetrics = ConnectionPoolMetrics.attach(factory);
+                    replicaRouter = buildReplicaRouter(getProfile(), factory);
+                    sessionFactory = factory;
+                    registerShutdownHook();
+                }
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Returns the session factory a read-only call runs on: a read replica, or the
+     * primary if the profile has no replicas or the calling thread wrote within the
+     * read-your-writes window.
+     * @return {object} a replica or the primary session factory
      */
-    @Getter
-    private static SessionFactory sessionFactory = buildSessionFactory();
+    public static SessionFactory getReadSessionFactory() {
+        SessionFactory factory = getSessionFactory();
+        ReplicaRouter router = replicaRouter;
+        return router == null ? factory : router.forRead();
+    }
 
     /**
-     * Method builds a session factory from the 'hibernate.cfg.xml' file
-     * in the 'resources' folder and returns a sessionFactory object.
-     * @return
+     * Records that the calling thread committed a write, so its reads go to the primary
+     * for the read-your-writes window. Does nothing without replicas.
      */
-    private static SessionFactory buildSessionFactory()
-    {
-        try
-        {
-            if (sessionFactory == null)
-            {
-                StandardServiceRegistry standardRegistry = new StandardServiceRegistryBuilder()
-                        .configure("hibernate.cfg.xml").build();
+    public static void markWritten() {
+        ReplicaRouter router = replicaRouter;
+        if (router != null) {
+            router.markWritten();
+        }
+    }
 
-                Metadata metaData = new MetadataSources(standardRegistry)
-                        .getMetadataBuilder()
-                        .build();
+    /**
+     * @return {object} the router of the read replicas, null if the profile has none
+     */
+    public static ReplicaRouter getReplicaRouter() {
+        getSessionFactory();
+        return replicaRouter;
+    }
 
-                sessionFactory = metaData.getSessionFactoryBuilder().build();
+    /**
+     * Returns the session factories of the shards: the primary first, as shard 0, then
+     * one per URL of sms.shard.urls, built on first use.
+     * @return {List} the shards in shard order
+     */
+    public static synchronized List<SessionFactory> getShardSessionFactories() {
+        SessionFactory primary = getSessionFactory();
+        if (shards == null) {
+            shards = new ArrayList<>();
+            String urls = setting(primary.getProperties(), SHARD_URLS_PROPERTY);
+            if (urls != null) {
+                for (String url : urls.split(",")) {
+                    if (!url.isBlank()) {
+                        addShard(url.trim());
+                    }
+                }
             }
-            return sessionFactory;
-        } catch (Exception ex) {
-            throw new ExceptionInInitializerError(ex);
         }
+        List<SessionFactory> all = new ArrayList<>(shards.size() + 1);
+        all.add(primary);
+        all.addAll(shards);
+        return all;
+    }
+
+    /**
+     * Builds the session factory of one more shard from the active profile, migrating and
+     * validating its schema like the primary's, and appends it to
+     * {@link #getShardSessionFactories()}. It is closed by {@link #shutdown()}.
+     * @param url{String} - JDBC URL of the shard
+     * @return {object} the new shard's session factory
+     */
+    public static synchronized SessionFactory addShard(String url) {
+        if (shards == null) {
+            getShardSessionFactories();
+        }
+        String name = getProfile();
+        StandardServiceRegistryBuilder builder = configure(name, url, "-shard-" + (shards.size() + 1));
+        SessionFactory shard = build(builder, name, true);
+        shards.add(shard);
+        return shard;
     }
 
     /**
-     * Closes the session factory.
+     * @param factory{object} - the session factory a write runs on, the primary or a shard
+     * @return {boolean} true if the write adds its events to the outbox, see {@link #OUTBOX_PROPERTY}
      */
-    public static void shutdown() {
-        getSessionFactory().close();
+    public static boolean isOutboxEnabled(SessionFactory factory) {
+        return isEnabled(factory.getProperties(), OUTBOX_PROPERTY);
     }
 
+    /**
+     * Returns the current gauges and acquire-time histogram of the connection
+     * pool, building the session factory if needed.
+     * @return {object} pool metrics snapshot, or null if the profile does not use a pool
+     */
+    public static ConnectionPoolMetrics.Snapshot getPoolMetrics() {
+        getSessionFactory();
+        ConnectionPoolMetrics metrics = poolMetrics;
+        return metrics == null ? null : metrics.snapshot();
+    }
 
+    /**
+     * Returns the active profile. An explicit {@link #useProfile(String)} wins over
+     * the system property, which wins over the environment variable.
+     * @return {String} the name of the active profile
+     */
+    public static synchronized String getProfile() {
+        if (profile == null) {
+            String selected = System.getProperty(PROFILE_PROPERTY, System.getenv("SMS_PROFILE"));
+            profile = (selected == null || selected.isBlank()) ? DEFAULT_PROFILE : selected.trim();
+        }
+        return profile;
+    }
+
+    /**
+     * Switches to another profile. The current session factory (if any) is closed
+     * and the next call to {@link #getSessionFactory()} builds one from the new profile.
+     * @param name{String} - profile name, e.g. "mysql" or "h2"
+     */
+    public static synchronized void useProfile(String name) {
+        shutdown();
+        profile = name;
+    }
+
+    /**
+     * Maps a profile name to its configuration file in the 'resources' folder.
+     * @param name{String} - profile name
+     * @return {String} the configuration resource name
+     */
+    public static String configResource(String name) {
+        return DEFAULT_PROFILE.equals(name) ? "hibernate.cfg.xml" : "hibernate-" + name + ".cfg.xml";
+    }
+
+    /**
+     * Method builds a session factory from the configuration file of the
+     * given profile and returns a sessionFactory object. Pending schema scripts
+     * are applied first if sms.schema.migrate is enabled, then the mapping is
+     * checked as the profile's hibernate.hbm2ddl.auto says.
+     * @param name{String} - profile name
+     * @return {object} a new session factory
+     */
+    static SessionFactory buildSessionFactory(String name) {
+        StandardServiceRegistryBuilder builder = new StandardServiceRegistryBuilder().configure(configResource(name));
+        String schemaAction = System.getProperty(SCHEMA_ACTION_PROPERTY);
+        if (schemaAction != null && !schemaAction.isBlank()) {
+            builder.applySetting(AvailableSettings.HBM2DDL_AUTO, schemaAction.trim());
+        }
+        return build(builder, name, true);
+    }
+
+    /**
+     * Builds the session factory of a read replica from the configuration file of the
+     * given profile: the replica's URL, read-only connections in a pool of its own, and
+     * neither migrations nor validation, the replica's schema is the primary's.
+     * @param name{String} - profile name
+     * @param url{String} - JDBC URL of the replica
+     * @param index{int} - position of the replica in sms.replica.urls, names its pool
+     * @return {object} a new session factory
+     */
+    static SessionFactory buildReplicaSessionFactory(String name, String url, int index) {
+        StandardServiceRegistryBuilder builder = configure(name, url, "-replica-" + index)
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "none")
+                .applySetting("hibernate.hikari.readOnly", "true");
+        return build(builder, name, false);
+    }
+
+    // the profile's configuration on another database, in a pool named after the profile's
+    private static StandardServiceRegistryBuilder configure(String name, String url, String poolSuffix) {
+        StandardServiceRegistryBuilder builder = new StandardServiceRegistryBuilder().configure(configResource(name));
+        Object poolName = builder.getSettings().get("hibernate.hikari.poolName");
+        return builder.applySetting(AvailableSettings.URL, url)
+                .applySetting("hibernate.hikari.poolName", (poolName == null ? "sms" : poolName) + poolSuffix);
+    }
+
+    private static SessionFactory build(StandardServiceRegistryBuilder builder, String name, boolean primary) {
+        StandardServiceRegistry standardRegistry = builder.build();
+        try {
+            if (primary && isEnabled(standardRegistry.getService(ConfigurationService.class).getSettings(), SchemaMigrator.MIGRATE_PROPERTY)) {
+                migrate(standardRegistry.getService(ConnectionProvider.class));
+            }
+            Metadata metaData = new MetadataSources(standardRegistry)
+                    .getMetadataBuilder()
+                    .build();
+
+            return metaData.getSessionFactoryBuilder().build();
+        } catch (Exception ex) {
+            StandardServiceRegistryBuilder.destroy(standardRegistry);
+            throw new RuntimeException("Error building session factory for profile " + name, ex);
+        }
+    }
+
+    // a router over the replicas listed in the profile, null if there are none
+    private static ReplicaRouter buildReplicaRouter(String name, SessionFactory primary) {
+        Map<String, Object> settings = primary.getProperties();
+        String urls = setting(settings, REPLICA_URLS_PROPERTY);
+        if (urls == null || urls.isBlank()) {
+            return null;
+        }
+        List<SessionFactory> replicas = new ArrayList<>();
+        try {
+            for (String url : urls.split(",")) {
+                if (!url.isBlank()) {
+                    replicas.add(buildReplicaSessionFactory(name, url.trim(), replicas.size()));
+                }
+            }
+            String window = setting(settings, READ_YOUR_WRITES_PROPERTY);
+            return new ReplicaRouter(primary, replicas,
+                    ReplicaRouter.selectionOf(setting(settings, REPLICA_SELECTION_PROPERTY)),
+                    window == null || window.isBlank() ? DEFAULT_READ_YOUR_WRITES_MILLIS : Long.parseLong(window.trim()));
+        } catch (RuntimeException e) {
+            replicas.forEach(SessionFactory::close);
+            primary.close();
+            throw e;
+        }
+    }
+
+    // a system property wins over the profile setting
+    private static String setting(Map<?, ?> settings, String name) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            Object setting = settings.get(name);
+            value = setting == null ? null : setting.toString();
+        }
+        return value;
+    }
+
+    private static boolean isEnabled(Map<?, ?> settings, String name) {
+        String value = setting(settings, name);
+        return value != null && Boolean.parseBoolean(value.trim());
+    }
+
+    private static void migrate(ConnectionProvider provider) throws SQLException {
+        Connection connection = provider.getConnection();
+        try {
+            SchemaMigrator.migrate(connection);
+        } finally {
+            provider.closeConnection(connection);
+        }
+    }
+
+    // drops the schema of a profile with sms.schema.dropOnClose before its pool closes
+    private static void dropSchema(SessionFactory factory) {
+        if (!isEnabled(factory.getProperties(), SchemaMigrator.DROP_ON_CLOSE_PROPERTY)) {
+            return;
+        }
+        ConnectionProvider provider = factory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        try {
+            Connection connection = provider.getConnection();
+            try {
+                SchemaMigrator.drop(connection);
+            } finally {
+                provider.closeConnection(connection);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error dropping the schema", e);
+        }
+    }
+
+    // closes the factory when the JVM exits, e.g. App's System.exit on logout
+    private static void registerShutdownHook() {
+        if (!shutdownHookRegistered) {
+            Runtime.getRuntime().addShutdownHook(new Thread(HibernateUtil::shutdown, "hibernate-shutdown"));
+            shutdownHookRegistered = true;
+        }
+    }
+
+    /**
+     * Closes the session factory, if one was built, and those of the read replicas and shards,
+     * dropping the schema first if the profile sets sms.schema.dropOnClose. A later call to
+     * {@link #getSessionFactory()} builds a fresh one.
+     */
+    public static synchronized void shutdown() {
+        SessionFactory factory = sessionFactory;
+        ReplicaRouter router = replicaRouter;
+        List<SessionFactory> extraShards = shards;
+        sessionFactory = null;
+        poolMetrics = null;
+        replicaRouter = null;
+        shards = null;
+        if (router != null) {
+            router.close();
+        }
+        if (extraShards != null) {
+            for (SessionFactory shard : extraShards) {
+                try {
+                    dropSchema(shard);
+                } finally {
+                    shard.close();
+                }
+            }
+        }
+        if (factory != null && !factory.isClosed()) {
+            try {
+                dropSchema(factory);
+            } finally {
+                factory.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,286 @@
+package sba.sms.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * LruCache is a small bounded, thread safe cache. Entries expire a fixed time after they
+ * are stored and the least recently used entries are evicted once the cache is full. By default
+ * every entry weighs 1, so the bound is a number of entries; with a weigher the bound is the
+ * total weight, e.g. the number of elements of cached lists, and a value heavier than the
+ * whole bound is returned to its caller but never stored.
+ * Entries live in a ConcurrentHashMap: hits take no lock, and stores and invalidations of a
+ * key only serialize with other writes to the same key. Every load registers a token for its
+ * key; invalidating the key (or the whole cache) drops the token, so a load that overlaps an
+ * invalidation of its own key is returned to its caller but not stored and an invalidated
+ * value never comes back, while loads of other keys are unaffected. Eviction is the only step
+ * that takes a cache wide lock: once the bound is exceeded, one pass drops the least recently
+ * used entries until the cache is a sixteenth below its bound.
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final ToIntFunction<? super V> weigher;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, LoadToken> loading = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong ticks = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize{int} - maximum number of entries
+     * @param ttlMillis{long} - time in ms an entry stays valid after it is stored
+     */
+    public LruCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, value -> 1);
+    }
+
+    /**
+     * @param maxWeight{int} - maximum total weight of the entries
+     * @param ttlMillis{long} - time in ms an entry stays valid after it is stored
+     * @param weigher{ToIntFunction} - weight of a value, computed once when it is stored
+     */
+    public LruCache(int maxWeight, long ttlMillis, ToIntFunction<? super V> weigher) {
+        this(maxWeight, ttlMillis, weigher, System::nanoTime);
+    }
+
+    LruCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        this(maxSize, ttlMillis, value -> 1, clock);
+    }
+
+    LruCache(int maxSize, long ttlMillis, ToIntFunction<? super V> weigher, LongSupplier clock) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("maxSize and ttlMillis must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.clock = clock;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the cached value for the key, or null if it is absent or expired.
+     * @param key{K} - cache key
+     * @return {V} the cached value or null
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && clock.getAsLong() - entry.storedAt < ttlNanos) {
+            entry.accessed = ticks.incrementAndGet();
+            hits.increment();
+            return entry.value;
+        }
+        if (entry != null && entries.remove(key, entry)) {
+            weight.addAndGet(-entry.weight);
+            evictions.increment();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the cached value for the key, loading and storing it on a miss.
+     * Null values returned by the loader are not stored.
+     * @param key{K} - cache key
+     * @param loader{Function} - loads the value on a miss
+     * @return {V} the cached or loaded value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        LoadToken token = new LoadToken(epoch.get());
+        loading.put(key, token);
+        try {
+            V value = loader.apply(key);
+            if (value != null) {
+                store(key, value, token);
+            }
+            return value;
+        } finally {
+            loading.remove(key, token);
+        }
+    }
+
+    /**
+     * Stores a value, evicting the least recently used entries until the cache is within its
+     * bound. A value heavier than the bound is not stored. Loads of the key that are still
+     * running will not overwrite it.
+     * @param key{K} - cache key
+     * @param value{V} - value to cache
+     */
+    public void put(K key, V value) {
+        store(key, value, null);
+    }
+
+    private void store(K key, V value, LoadToken token) {
+        int valueWeight = weigher.applyAsInt(value);
+        entries.compute(key, (k, old) -> {
+            if (token == null) {
+                loading.remove(k);
+            } else if (loading.get(k) != token || token.epoch != epoch.get()) {
+                return old;
+            }
+            if (old != null) {
+                weight.addAndGet(-old.weight);
+            }
+            if (valueWeight > maxSize) {
+                return null;
+            }
+            weight.addAndGet(valueWeight);
+            return new Entry<>(value, clock.getAsLong(), valueWeight, ticks.incrementAndGet());
+        });
+        if (weight.get() > maxSize) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        evictionLock.lock();
+        try {
+            if (weight.get() <= maxSize) {
+                return;
+            }
+            List<Candidate<K, V>> candidates = new ArrayList<>(entries.size());
+            entries.forEach((key, entry) -> candidates.add(new Candidate<>(key, entry)));
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.accessed));
+            long target = maxSize - maxSize / 16;
+            for (Candidate<K, V> candidate : candidates) {
+                if (weight.get() <= target) {
+                    break;
+                }
+                if (entries.remove(candidate.key, candidate.entry)) {
+                    weight.addAndGet(-candidate.entry.weight);
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the entry of one key.
+     * @param key{K} - cache key
+     */
+    public void invalidate(K key) {
+        entries.compute(key, (k, old) -> {
+            loading.remove(k);
+            if (old != null) {
+                weight.addAndGet(-old.weight);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        loading.clear();
+        for (K key : entries.keySet()) {
+            invalidate(key);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return {object} the hit, miss and eviction counters since the cache was created
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long storedAt;
+        final int weight;
+        volatile long accessed;
+
+        Entry(V value, long storedAt, int weight, long accessed) {
+            this.value = value;
+            this.storedAt = storedAt;
+            this.weight = weight;
+            this.accessed = accessed;
+        }
+    }
+
+    private static class Candidate<K, V> {
+        final K key;
+        final Entry<V> entry;
+        final long accessed;
+
+        Candidate(K key, Entry<V> entry) {
+            this.key = key;
+            this.entry = entry;
+            this.accessed = entry.accessed;
+        }
+    }
+
+    private static class LoadToken {
+        final long epoch;
+
+        LoadToken(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Stats is an immutable copy of the cache counters. Evictions count entries
+     * dropped for size or because they expired.
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+
+        Stats(long hits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "Cache[hits: " + hits + ", misses: " + misses + ", evictions: " + evictions + ", size: " + size + "]";
+        }
+    }
+}
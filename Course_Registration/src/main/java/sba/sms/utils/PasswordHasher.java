@@ -0,0 +1,124 @@
+package sba.sms.utils;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PasswordHasher is a utility class that hashes student passwords with salted
+ * PBKDF2-HMAC-SHA256. A hash is stored as
+ * <code>pbkdf2$iterations$salt$hash</code> (salt and hash in Base64) so each
+ * hash carries its own work factor. The work factor for new hashes is read from
+ * the 'sms.password.iterations' system property.
+ */
+public class PasswordHasher {
+    private PasswordHasher() {
+        // Utility classes should not have public constructors
+    }
+
+    public static final String ITERATIONS_PROPERTY = "sms.password.iterations";
+    public static final int DEFAULT_ITERATIONS = 210_000;
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * @return {int} the work factor used for new hashes
+     */
+    public static int iterations() {
+        return Integer.getInteger(ITERATIONS_PROPERTY, DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * Hashes a password with a fresh random salt.
+     * @param password{String} - the plaintext password
+     * @return {String} the encoded hash
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        int iterations = iterations();
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$"
+                + encoder.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * @param stored{String} - a value of the password column
+     * @return {boolean} true if the value is an encoded hash rather than a legacy plaintext password
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * Spends the time of a {@link #verify(String, String)} against a real hash and returns
+     * false. Callers use it when there is no stored value, e.g. for an unknown email, so a
+     * login cannot tell an unknown account from a wrong password by its response time.
+     * @param password{String} - the plaintext password to check
+     * @return {boolean} always false
+     */
+    public static boolean verifyMissing(String password) {
+        verify(password == null ? "" : password, DummyHash.VALUE);
+        return false;
+    }
+
+    // hashed on first use with the work factor new hashes get
+    private static final class DummyHash {
+        static final String VALUE = hash("not a password");
+    }
+
+    /**
+     * Checks a password against a stored value in constant time. Legacy plaintext
+     * values (see {@link #isHashed(String)}) are compared directly, and a malformed
+     * hash matches nothing.
+     * @param password{String} - the plaintext password to check
+     * @param stored{String} - the stored hash or legacy plaintext password
+     * @return {boolean} true if the password matches
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] expected;
+        byte[] salt;
+        int iterations;
+        try {
+            iterations = Integer.parseInt(parts[1]);
+            salt = decoder.decode(parts[2]);
+            expected = decoder.decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            return false;
+        }
+        if (iterations <= 0 || salt.length == 0 || expected.length == 0) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations));
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error hashing password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
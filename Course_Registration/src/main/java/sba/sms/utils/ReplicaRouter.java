@@ -0,0 +1,158 @@
+package sba.sms.utils;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReplicaRouter picks the session factory a read-only service call runs on: one of
+ * the read replicas, chosen round-robin or by the fewest connections in use, or the
+ * primary. A thread that wrote (see {@link #markWritten()}) reads from the primary for
+ * the next 'readYourWritesMillis' ms, so it sees its own writes whatever the replica lag.
+ * The window is kept per thread, the thread being the caller of the services; a caller
+ * that hops threads (e.g. through the async services) is pinned on the writing thread only.
+ *
+ * The router is built and closed by {@link HibernateUtil} from the sms.replica.* settings
+ * of the profile.
+ */
+public class ReplicaRouter implements AutoCloseable {
+    public enum Selection { ROUND_ROBIN, LEAST_LOADED }
+
+    private final SessionFactory primary;
+    private final List<SessionFactory> replicas;
+    private final List<HikariPoolMXBean> pools;
+    private final Selection selection;
+    private final long readYourWritesNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+    // System.nanoTime() of the thread's last write, 0 if it never wrote
+    private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * @param primary{object} - the session factory that takes the writes
+     * @param replicas{List} - session factories of the read replicas, at least one
+     * @param selection{Selection} - how a replica is picked for a read
+     * @param readYourWritesMillis{long} - time in ms a thread reads from the primary after it wrote
+     */
+    public ReplicaRouter(SessionFactory primary, List<SessionFactory> replicas, Selection selection, long readYourWritesMillis) {
+        if (replicas.isEmpty() || readYourWritesMillis < 0) {
+            throw new IllegalArgumentException("at least one replica and a window not negative are required");
+        }
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.selection = selection;
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+        this.pools = new ArrayList<>(replicas.size());
+        for (SessionFactory replica : replicas) {
+            pools.add(poolOf(replica));
+        }
+    }
+
+    /**
+     * Parses the sms.replica.selection setting.
+     * @param name{String} - "round-robin" or "least-loaded", case insensitive
+     * @return {Selection} the selection, ROUND_ROBIN if name is null or blank
+     */
+    public static Selection selectionOf(String name) {
+        if (name == null || name.isBlank()) {
+            return Selection.ROUND_ROBIN;
+        }
+        return Selection.valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    // the Hikari pool behind the factory, null for another connection provider
+    private static HikariPoolMXBean poolOf(SessionFactory factory) {
+        ConnectionProvider provider = factory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        if (provider == null || !provider.isUnwrappableAs(HikariDataSource.class)) {
+            return null;
+        }
+        return provider.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+    }
+
+    /**
+     * @return {object} the factory the calling thread reads from: the primary inside its
+     * read-your-writes window, a replica otherwise
+     */
+    public SessionFactory forRead() {
+        long wrote = lastWrite.get()[0];
+        if (wrote != 0 && System.nanoTime() - wrote < readYourWritesNanos) {
+            primaryReads.incrementAndGet();
+            return primary;
+        }
+        replicaReads.incrementAndGet();
+        return replicas.get(selection == Selection.LEAST_LOADED ? leastLoaded() : roundRobin());
+    }
+
+    private int roundRobin() {
+        return Math.floorMod(next.getAndIncrement(), replicas.size());
+    }
+
+    // the replica with the fewest connections in use, ties broken round-robin
+    private int leastLoaded() {
+        int start = roundRobin();
+        int best = start;
+        int bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            int candidate = (start + i) % replicas.size();
+            HikariPoolMXBean pool = pools.get(candidate);
+            int active = pool == null ? 0 : pool.getActiveConnections();
+            if (active < bestActive) {
+                best = candidate;
+                bestActive = active;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Starts the read-your-writes window of the calling thread, call it once a write committed.
+     */
+    public void markWritten() {
+        lastWrite.get()[0] = System.nanoTime();
+    }
+
+    public List<SessionFactory> getReplicas() {
+        return replicas;
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    /**
+     * @return {long} the number of reads sent to a replica
+     */
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    /**
+     * @return {long} the number of reads kept on the primary by a read-your-writes window
+     */
+    public long getPrimaryReads() {
+        return primaryReads.get();
+    }
+
+    /**
+     * Closes the replica session factories, the primary is closed by its owner.
+     */
+    @Override
+    public void close() {
+        for (SessionFactory replica : replicas) {
+            if (!replica.isClosed()) {
+                replica.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package sba.sms.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SchemaMigrator owns the database schema. The tables are created by versioned,
+ * hand written DDL scripts in the 'resources/db' folder rather than generated from
+ * the mapping, and the version applied last is recorded in the 'schema_version'
+ * table. Hibernate only validates the mapping against the result, so starting the
+ * application never alters a table.
+ *
+ * {@link HibernateUtil} applies the pending scripts before the session factory is
+ * built when {@link #MIGRATE_PROPERTY} is set, in the profile configuration or as a
+ * system property (App --migrate sets it). A new schema change is a new script
+ * appended to {@link #MIGRATIONS}; scripts already applied are never edited.
+ *
+ * A database whose tables were created by hibernate.hbm2ddl.auto=update, before the
+ * scripts existed, has the tables of version 1 but no recorded version. Such a schema is
+ * adopted instead of created again: version 1 is recorded as applied, and version 2 as
+ * well when hbm2ddl already added the seat columns, then the later scripts run as usual,
+ * the backfill of the seat counters included.
+ */
+public class SchemaMigrator {
+    private SchemaMigrator() {
+        // Utility classes should not have public constructors
+    }
+
+    /**
+     * Setting that applies the pending scripts when the session factory is built.
+     */
+    public static final String MIGRATE_PROPERTY = "sms.schema.migrate";
+    /**
+     * Setting that drops the schema when the session factory is closed, the way
+     * create-drop did for the in-memory 'h2' profile.
+     */
+    public static final String DROP_ON_CLOSE_PROPERTY = "sms.schema.dropOnClose";
+
+    // in version order, a script's version is the number between 'V' and '__'
+    static final String[] MIGRATIONS = {"db/V1__initial_schema.sql", "db/V2__course_seats.sql",
+            "db/V3__enrolled_backfill.sql", "db/V4__enrollment_outbox.sql"};
+    static final String DROP_SCRIPT = "db/drop.sql";
+
+    /**
+     * @return {int} the version of the last script in {@link #MIGRATIONS}
+     */
+    public static int latestVersion() {
+        return versionOf(MIGRATIONS[MIGRATIONS.length - 1]);
+    }
+
+    /**
+     * Reads the version recorded in the 'schema_version' table.
+     * @param connection{object} - connection to the database
+     * @return {int} the version applied last, 0 if no script was applied
+     * @throws SQLException if the version cannot be read
+     */
+    public static int currentVersion(Connection connection) throws SQLException {
+        createVersionTable(connection);
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Applies, in order, every script newer than the current version and records each
+     * one in 'schema_version', after adopting a schema made by hbm2ddl if there is one.
+     * Each script commits on its own; MySQL commits DDL implicitly anyway, so a script
+     * that fails half way is fixed by hand.
+     * @param connection{object} - connection to the database, its auto-commit mode is restored
+     * @return {int} the number of scripts applied, 0 when the schema is up to date
+     * @throws SQLException if a statement fails
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        int current = currentVersion(connection);
+        boolean autoCommit = connection.getAutoCommit();
+        int applied = 0;
+        try {
+            connection.setAutoCommit(false);
+            if (current == 0) {
+                current = adopt(connection);
+            }
+            for (String script : MIGRATIONS) {
+                int version = versionOf(script);
+                if (version <= current) {
+                    continue;
+                }
+                execute(connection, script);
+                record(connection, version, script);
+                connection.commit();
+                applied++;
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    /**
+     * Records the versions an existing schema without a recorded version already has: none
+     * if the tables of version 1 are missing, else version 1, and version 2 too if the course
+     * table has the seat columns. The caller commits.
+     * @param connection{object} - connection to the database, not in auto-commit mode
+     * @return {int} the version adopted, 0 when there is no schema to adopt
+     * @throws SQLException if the metadata cannot be read or a version cannot be recorded
+     */
+    static int adopt(Connection connection) throws SQLException {
+        String course = tableName(connection, "course");
+        if (tableName(connection, "student") == null || course == null || tableName(connection, "student_course") == null) {
+            return 0;
+        }
+        int version = hasColumn(connection, course, "capacity") && hasColumn(connection, course, "enrolled") ? 2 : 1;
+        for (String script : MIGRATIONS) {
+            if (versionOf(script) <= version) {
+                record(connection, versionOf(script), script + " (adopted)");
+            }
+        }
+        return version;
+    }
+
+    private static void record(Connection connection, int version, String script) throws SQLException {
+        try (PreparedStatement record = connection.prepareStatement(
+                "INSERT INTO schema_version (version, script, applied_on) VALUES (?, ?, CURRENT_TIMESTAMP)")) {
+            record.setInt(1, version);
+            record.setString(2, script);
+            record.executeUpdate();
+        }
+    }
+
+    // the name of the table in the connection's schema as the database stores it (its case differs), or null
+    private static String tableName(Connection connection, String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), connection.getSchema(), "%", null)) {
+            while (rs.next()) {
+                if (rs.getString("TABLE_NAME").equalsIgnoreCase(table)) {
+                    return rs.getString("TABLE_NAME");
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), connection.getSchema(), table, "%")) {
+            while (rs.next()) {
+                if (rs.getString("COLUMN_NAME").equalsIgnoreCase(column)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops every table of the schema, 'schema_version' included.
+     * @param connection{object} - connection to the database
+     * @throws SQLException if a statement fails
+     */
+    public static void drop(Connection connection) throws SQLException {
+        execute(connection, DROP_SCRIPT);
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    private static void createVersionTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL, " +
+                    "script VARCHAR(255) NOT NULL, applied_on TIMESTAMP NOT NULL, PRIMARY KEY (version))");
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    private static void execute(Connection connection, String script) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements(script)) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    static int versionOf(String script) {
+        int start = script.lastIndexOf('/') + 2;
+        return Integer.parseInt(script.substring(start, script.indexOf("__", start)));
+    }
+
+    /**
+     * Splits a script into statements: '--' comment lines are skipped and a statement
+     * ends with the line that ends with ';'.
+     * @param script{String} - classpath resource name of the script
+     * @return {object} the statements, without the trailing ';'
+     */
+    static List<String> statements(String script) {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(script);
+        if (in == null) {
+            throw new IllegalStateException("schema script " + script + " is not on the classpath");
+        }
+        List<String> statements = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            StringBuilder sql = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("--")) {
+                    continue;
+                }
+                sql.append(sql.length() == 0 ? "" : " ").append(line);
+                if (line.endsWith(";")) {
+                    sql.setLength(sql.length() - 1);
+                    statements.add(sql.toString());
+                    sql.setLength(0);
+                }
+            }
+            if (sql.length() > 0) {
+                statements.add(sql.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading schema script " + script, e);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,352 @@
+package sba.sms.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ServiceMetrics is the process wide registry of per-operation metrics: calls,
+ * errors, a latency histogram and the SQL statements, entity loads and collection
+ * loads of each call (read from {@link ThreadStatistics}). Recording allocates
+ * nothing, so it can stay on in production; it starts enabled unless the
+ * 'sms.metrics' system property is "false" and can be switched with
+ * {@link #setEnabled(boolean)} at runtime.
+ *
+ * Latencies are counted in microsecond buckets with 8 linear sub-buckets per
+ * power of two, so a percentile is reported within 12.5% of the true value.
+ */
+public class ServiceMetrics {
+    private ServiceMetrics() {
+        // Utility classes should not have public constructors
+    }
+
+    public static final String ENABLED_PROPERTY = "sms.metrics";
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    public static final int BUCKETS = 200;
+    // returned by Operation.begin() while recording is off
+    private static final long NOT_RECORDED = Long.MIN_VALUE;
+
+    private static final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+
+    /**
+     * Returns the metrics of the named operation, registering them on first use.
+     * Callers keep the result in a field so the hot path does no lookup.
+     * @param name{String} - operation name, e.g. "StudentI.getStudentByEmail"
+     * @return {object} the operation metrics
+     */
+    public static Operation operation(String name) {
+        return operations.computeIfAbsent(name, Operation::new);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Calls already running when it changes are
+     * recorded (or not) according to the setting when they started.
+     * @param on{boolean} - true to record
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Zeroes the metrics of every operation.
+     */
+    public static void reset() {
+        for (Operation operation : operations.values()) {
+            operation.reset();
+        }
+    }
+
+    /**
+     * Takes a point in time copy of every operation that was called at least once.
+     * @return {object} the snapshots, sorted by operation name
+     */
+    public static List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Operation operation : operations.values()) {
+            Snapshot snapshot = operation.snapshot();
+            if (snapshot.getCalls() > 0) {
+                snapshots.add(snapshot);
+            }
+        }
+        snapshots.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return snapshots;
+    }
+
+    /**
+     * Formats {@link #snapshot()} as a text table, one operation per line.
+     * @return {String} the table
+     */
+    public static String dump() {
+        StringBuilder out = new StringBuilder(String.format("%-36s %8s %6s %9s %9s %9s %9s %7s %7s %7s%n",
+                "Operation", "Calls", "Errors", "Mean(us)", "p50(us)", "p99(us)", "Max(us)", "Stmt", "Ent", "Coll"));
+        for (Snapshot s : snapshot()) {
+            out.append(String.format("%-36s %8d %6d %9.1f %9d %9d %9d %7.2f %7.2f %7.2f%n",
+                    s.getName(), s.getCalls(), s.getErrors(), s.getMeanMicros(), s.getPercentileMicros(50),
+                    s.getPercentileMicros(99), s.getMaxMicros(), s.getStatementsPerCall(),
+                    s.getEntitiesPerCall(), s.getCollectionsPerCall()));
+        }
+        if (!enabled) {
+            out.append(String.format("(recording is off)%n"));
+        }
+        return out.toString();
+    }
+
+    // maps a duration in microseconds to its bucket
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int bucket = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS
+                + (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    // the largest duration in microseconds that falls into the bucket
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Operation holds the metrics of one service method. A call is recorded with
+     * <pre>
+     * long started = operation.begin();
+     * try {
+     *     return operation.success(started, delegate.call());
+     * } catch (RuntimeException e) {
+     *     throw operation.failure(started, e);
+     * }
+     * </pre>
+     * begin and success/failure must run on the same thread.
+     */
+    public static class Operation {
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder entities = new LongAdder();
+        private final LongAdder collections = new LongAdder();
+        private final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Starts timing a call on the current thread.
+         * @return {long} the start time to hand to success or failure
+         */
+        public long begin() {
+            if (!enabled) {
+                return NOT_RECORDED;
+            }
+            ThreadStatistics.current().mark();
+            return System.nanoTime();
+        }
+
+        public <T> T success(long started, T result) {
+            end(started, false);
+            return result;
+        }
+
+        public boolean success(long started, boolean result) {
+            end(started, false);
+            return result;
+        }
+
+        public long success(long started, long result) {
+            end(started, false);
+            return result;
+        }
+
+        public void success(long started) {
+            end(started, false);
+        }
+
+        public <E extends RuntimeException> E failure(long started, E error) {
+            end(started, true);
+            return error;
+        }
+
+        private void end(long started, boolean failed) {
+            if (started == NOT_RECORDED) {
+                return;
+            }
+            long nanos = System.nanoTime() - started;
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            buckets.incrementAndGet(bucketOf(nanos / 1_000));
+
+            ThreadStatistics current = ThreadStatistics.current();
+            int mark = current.unmark();
+            if (mark >= 0) {
+                long statementCount = current.statements - current.mark(mark);
+                statements.add(statementCount);
+                maxStatements.accumulate(statementCount);
+                entities.add(current.entities - current.mark(mark + 1));
+                collections.add(current.collections - current.mark(mark + 2));
+            }
+        }
+
+        void reset() {
+            calls.reset();
+            errors.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            statements.reset();
+            entities.reset();
+            collections.reset();
+            maxStatements.reset();
+        }
+
+        /**
+         * @return {object} a point in time copy of the metrics of this operation
+         */
+        public Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new Snapshot(name, calls.sum(), errors.sum(), totalNanos.sum(), maxNanos.get(), counts,
+                    statements.sum(), entities.sum(), collections.sum(), maxStatements.get());
+        }
+    }
+
+    /**
+     * Snapshot is an immutable view of the metrics of one operation. Counters are
+     * read one after another while calls may still be recorded, so they can
+     * disagree by the calls in flight.
+     */
+    public static class Snapshot {
+        private final String name;
+        private final long calls;
+        private final long errors;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] buckets;
+        private final long statements;
+        private final long entities;
+        private final long collections;
+        private final long maxStatements;
+
+        Snapshot(String name, long calls, long errors, long totalNanos, long maxNanos, long[] buckets,
+                 long statements, long entities, long collections, long maxStatements) {
+            this.name = name;
+            this.calls = calls;
+            this.errors = errors;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+            this.statements = statements;
+            this.entities = entities;
+            this.collections = collections;
+            this.maxStatements = maxStatements;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getMeanMicros() {
+            return calls == 0 ? 0 : totalNanos / 1e3 / calls;
+        }
+
+        public long getMaxMicros() {
+            return maxNanos / 1_000;
+        }
+
+        public long getStatements() {
+            return statements;
+        }
+
+        public long getEntities() {
+            return entities;
+        }
+
+        public long getCollections() {
+            return collections;
+        }
+
+        public long getMaxStatements() {
+            return maxStatements;
+        }
+
+        public double getStatementsPerCall() {
+            return calls == 0 ? 0 : (double) statements / calls;
+        }
+
+        public double getEntitiesPerCall() {
+            return calls == 0 ? 0 : (double) entities / calls;
+        }
+
+        public double getCollectionsPerCall() {
+            return calls == 0 ? 0 : (double) collections / calls;
+        }
+
+        /**
+         * Estimates a percentile of the call latency from the histogram.
+         * @param percentile{double} - between 0 and 100
+         * @return {long} the upper bound in microseconds of the bucket holding the percentile, at most the max
+         */
+        public long getPercentileMicros(double percentile) {
+            long total = 0;
+            for (long count : buckets) {
+                total += count;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(upperBoundOf(i), getMaxMicros());
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s calls: %d, errors: %d, mean: %.1fus, p50: %dus, p99: %dus, max: %dus, "
+                            + "statements/call: %.2f, entities/call: %.2f, collections/call: %.2f",
+                    name, calls, errors, getMeanMicros(), getPercentileMicros(50), getPercentileMicros(99),
+                    getMaxMicros(), getStatementsPerCall(), getEntitiesPerCall(), getCollectionsPerCall());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package sba.sms.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ShardRing places keys (student emails) on shards by consistent hashing: each shard
+ * owns {@link #VIRTUAL_NODES} points of a 64-bit hash ring and a key belongs to the
+ * first point at or after its hash. Adding a shard only moves the keys that land on the
+ * new shard's points, about 1/(n+1) of them, and never moves a key between two old
+ * shards. The hash is a fixed function of the key's bytes, so every process places a
+ * key on the same shard. Immutable.
+ */
+public class ShardRing {
+    public static final int VIRTUAL_NODES = 128;
+
+    private final int shards;
+    // ring points in ascending order and the shard owning each
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * @param shards{int} - number of shards, numbered from 0
+     */
+    public ShardRing(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        this.shards = shards;
+        long[] keyed = new long[shards * VIRTUAL_NODES];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                keyed[shard * VIRTUAL_NODES + v] = hash("shard-" + shard + "#" + v);
+            }
+        }
+        // sort the points, carrying their owner along
+        Integer[] order = new Integer[keyed.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compareUnsigned(keyed[a], keyed[b]));
+        this.points = new long[keyed.length];
+        this.owners = new int[keyed.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = keyed[order[i]];
+            owners[i] = order[i] / VIRTUAL_NODES;
+        }
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @param key{String} - the key, e.g. a student email
+     * @return {int} the shard that owns the key
+     */
+    public int shardOf(String key) {
+        long h = hash(key);
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], h) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    // 64-bit FNV-1a of the UTF-8 bytes, then the MurmurHash3 finalizer to spread nearby keys
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
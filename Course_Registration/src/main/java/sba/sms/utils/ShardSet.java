@@ -0,0 +1,237 @@
+package sba.sms.utils;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.jdbc.Work;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ShardSet is the list of shard databases of the sharded services and the {@link ShardRing}
+ * that places each student, with their 'student_course' rows, on one of them by the hash of
+ * the email. Shard 0 also holds the course catalog: its 'course' rows are the catalog and
+ * their seat counters count every shard's enrollments, while every other shard keeps a copy
+ * of the catalog, with the same ids, so its joins stay local, and counts its own enrollments.
+ *
+ * {@link #addShard(SessionFactory)} copies the catalog to a new shard and moves to it the
+ * students the grown ring places there, about 1/(n+1) of them, in batches of
+ * {@link #MOVE_BATCH_SIZE}. A batch is written to the new shard before it is deleted from the
+ * old one; the ring switches once every batch moved. Run it while no one registers, a
+ * registration of a student in flight would be lost with the old copy.
+ * The SQL is plain enough for MySQL and H2.
+ */
+public class ShardSet {
+    public static final int MOVE_BATCH_SIZE = 500;
+
+    private volatile List<SessionFactory> shards;
+    private volatile ShardRing ring;
+
+    /**
+     * @param shards{List} - the shard session factories, shard 0 holds the catalog
+     */
+    public ShardSet(List<SessionFactory> shards) {
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.ring = new ShardRing(shards.size());
+    }
+
+    /**
+     * @return {object} the shards of the active profile, see {@link HibernateUtil#getShardSessionFactories()}
+     */
+    public static ShardSet fromProfile() {
+        return new ShardSet(HibernateUtil.getShardSessionFactories());
+    }
+
+    public List<SessionFactory> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return {object} shard 0, which holds the course catalog
+     */
+    public SessionFactory getCatalog() {
+        return shards.get(0);
+    }
+
+    /**
+     * @param email{String} - email of student
+     * @return {int} the shard the student lives on
+     */
+    public int shardOf(String email) {
+        return ring.shardOf(email);
+    }
+
+    /**
+     * Copies the catalog to the new shard, moves the students the ring now places on it and
+     * then routes to it. If any errors occur a RuntimeException will be thrown with an error msg
+     * and the ring is not switched, so the old shards keep serving every student; the students
+     * already copied to the new shard are to be removed from it before it is added again.
+     * @param shard{object} - session factory of the new shard, with the schema created and empty
+     * @return {long} the number of students moved
+     */
+    public synchronized long addShard(SessionFactory shard) {
+        List<SessionFactory> grown = new ArrayList<>(shards);
+        grown.add(shard);
+        ShardRing grownRing = new ShardRing(grown.size());
+        int target = grown.size() - 1;
+        long moved = 0;
+        try {
+            copyCatalog(getCatalog(), shard);
+            for (int source = 0; source < target; source++) {
+                moved += moveStudents(grown.get(source), source, shard, grownRing, target);
+            }
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Error adding shard " + target, e);
+        }
+        shards = Collections.unmodifiableList(grown);
+        ring = grownRing;
+        return moved;
+    }
+
+    // inserts the catalog courses, with their ids and no enrollments
+    private static void copyCatalog(SessionFactory catalog, SessionFactory shard) {
+        List<Object[]> courses = new ArrayList<>();
+        inConnection(catalog, connection -> {
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT id, name, instructor, capacity FROM course ORDER BY id");
+                 ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    courses.add(new Object[]{rows.getInt(1), rows.getString(2), rows.getString(3), rows.getInt(4)});
+                }
+            }
+        });
+        inTransaction(shard, connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO course (id, name, instructor, capacity, enrolled) VALUES (?, ?, ?, ?, 0)")) {
+                for (Object[] course : courses) {
+                    insert.setInt(1, (Integer) course[0]);
+                    insert.setString(2, (String) course[1]);
+                    insert.setString(3, (String) course[2]);
+                    insert.setInt(4, (Integer) course[3]);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+    }
+
+    // pages through the source's students by email and moves those the ring places on the target
+    private static long moveStudents(SessionFactory source, int sourceIndex, SessionFactory target,
+                                     ShardRing ring, int targetIndex) {
+        long moved = 0;
+        String after = "";
+        while (true) {
+            List<String[]> page = new ArrayList<>(MOVE_BATCH_SIZE);
+            String from = after;
+            inConnection(source, connection -> {
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT email, name, password FROM student WHERE email > ? ORDER BY email LIMIT " + MOVE_BATCH_SIZE)) {
+                    select.setString(1, from);
+                    try (ResultSet rows = select.executeQuery()) {
+                        while (rows.next()) {
+                            page.add(new String[]{rows.getString(1), rows.getString(2), rows.getString(3)});
+                        }
+                    }
+                }
+            });
+            if (page.isEmpty()) {
+                return moved;
+            }
+            after = page.get(page.size() - 1)[0];
+            page.removeIf(student -> ring.shardOf(student[0]) != targetIndex);
+            if (!page.isEmpty()) {
+                move(source, sourceIndex, target, page);
+                moved += page.size();
+            }
+        }
+    }
+
+    // copies the students and their enrollments to the target, then deletes them from the source
+    private static void move(SessionFactory source, int sourceIndex, SessionFactory target, List<String[]> students) {
+        List<Object[]> enrollments = new ArrayList<>();
+        inConnection(source, connection -> {
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT course_id FROM student_course WHERE student_email = ?")) {
+                for (String[] student : students) {
+                    select.setString(1, student[0]);
+                    try (ResultSet rows = select.executeQuery()) {
+                        while (rows.next()) {
+                            enrollments.add(new Object[]{student[0], rows.getInt(1)});
+                        }
+                    }
+                }
+            }
+        });
+        inTransaction(target, connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO student (email, name, password) VALUES (?, ?, ?)")) {
+                for (String[] student : students) {
+                    insert.setString(1, student[0]);
+                    insert.setString(2, student[1]);
+                    insert.setString(3, student[2]);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            adjust(connection, enrollments, +1, true);
+        });
+        inTransaction(source, connection -> {
+            adjust(connection, enrollments, -1, sourceIndex != 0);
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM student WHERE email = ?")) {
+                for (String[] student : students) {
+                    delete.setString(1, student[0]);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+            }
+        });
+    }
+
+    // inserts (delta > 0) or deletes the join rows, and moves the local seat counters with them
+    // unless the shard is the catalog, whose counters count every shard
+    private static void adjust(Connection connection, List<Object[]> enrollments, int delta, boolean seats) throws SQLException {
+        String sql = delta > 0
+                ? "INSERT INTO student_course (student_email, course_id) VALUES (?, ?)"
+                : "DELETE FROM student_course WHERE student_email = ? AND course_id = ?";
+        try (PreparedStatement rows = connection.prepareStatement(sql);
+             PreparedStatement counter = connection.prepareStatement("UPDATE course SET enrolled = enrolled + ? WHERE id = ?")) {
+            for (Object[] enrollment : enrollments) {
+                rows.setString(1, (String) enrollment[0]);
+                rows.setInt(2, (Integer) enrollment[1]);
+                rows.addBatch();
+                if (seats) {
+                    counter.setInt(1, delta);
+                    counter.setInt(2, (Integer) enrollment[1]);
+                    counter.addBatch();
+                }
+            }
+            rows.executeBatch();
+            counter.executeBatch();
+        }
+    }
+
+    private static void inConnection(SessionFactory factory, Work work) {
+        try (StatelessSession session = factory.openStatelessSession()) {
+            session.doWork(work);
+        }
+    }
+
+    private static void inTransaction(SessionFactory factory, Work work) {
+        try (StatelessSession session = factory.openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                session.doWork(work);
+                transaction.commit();
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+        }
+    }
+}
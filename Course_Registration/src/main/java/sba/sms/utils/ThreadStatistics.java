@@ -0,0 +1,64 @@
+package sba.sms.utils;
+
+/**
+ * ThreadStatistics counts the SQL statements prepared, entities loaded and
+ * collections loaded by the current thread. The counters are fed by
+ * {@link ThreadStatisticsFactory} and only move while Hibernate statistics are
+ * enabled (hibernate.generate_statistics). They never reset, so the work done by
+ * one call is the difference between two readings taken on the same thread.
+ */
+public final class ThreadStatistics {
+    static final int MAX_DEPTH = 16;
+    private static final ThreadLocal<ThreadStatistics> CURRENT = ThreadLocal.withInitial(ThreadStatistics::new);
+
+    long statements;
+    long entities;
+    long collections;
+
+    // counter readings pushed by ServiceMetrics when a call starts, three per nested call
+    private final long[] marks = new long[MAX_DEPTH * 3];
+    private int depth;
+
+    private ThreadStatistics() {
+    }
+
+    /**
+     * @return {object} the counters of the current thread
+     */
+    public static ThreadStatistics current() {
+        return CURRENT.get();
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getEntities() {
+        return entities;
+    }
+
+    public long getCollections() {
+        return collections;
+    }
+
+    // remembers the counters at the start of a call
+    void mark() {
+        if (depth < MAX_DEPTH) {
+            int i = depth * 3;
+            marks[i] = statements;
+            marks[i + 1] = entities;
+            marks[i + 2] = collections;
+        }
+        depth++;
+    }
+
+    // forgets the innermost mark and returns its index in marks, or -1 if calls nested deeper than MAX_DEPTH
+    int unmark() {
+        depth--;
+        return depth < MAX_DEPTH ? depth * 3 : -1;
+    }
+
+    long mark(int index) {
+        return marks[index];
+    }
+}
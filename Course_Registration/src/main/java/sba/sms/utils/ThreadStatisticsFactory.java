@@ -0,0 +1,38 @@
+package sba.sms.utils;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * ThreadStatisticsFactory builds the standard Hibernate statistics and also
+ * counts statements, entity loads and collection loads per thread in
+ * {@link ThreadStatistics}. It is selected with the hibernate.stats.factory
+ * property of each profile.
+ */
+public class ThreadStatisticsFactory implements StatisticsFactory {
+
+    @Override
+    public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+        return new StatisticsImpl(sessionFactory) {
+            @Override
+            public void prepareStatement() {
+                super.prepareStatement();
+                ThreadStatistics.current().statements++;
+            }
+
+            @Override
+            public void loadEntity(String entityName) {
+                super.loadEntity(entityName);
+                ThreadStatistics.current().entities++;
+            }
+
+            @Override
+            public void loadCollection(String role) {
+                super.loadCollection(role);
+                ThreadStatistics.current().collections++;
+            }
+        };
+    }
+}
@@ -0,0 +1,27 @@
+-- Version 1: the student, course and student_course tables as hibernate.hbm2ddl.auto=update first created
+-- them from sba.sms.models. A database made that way is adopted at this version, see SchemaMigrator.
+-- Kept to SQL that MySQL and H2 both accept; the mapping is validated against the migrated schema at startup.
+
+CREATE TABLE student (
+    email VARCHAR(255) NOT NULL,
+    name VARCHAR(255),
+    password VARCHAR(255),
+    PRIMARY KEY (email)
+);
+
+-- a course is identified by its generated id, see Course#equals; sections may share a name and instructor
+CREATE TABLE course (
+    id INT NOT NULL AUTO_INCREMENT,
+    name VARCHAR(255),
+    instructor VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+-- the primary key serves the lookups by student and rejects duplicate registrations
+CREATE TABLE student_course (
+    student_email VARCHAR(255) NOT NULL,
+    course_id INT NOT NULL,
+    PRIMARY KEY (student_email, course_id),
+    CONSTRAINT fk_student_course_student FOREIGN KEY (student_email) REFERENCES student (email),
+    CONSTRAINT fk_student_course_course FOREIGN KEY (course_id) REFERENCES course (id)
+);
@@ -0,0 +1,5 @@
+-- Version 2: the seat counter of a course. Existing courses get an unlimited capacity; their 'enrolled'
+-- counts are filled in by version 3.
+
+ALTER TABLE course ADD COLUMN capacity INT DEFAULT 2147483647 NOT NULL;
+ALTER TABLE course ADD COLUMN enrolled INT DEFAULT 0 NOT NULL;
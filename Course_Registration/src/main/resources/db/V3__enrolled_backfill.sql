@@ -0,0 +1,7 @@
+-- Version 3: 'enrolled' counts the registrations already in student_course, including those of a database
+-- adopted with the seat columns added by hbm2ddl, which left it at 0. The course_id index serves the
+-- rosters and the joins from course.
+
+UPDATE course SET enrolled = (SELECT COUNT(*) FROM student_course sc WHERE sc.course_id = course.id);
+
+CREATE INDEX idx_student_course_course ON student_course (course_id);
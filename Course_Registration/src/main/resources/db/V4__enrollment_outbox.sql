@@ -0,0 +1,13 @@
+-- Version 4: the outbox of the enrollment event log.
+-- A service writing a student, a course or an enrollment adds its event here in the same transaction
+-- when sms.outbox.enabled is set; sba.sms.services.OutboxRelay appends the committed rows to the event
+-- log and deletes them, so the table only holds the events not relayed yet.
+
+CREATE TABLE enrollment_outbox (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    event_type SMALLINT NOT NULL,
+    student_email VARCHAR(255),
+    course_id INT,
+    created_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (id)
+);
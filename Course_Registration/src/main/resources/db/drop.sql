@@ -0,0 +1,7 @@
+-- Drops every table of the versioned schema, used by profiles with sms.schema.dropOnClose.
+
+DROP TABLE IF EXISTS enrollment_outbox;
+DROP TABLE IF EXISTS student_course;
+DROP TABLE IF EXISTS course;
+DROP TABLE IF EXISTS student;
+DROP TABLE IF EXISTS schema_version;
@@ -0,0 +1,157 @@
+package sba.sms;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.services.StudentService;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class BatchRunnerTest {
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    static List<String> run(BatchRunner runner, String script, BatchRunner.Summary[] summary) throws IOException {
+        StringWriter out = new StringWriter();
+        summary[0] = runner.run(new StringReader(script), out);
+        return out.toString().lines().collect(Collectors.toList());
+    }
+
+    @Test
+    // Every command writes its result lines in input order, reads see the writes before them
+    public void testCommands() throws IOException {
+        BatchRunner.Summary[] summary = new BatchRunner.Summary[1];
+        List<String> lines = run(new BatchRunner(10), String.join("\n",
+                "# a new student takes a new course",
+                "create-student batch1@example.com \"batch one\" secret",
+                "create-course \"Batch Processing\" \"Grace Hopper\" 1",
+                "login batch1@example.com secret",
+                "login batch1@example.com wrong",
+                "register batch1@example.com 9",
+                "register batch1@example.com 9",
+                "register reema@gmail.com 9",
+                "register nobody@example.com 1",
+                "register batch1@example.com 999",
+                "",
+                "show-courses batch1@example.com",
+                "list-courses",
+                "register batch1@example.com one",
+                "drop-course batch1@example.com 9"), summary);
+
+        assertThat(lines).startsWith(
+                "create-student\tbatch1@example.com",
+                "create-course\t9\tBatch Processing",
+                "login\tbatch1@example.com\tok",
+                "login\tbatch1@example.com\tdenied",
+                "register\tbatch1@example.com\t9\tADDED",
+                "register\tbatch1@example.com\t9\tALREADY_ENROLLED",
+                "register\treema@gmail.com\t9\tCOURSE_FULL",
+                "register\tnobody@example.com\t1\tUNKNOWN_STUDENT",
+                "register\tbatch1@example.com\t999\tUNKNOWN_COURSE",
+                "student-course\tbatch1@example.com\t9\tBatch Processing\tGrace Hopper",
+                "course\t1\tJava\tRoger Boaitey");
+        assertThat(lines).filteredOn(line -> line.startsWith("course\t")).hasSize(9);
+        assertThat(lines).endsWith(
+                "error\t14\tcourse id is not a number: one",
+                "error\t15\tunknown command: drop-course");
+        assertThat(summary[0].getCommands()).isEqualTo(13);
+        assertThat(summary[0].getWrites()).isEqualTo(7);
+        assertThat(summary[0].getErrors()).isEqualTo(2);
+        assertThat(summary[0].getTransactions()).isEqualTo(1);
+
+        // the writes were committed
+        assertThat(new StudentService().getStudentCourses("batch1@example.com")).extracting("id").containsExactly(9);
+    }
+
+    @Test
+    // A failing write only fails its own line, the rest of its group is committed
+    public void testFailedGroupIsReplayed() throws IOException {
+        BatchRunner.Summary[] summary = new BatchRunner.Summary[1];
+        List<String> lines = run(new BatchRunner(100), String.join("\n",
+                "create-student batch2@example.com \"batch two\" secret",
+                "create-student reema@gmail.com \"reema again\" secret",
+                "create-student batch3@example.com \"batch three\" secret",
+                "register batch3@example.com 1"), summary);
+
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(0)).isEqualTo("create-student\tbatch2@example.com");
+        assertThat(lines.get(1)).startsWith("error\t2\t");
+        assertThat(lines.get(2)).isEqualTo("create-student\tbatch3@example.com");
+        assertThat(lines.get(3)).isEqualTo("register\tbatch3@example.com\t1\tADDED");
+        assertThat(summary[0].getErrors()).isEqualTo(1);
+        assertThat(summary[0].getWrites()).isEqualTo(3);
+        assertThat(new StudentService().validateStudent("batch2@example.com", "secret")).isTrue();
+        assertThat(new StudentService().validateStudent("reema@gmail.com", "password")).isTrue();
+    }
+
+    @Test
+    // A registration rejected in the shared transaction gives its seat back and keeps the earlier writes
+    public void testRejectedRegistrationKeepsTransaction() throws IOException {
+        BatchRunner.Summary[] summary = new BatchRunner.Summary[1];
+        List<String> lines = run(new BatchRunner(100), String.join("\n",
+                "create-student batch4@example.com \"batch four\" secret",
+                "create-course \"Seminar\" \"Ada Lovelace\" 2",
+                "register batch4@example.com 10",
+                "register batch4@example.com 10",
+                "register reema@gmail.com 10",
+                "register annette@gmail.com 10"), summary);
+
+        assertThat(lines).containsExactly(
+                "create-student\tbatch4@example.com",
+                "create-course\t10\tSeminar",
+                "register\tbatch4@example.com\t10\tADDED",
+                "register\tbatch4@example.com\t10\tALREADY_ENROLLED",
+                "register\treema@gmail.com\t10\tADDED",
+                "register\tannette@gmail.com\t10\tCOURSE_FULL");
+        assertThat(summary[0].getErrors()).isZero();
+        assertThat(summary[0].getTransactions()).isEqualTo(1);
+        assertThat(new StudentService().getStudentCourses("batch4@example.com")).extracting("id").containsExactly(10);
+        assertThat(new StudentService().getStudentCourses("reema@gmail.com")).extracting("id").contains(10);
+    }
+
+    static String loadScript(String prefix) {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            script.append("create-student ").append(prefix).append(i).append("@example.com \"load ").append(i).append("\" password\n");
+        }
+        for (int i = 0; i < 1_000; i++) {
+            script.append("register ").append(prefix).append(i).append("@example.com ").append(i % 8 + 1).append('\n');
+            script.append("show-courses ").append(prefix).append(i).append("@example.com\n");
+            script.append("login ").append(prefix).append(i % 10).append("@example.com password\n");
+        }
+        return script.toString();
+    }
+
+    @Test
+    // Once warmed up, thousands of mixed commands run at over a thousand per second
+    public void testThroughput() throws IOException {
+        BatchRunner.Summary[] summary = new BatchRunner.Summary[1];
+        run(new BatchRunner(BatchRunner.DEFAULT_TRANSACTION_SIZE), loadScript("warmup"), summary);
+        List<String> lines = run(new BatchRunner(BatchRunner.DEFAULT_TRANSACTION_SIZE), loadScript("load"), summary);
+
+        assertThat(summary[0].getCommands()).isEqualTo(4_000);
+        assertThat(summary[0].getErrors()).isZero();
+        // 20 groups of 100 writes, and the reads after the last write
+        assertThat(summary[0].getTransactions()).isEqualTo(21);
+        assertThat(lines).filteredOn(line -> line.endsWith("\tADDED")).hasSize(1_000);
+        assertThat(summary[0].getCommandsPerSecond()).isGreaterThan(1_000);
+    }
+}
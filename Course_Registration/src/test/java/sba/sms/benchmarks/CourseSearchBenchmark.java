@@ -0,0 +1,64 @@
+package sba.sms.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import sba.sms.models.Course;
+import sba.sms.services.CourseService;
+import sba.sms.services.IndexedCourseService;
+import sba.sms.utils.CourseSearchIndex;
+import sba.sms.utils.DataGenerator;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares course searches answered by the {@link CourseSearchIndex} of an
+ * {@link IndexedCourseService} with the LIKE search of {@link CourseService}, on a catalog
+ * from {@link DataGenerator}. The queries cover a short word prefix, a subject, an instructor,
+ * a word inside other words and two words. Run it through the 'bench' Maven profile with
+ * -Djmh.include=sba.sms.benchmarks.CourseSearchBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CourseSearchBenchmark {
+
+    @Param({"100000"})
+    int courses;
+
+    @Param({"ma", "networks", "garcia", "ithm", "kim 4510"})
+    String query;
+
+    @Param({"10"})
+    int limit;
+
+    CourseService courseService;
+    IndexedCourseService indexedService;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        HibernateUtil.useProfile("h2");
+        new DataGenerator(1, 0, courses, 0, 1.0).generate();
+        courseService = new CourseService();
+        indexedService = new IndexedCourseService(courseService);
+        System.out.printf("%n%s%n", indexedService.getIndex());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Benchmark
+    public List<Course> indexSearch() {
+        return indexedService.searchCourses(query, limit);
+    }
+
+    @Benchmark
+    public List<Course> sqlSearch() {
+        return courseService.searchCourses(query, limit);
+    }
+}
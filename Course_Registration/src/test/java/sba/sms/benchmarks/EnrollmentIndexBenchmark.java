@@ -0,0 +1,137 @@
+package sba.sms.benchmarks;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+import sba.sms.models.Student;
+import sba.sms.utils.DataGenerator;
+import sba.sms.utils.EnrollmentIndex;
+import sba.sms.utils.HibernateUtil;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares roster, membership and count lookups answered by the {@link EnrollmentIndex}
+ * with the same questions asked of the database, on a dataset from {@link DataGenerator}.
+ * The trial setup also prints the heap taken by the index and by the entity graph of the
+ * same enrollments. Run it through the 'bench' Maven profile with
+ * -Djmh.include=sba.sms.benchmarks.EnrollmentIndexBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class EnrollmentIndexBenchmark {
+
+    @Param({"100000"})
+    int students;
+
+    @Param({"1000"})
+    int courses;
+
+    @Param({"5"})
+    int coursesPerStudent;
+
+    DataGenerator generator;
+    EnrollmentIndex index;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        HibernateUtil.useProfile("h2");
+        generator = new DataGenerator(1, students, courses, coursesPerStudent, 1.0);
+        generator.generate();
+        // the first load also fills the page cache of the database
+        EnrollmentIndex.load();
+
+        long before = usedHeap();
+        index = EnrollmentIndex.load();
+        long indexBytes = usedHeap() - before;
+        long graphBytes;
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            before = usedHeap();
+            List<Student> graph = session.createQuery("SELECT DISTINCT s FROM Student s LEFT JOIN FETCH s.courses", Student.class)
+                    .getResultList();
+            graphBytes = usedHeap() - before;
+            System.out.printf("%n%s%nheap of the index: %d KB, of the entity graph of %d students: %d KB%n",
+                    index, indexBytes / 1024, graph.size(), graphBytes / 1024);
+        }
+    }
+
+    static long usedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    String randomEmail() {
+        return generator.emailOf(ThreadLocalRandom.current().nextInt(students));
+    }
+
+    int randomCourseId() {
+        return ThreadLocalRandom.current().nextInt(courses) + 1;
+    }
+
+    @Benchmark
+    public boolean indexIsEnrolled() {
+        return index.isEnrolled(randomEmail(), randomCourseId());
+    }
+
+    @Benchmark
+    public boolean sqlIsEnrolled() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Number rows = (Number) session.createNativeQuery("SELECT COUNT(*) FROM student_course " +
+                            "WHERE student_email = :email AND course_id = :courseId")
+                    .setParameter("email", randomEmail())
+                    .setParameter("courseId", randomCourseId())
+                    .getSingleResult();
+            return rows.intValue() > 0;
+        }
+    }
+
+    @Benchmark
+    public int indexEnrolledCount() {
+        return index.getEnrolledCount(randomCourseId());
+    }
+
+    @Benchmark
+    public int sqlEnrolledCount() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Number rows = (Number) session.createNativeQuery("SELECT COUNT(*) FROM student_course WHERE course_id = :courseId")
+                    .setParameter("courseId", randomCourseId())
+                    .getSingleResult();
+            return rows.intValue();
+        }
+    }
+
+    @Benchmark
+    public List<String> indexRoster() {
+        return index.getRoster(randomCourseId());
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<String> sqlRoster() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            return session.createNativeQuery("SELECT student_email FROM student_course WHERE course_id = :courseId")
+                    .setParameter("courseId", randomCourseId())
+                    .getResultList();
+        }
+    }
+
+    @Benchmark
+    public int[] indexCoursesOfStudent() {
+        return index.getCourseIds(randomEmail());
+    }
+}
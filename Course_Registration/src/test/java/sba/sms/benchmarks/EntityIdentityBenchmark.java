@@ -0,0 +1,91 @@
+package sba.sms.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import sba.sms.models.Course;
+import sba.sms.models.Student;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the membership helpers of the entities on a detached graph of
+ * 10k students, each enrolled in 50 of 500 courses (~1000 students per roster).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityIdentityBenchmark {
+    static final int STUDENTS = 10_000;
+    static final int COURSES = 500;
+    static final int COURSES_PER_STUDENT = 50;
+
+    Student student;
+    Course enrolled;
+    Course notEnrolled;
+    // a distinct instance of the enrolled course, as loaded by another session
+    Course enrolledCopy;
+
+    @Setup
+    public void buildGraph() {
+        Random random = new Random(42);
+        List<Course> courses = new ArrayList<>();
+        for (int c = 1; c <= COURSES; c++) {
+            Course course = new Course("course " + c, "instructor " + (c % 40));
+            course.setId(c);
+            courses.add(course);
+        }
+        List<Student> students = new ArrayList<>();
+        for (int s = 0; s < STUDENTS; s++) {
+            Student next = new Student("student" + s + "@example.com", "student " + s, "password");
+            Set<Course> picked = new HashSet<>();
+            while (picked.size() < COURSES_PER_STUDENT) {
+                picked.add(courses.get(random.nextInt(COURSES)));
+            }
+            next.setCourses(picked);
+            students.add(next);
+        }
+        // rosters are filled once every student's courses are final
+        for (Student next : students) {
+            for (Course course : next.getCourses()) {
+                course.getStudents().add(next);
+            }
+        }
+        student = students.get(0);
+        enrolled = student.getCourses().iterator().next();
+        notEnrolled = courses.stream().filter(c -> !student.isEnrolledCourse(c)).findFirst().orElseThrow();
+        enrolledCopy = new Course(enrolled.getName(), enrolled.getInstructor());
+        enrolledCopy.setId(enrolled.getId());
+    }
+
+    @Benchmark
+    public boolean isEnrolledCourseHit() {
+        return student.isEnrolledCourse(enrolled);
+    }
+
+    @Benchmark
+    public boolean isEnrolledCourseMiss() {
+        return student.isEnrolledCourse(notEnrolled);
+    }
+
+    @Benchmark
+    public boolean isEnrolledCourseCopy() {
+        return student.isEnrolledCourse(enrolledCopy);
+    }
+
+    @Benchmark
+    public boolean containsStudent() {
+        return enrolled.containsStudent(student);
+    }
+
+    @Benchmark
+    public int studentHashCode() {
+        return student.hashCode();
+    }
+}
@@ -0,0 +1,126 @@
+package sba.sms.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import sba.sms.models.EnrollmentEvent;
+import sba.sms.utils.EventLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the {@link EventLog}: the throughput of appends, forced to the disk every
+ * 'forceEvery' events as the outbox relay does per batch (0 never forces), and the tail
+ * latency, the time from an append until a consumer thread tailing the log has read the
+ * event and handed it back, with a consumer that polls busily, yielding the CPU between polls
+ * so it also works on one core, or one that parks between polls.
+ * Run it through the 'bench' Maven profile with -Djmh.include=sba.sms.benchmarks.EventLogBenchmark.
+ */
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class EventLogBenchmark {
+
+    static EnrollmentEvent event(long sequence) {
+        return new EnrollmentEvent(sequence, EnrollmentEvent.Type.ENROLLMENT_ADDED,
+                "student" + (sequence % 100_000) + "@example.com", (int) (sequence % 1000) + 1, sequence);
+    }
+
+    static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AppendState {
+        @Param({"0", "500"})
+        int forceEvery;
+
+        Path directory;
+        EventLog log;
+        long sequence;
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            directory = Files.createTempDirectory("sms-eventlog");
+            log = EventLog.open(directory);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            log.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TailState {
+        @Param({"busy", "park"})
+        String consumer;
+
+        Path directory;
+        EventLog log;
+        Thread tailing;
+        volatile long seen;
+        volatile boolean stopped;
+        long sequence;
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            directory = Files.createTempDirectory("sms-eventlog");
+            log = EventLog.open(directory);
+            boolean busy = "busy".equals(consumer);
+            tailing = new Thread(() -> {
+                EventLog.Tailer tailer = log.tail(0);
+                while (!stopped) {
+                    EnrollmentEvent event = busy ? tailer.poll() : tailer.poll(100, TimeUnit.MILLISECONDS);
+                    if (event != null) {
+                        seen = event.getSequence();
+                    } else if (busy) {
+                        Thread.yield();
+                    }
+                }
+            }, "event-log-consumer");
+            tailing.setDaemon(true);
+            tailing.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws InterruptedException {
+            stopped = true;
+            tailing.join();
+            log.close();
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long append(AppendState state) {
+        long offset = state.log.append(event(++state.sequence));
+        if (state.forceEvery > 0 && state.sequence % state.forceEvery == 0) {
+            state.log.force();
+        }
+        return offset;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long tailLatency(TailState state) {
+        long sequence = ++state.sequence;
+        state.log.append(event(sequence));
+        while (state.seen < sequence) {
+            Thread.yield();
+        }
+        return sequence;
+    }
+}
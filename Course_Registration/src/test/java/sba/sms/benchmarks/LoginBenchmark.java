@@ -0,0 +1,70 @@
+package sba.sms.benchmarks;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+import sba.sms.models.Student;
+import sba.sms.services.StudentService;
+import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.PasswordHasher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the login paths against the in-memory H2 profile: the former
+ * entity query on (email, password), the hashed check without the verified
+ * login cache (cold) and the repeated check of the same credentials (cached).
+ * The fork pins the password work factor to the production default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-D" + PasswordHasher.ITERATIONS_PROPERTY + "=" + PasswordHasher.DEFAULT_ITERATIONS)
+public class LoginBenchmark {
+    static final String EMAIL = "student0@example.com";
+    static final String PASSWORD = "password";
+
+    @Param({"1000"})
+    int students;
+
+    StudentService cachedService;
+    String storedHash;
+
+    @Setup
+    public void seed() {
+        HibernateUtil.useProfile("h2");
+        StudentService studentService = new StudentService();
+        storedHash = PasswordHasher.hash(PASSWORD);
+        for (int s = 0; s < students; s++) {
+            studentService.createStudent(new Student("student" + s + "@example.com", "student " + s, storedHash));
+        }
+        cachedService = new StudentService();
+        cachedService.validateStudent(EMAIL, PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Benchmark
+    public boolean entityQuery() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            return !session.createQuery("FROM Student s WHERE s.email = :email AND s.password = :password", Student.class)
+                    .setParameter("email", EMAIL)
+                    .setParameter("password", storedHash)
+                    .getResultList().isEmpty();
+        }
+    }
+
+    @Benchmark
+    public boolean validateCold() {
+        return new StudentService().validateStudent(EMAIL, PASSWORD);
+    }
+
+    @Benchmark
+    public boolean validateCached() {
+        return cachedService.validateStudent(EMAIL, PASSWORD);
+    }
+}
@@ -0,0 +1,116 @@
+package sba.sms.benchmarks;
+
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import sba.sms.models.Course;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.services.RegistrationQueue;
+import sba.sms.services.StudentService;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares an opening-day burst of registrations made directly, one transaction each,
+ * with the same burst sent through a {@link RegistrationQueue}. The sample time mode
+ * reports the latency percentiles seen by the callers (p99 included); the registrations
+ * and commits per second of each iteration are printed, the commits from the Hibernate
+ * statistics. Run it through the 'bench' Maven profile with
+ * -Djmh.include=sba.sms.benchmarks.RegistrationBurstBenchmark, the multi threaded run is the burst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(16)
+@Fork(1)
+public class RegistrationBurstBenchmark {
+
+    @Param({"10000"})
+    int students;
+
+    @Param({"100"})
+    int courses;
+
+    @Param({"5"})
+    int coursesPerStudent;
+
+    @Param({"100"})
+    int batchSize;
+
+    @Param({"2"})
+    long lingerMillis;
+
+    StudentService studentService;
+    RegistrationQueue queue;
+    Statistics statistics;
+    final LongAdder registered = new LongAdder();
+    long iterationStarted;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        HibernateUtil.useProfile("h2");
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO course (name, instructor, capacity, enrolled) " +
+                            "SELECT 'course ' || X, 'instructor ' || MOD(X, 40), " + Course.UNLIMITED_CAPACITY + ", 0 " +
+                            "FROM SYSTEM_RANGE(1, :courses)")
+                    .setParameter("courses", courses)
+                    .executeUpdate();
+            session.createNativeQuery("INSERT INTO student (email, name, password) " +
+                            "SELECT 'student' || X || '@example.com', 'student ' || X, 'password' FROM SYSTEM_RANGE(1, :students)")
+                    .setParameter("students", students)
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+        studentService = new StudentService();
+        queue = new RegistrationQueue(studentService, RegistrationQueue.DEFAULT_CAPACITY, batchSize, lingerMillis);
+        statistics = HibernateUtil.getSessionFactory().getStatistics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queue.close();
+        HibernateUtil.shutdown();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        statistics.clear();
+        registered.reset();
+        iterationStarted = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCommits() {
+        double seconds = (System.nanoTime() - iterationStarted) / 1e9;
+        System.out.printf("%n%.0f registrations/s, %.0f commits/s%n",
+                registered.sum() / seconds, statistics.getSuccessfulTransactionCount() / seconds);
+    }
+
+    String randomEmail() {
+        return "student" + (ThreadLocalRandom.current().nextInt(students) + 1) + "@example.com";
+    }
+
+    int randomCourseId() {
+        return ThreadLocalRandom.current().nextInt(courses) + 1;
+    }
+
+    @Benchmark
+    public EnrollmentStatus direct() {
+        EnrollmentStatus status = studentService.registerStudentToCourse(randomEmail(), randomCourseId());
+        registered.increment();
+        return status;
+    }
+
+    @Benchmark
+    public EnrollmentStatus queued() {
+        EnrollmentStatus status = queue.submit(randomEmail(), randomCourseId()).join();
+        registered.increment();
+        return status;
+    }
+}
@@ -0,0 +1,163 @@
+package sba.sms.benchmarks;
+
+import jakarta.persistence.PersistenceException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.openjdk.jmh.annotations.*;
+import sba.sms.models.Course;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.services.StudentService;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the registration of {@link StudentService#registerStudentToCourse}, a seat update and
+ * a plain insert the primary key rejects for an existing pair, with the path it replaced, whose
+ * insert skipped an existing pair with NOT EXISTS and then gave the seat back and looked up why.
+ * 'New' registrations use pairs never registered before, 'duplicate' ones pairs registered
+ * during the seed: two statements on the current path against four on the baseline. Run it
+ * through the 'bench' Maven profile with -Djmh.include=sba.sms.benchmarks.RegistrationWriteBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class RegistrationWriteBenchmark {
+
+    @Param({"10000"})
+    int students;
+
+    @Param({"100"})
+    int courses;
+
+    @Param({"5"})
+    int coursesPerStudent;
+
+    StudentService studentService;
+    final AtomicLong pairs = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void seed() {
+        HibernateUtil.useProfile("h2");
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO course (name, instructor, capacity, enrolled) " +
+                            "SELECT 'course ' || X, 'instructor ' || MOD(X, 40), " + Course.UNLIMITED_CAPACITY + ", 0 " +
+                            "FROM SYSTEM_RANGE(1, :courses)")
+                    .setParameter("courses", courses)
+                    .executeUpdate();
+            session.createNativeQuery("INSERT INTO student (email, name, password) " +
+                            "SELECT 'student' || X || '@example.com', 'student ' || X, 'password' FROM SYSTEM_RANGE(1, :students)")
+                    .setParameter("students", students)
+                    .executeUpdate();
+            // every student takes course 1, the duplicates register it again
+            session.createNativeQuery("INSERT INTO student_course (student_email, course_id) " +
+                            "SELECT 'student' || X || '@example.com', 1 FROM SYSTEM_RANGE(1, :students)")
+                    .setParameter("students", students)
+                    .executeUpdate();
+            session.createNativeQuery("UPDATE course SET enrolled = :students WHERE id = 1")
+                    .setParameter("students", students)
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+        studentService = new StudentService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    // the next pair never registered before, walking students first and courses 2.. after
+    long nextPair() {
+        long pair = pairs.getAndIncrement();
+        if (pair >= (long) students * (courses - 1)) {
+            throw new IllegalStateException("out of new pairs, raise students or courses");
+        }
+        return pair;
+    }
+
+    String emailOf(long pair) {
+        return "student" + (pair % students + 1) + "@example.com";
+    }
+
+    int courseOf(long pair) {
+        return (int) (pair / students) + 2;
+    }
+
+    String randomEmail() {
+        return "student" + (ThreadLocalRandom.current().nextInt(students) + 1) + "@example.com";
+    }
+
+    @Benchmark
+    public EnrollmentStatus newConstraintInsert() {
+        long pair = nextPair();
+        return studentService.registerStudentToCourse(emailOf(pair), courseOf(pair));
+    }
+
+    @Benchmark
+    public EnrollmentStatus newNotExistsInsert() {
+        long pair = nextPair();
+        return notExistsInsert(emailOf(pair), courseOf(pair));
+    }
+
+    @Benchmark
+    public EnrollmentStatus duplicateConstraintInsert() {
+        return studentService.registerStudentToCourse(randomEmail(), 1);
+    }
+
+    @Benchmark
+    public EnrollmentStatus duplicateNotExistsInsert() {
+        return notExistsInsert(randomEmail(), 1);
+    }
+
+    // the registration path before the constraint based insert, kept here as the baseline
+    static EnrollmentStatus notExistsInsert(String email, int courseId) {
+        Session session = HibernateUtil.getSessionFactory().openSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            int seated = session.createQuery("UPDATE Course c SET c.enrolled = c.enrolled + 1 " +
+                                             "WHERE c.id = :courseId AND c.enrolled < c.capacity")
+                    .setParameter("courseId", courseId)
+                    .executeUpdate();
+            if (seated == 0) {
+                transaction.rollback();
+                return EnrollmentStatus.COURSE_FULL;
+            }
+            int inserted = session.createNativeQuery("INSERT INTO student_course (student_email, course_id) " +
+                                                     "SELECT s.email, :courseId FROM student s WHERE s.email = :email " +
+                                                     "AND NOT EXISTS (SELECT 1 FROM student_course sc " +
+                                                     "WHERE sc.student_email = :email AND sc.course_id = :courseId)")
+                    .setParameter("email", email)
+                    .setParameter("courseId", courseId)
+                    .executeUpdate();
+            if (inserted == 0) {
+                session.createQuery("UPDATE Course c SET c.enrolled = c.enrolled - 1 WHERE c.id = :courseId")
+                        .setParameter("courseId", courseId)
+                        .executeUpdate();
+                long enrolled = session.createQuery("SELECT COUNT(*) FROM Student s JOIN s.courses c " +
+                                                    "WHERE s.email = :email AND c.id = :courseId", Long.class)
+                        .setParameter("email", email)
+                        .setParameter("courseId", courseId)
+                        .getSingleResult();
+                transaction.rollback();
+                return enrolled > 0 ? EnrollmentStatus.ALREADY_ENROLLED : EnrollmentStatus.UNKNOWN_STUDENT;
+            }
+            transaction.commit();
+            return EnrollmentStatus.ADDED;
+        } catch (PersistenceException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package sba.sms.benchmarks;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+import sba.sms.models.Course;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.services.CourseService;
+import sba.sms.services.StudentService;
+import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.PasswordHasher;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks the StudentI and CourseI methods against the in-memory H2 profile,
+ * seeded with 'students' students, 'courses' courses and 'coursesPerStudent'
+ * enrollments per student. Run it through the 'bench' Maven profile, which runs
+ * it single and multi threaded and writes JSON results to target/.
+ * The fork pins the password work factor to the production default, so password
+ * hashing costs the same whatever the launching JVM sets. Logins are measured twice:
+ * cold, a query plus a full hash check, and cached, the same credentials again within
+ * the verified login ttl.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-D" + PasswordHasher.ITERATIONS_PROPERTY + "=" + PasswordHasher.DEFAULT_ITERATIONS)
+public class ServiceBenchmark {
+    static final String PASSWORD = "password";
+    // students whose login is verified in setup, for validateStudentCached
+    static final int LOGGED_IN = 16;
+
+    @Param({"1000"})
+    int students;
+
+    @Param({"100"})
+    int courses;
+
+    @Param({"5"})
+    int coursesPerStudent;
+
+    StudentService studentService;
+    CourseService courseService;
+    final AtomicLong created = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void seed() {
+        HibernateUtil.useProfile("h2");
+        studentService = new StudentService();
+        courseService = new CourseService();
+        String hash = PasswordHasher.hash(PASSWORD);
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO course (name, instructor, capacity, enrolled) " +
+                            "SELECT 'course ' || X, 'instructor ' || MOD(X, 40), " + Course.UNLIMITED_CAPACITY + ", 0 " +
+                            "FROM SYSTEM_RANGE(1, :courses)")
+                    .setParameter("courses", courses)
+                    .executeUpdate();
+            session.createNativeQuery("INSERT INTO student (email, name, password) " +
+                            "SELECT 'student' || X || '@example.com', 'student ' || X, :hash FROM SYSTEM_RANGE(1, :students)")
+                    .setParameter("hash", hash)
+                    .setParameter("students", students)
+                    .executeUpdate();
+            session.createNativeQuery("INSERT INTO student_course (student_email, course_id) " +
+                            "SELECT 'student' || S.X || '@example.com', MOD(S.X * 7 + C.X, :courses) + 1 " +
+                            "FROM SYSTEM_RANGE(1, :students) S, SYSTEM_RANGE(1, :perStudent) C")
+                    .setParameter("courses", courses)
+                    .setParameter("students", students)
+                    .setParameter("perStudent", coursesPerStudent)
+                    .executeUpdate();
+            session.createNativeQuery("UPDATE course c SET enrolled = " +
+                            "(SELECT COUNT(*) FROM student_course sc WHERE sc.course_id = c.id)")
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+        for (int s = 1; s <= LOGGED_IN; s++) {
+            studentService.validateStudent("student" + s + "@example.com", PASSWORD);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    String randomEmail() {
+        return "student" + (ThreadLocalRandom.current().nextInt(students) + 1) + "@example.com";
+    }
+
+    int randomCourseId() {
+        return ThreadLocalRandom.current().nextInt(courses) + 1;
+    }
+
+    @Benchmark
+    public void createStudent() {
+        long n = created.incrementAndGet();
+        studentService.createStudent(new Student("new" + n + "@example.com", "new student " + n, PASSWORD));
+    }
+
+    // a fresh service has an empty verified login cache, so every call queries and hashes
+    @Benchmark
+    public boolean validateStudentCold() {
+        return new StudentService().validateStudent(randomEmail(), PASSWORD);
+    }
+
+    @Benchmark
+    public boolean validateStudentCached() {
+        return studentService.validateStudent("student" + (ThreadLocalRandom.current().nextInt(LOGGED_IN) + 1) + "@example.com", PASSWORD);
+    }
+
+    @Benchmark
+    public Student getStudentByEmail() {
+        return studentService.getStudentByEmail(randomEmail());
+    }
+
+    @Benchmark
+    public EnrollmentStatus registerStudentToCourse() {
+        return studentService.registerStudentToCourse(randomEmail(), randomCourseId());
+    }
+
+    @Benchmark
+    public List<Course> getStudentCourses() {
+        return studentService.getStudentCourses(randomEmail());
+    }
+
+    @Benchmark
+    public List<Course> getAllCourses() {
+        return courseService.getAllCourses();
+    }
+
+    @Benchmark
+    public Course getCourseById() {
+        return courseService.getCourseById(randomCourseId());
+    }
+}
@@ -0,0 +1,65 @@
+package sba.sms.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import sba.sms.models.Course;
+import sba.sms.services.CourseService;
+import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold start of the application, from a fresh JVM to the first served request
+ * (the course catalog), against an existing schema. 'update' is the former startup, Hibernate
+ * introspecting the tables and altering what it thinks is missing; 'validate' is the current
+ * one, a schema version check followed by the validation of the mapping. Every fork is one
+ * cold start, so the score is the mean of the forks. Run it through the 'bench' Maven profile
+ * with -Djmh.include=sba.sms.benchmarks.StartupBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+    // the database of the 'h2' profile, see hibernate-h2.cfg.xml
+    static final String URL = "jdbc:h2:mem:smsdb;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1";
+
+    @Param({"update", "validate"})
+    String schema;
+
+    @Param({"100"})
+    int courses;
+
+    // the schema and catalog exist before the application starts, as they would on MySQL
+    @Setup(Level.Trial)
+    public void createSchema() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            SchemaMigrator.migrate(connection);
+            statement.executeUpdate("INSERT INTO course (name, instructor) " +
+                    "SELECT 'course ' || X, 'instructor ' || MOD(X, 40) FROM SYSTEM_RANGE(1, " + courses + ")");
+        }
+        if ("update".equals(schema)) {
+            System.setProperty(HibernateUtil.SCHEMA_ACTION_PROPERTY, "update");
+            System.setProperty(SchemaMigrator.MIGRATE_PROPERTY, "false");
+        }
+        HibernateUtil.useProfile("h2");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Benchmark
+    public List<Course> firstRequest() {
+        return new CourseService().getAllCourses();
+    }
+}
@@ -0,0 +1,77 @@
+package sba.sms.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class EntityIdentityTest {
+
+    @Test
+    // A course keeps its hash when the database assigns its id, and is identified by that id only
+    public void testCourseIdentityStableAcrossIdAssignment() {
+        Course course = new Course("Java", "Roger Boaitey");
+        Set<Course> courses = new HashSet<>();
+        courses.add(course);
+        int hash = course.hashCode();
+        assertThat(course).isNotEqualTo(new Course("Java", "Roger Boaitey"));
+        course.setId(7);
+        assertThat(course.hashCode()).isEqualTo(hash);
+        assertThat(courses).contains(course);
+
+        Course copy = new Course("Java, renamed", "Someone Else");
+        copy.setId(7);
+        assertThat(courses).contains(copy);
+        // another section with the same name and instructor is another course
+        Course section = new Course("Java", "Roger Boaitey");
+        section.setId(8);
+        assertThat(courses).doesNotContain(section);
+        assertThat(courses).doesNotContain(new Course("Java", "Roger Boaitey"));
+    }
+
+    @Test
+    // A student's identity is the email, whatever the courses they take
+    public void testStudentIdentityIgnoresCourses() {
+        Student student = new Student("reema@gmail.com", "reema brown", "password");
+        int hash = student.hashCode();
+        Course course = new Course("Java", "Roger Boaitey");
+        student.getCourses().add(course);
+        course.getStudents().add(student);
+        assertThat(student.hashCode()).isEqualTo(hash);
+        assertThat(student).isEqualTo(new Student("reema@gmail.com", "other name", "other"));
+        assertThat(course.containsStudent(new Student("reema@gmail.com", null, null))).isTrue();
+        assertThat(student.isEnrolledCourse(course)).isTrue();
+        assertThat(student.isEnrolledCourse(new Course("Java", "Roger Boaitey"))).isFalse();
+    }
+
+    @Test
+    // Membership goes by course id and follows the changes made through getCourses
+    public void testEnrolledCourseById() {
+        Student student = new Student("reema@gmail.com", "reema brown", "password");
+        Course java = new Course("Java", "Roger Boaitey");
+        java.setId(1);
+        Course unsaved = new Course("SQL", "Ezra Williams");
+        student.getCourses().add(java);
+        student.getCourses().add(unsaved);
+        Course copy = new Course("Java", "other");
+        copy.setId(1);
+        assertThat(student.isEnrolledCourse(copy)).isTrue();
+        assertThat(student.isEnrolledCourse(unsaved)).isTrue();
+
+        // the unsaved course is saved after it was added
+        unsaved.setId(2);
+        Course sqlCopy = new Course("SQL", "Ezra Williams");
+        sqlCopy.setId(2);
+        assertThat(student.isEnrolledCourse(sqlCopy)).isTrue();
+
+        student.getCourses().remove(java);
+        Course spring = new Course("Spring", "LaTonya Lewis");
+        spring.setId(3);
+        student.getCourses().add(spring);
+        assertThat(student.isEnrolledCourse(copy)).isFalse();
+        assertThat(student.isEnrolledCourse(spring)).isTrue();
+    }
+}
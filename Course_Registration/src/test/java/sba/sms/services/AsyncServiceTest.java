@@ -0,0 +1,101 @@
+package sba.sms.services;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.dao.StudentI;
+import sba.sms.models.Enrollment;
+import sba.sms.utils.BoundedExecutor;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class AsyncServiceTest {
+    static final int CALLS = 10_000;
+    static final String[] EMAILS = {"reema@gmail.com", "annette@gmail.com", "anthony@gmail.com",
+            "ariadna@gmail.com", "bolaji@gmail.com", "shirese@gmail.com"};
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (String email : EMAILS) {
+            enrollments.add(new Enrollment(email, 1));
+            enrollments.add(new Enrollment(email, 2));
+        }
+        new StudentService().registerStudentsToCourses(enrollments);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Test
+    // 10k simultaneous calls complete with bounded concurrency and stable latency
+    public void testSimultaneousCalls() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger served = new AtomicInteger();
+        long[] serviceTimes = new long[CALLS + 2];
+        StudentService studentService = new StudentService();
+        StudentI counting = (StudentI) Proxy.newProxyInstance(StudentI.class.getClassLoader(),
+                new Class<?>[]{StudentI.class}, (proxy, method, args) -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    long begin = System.nanoTime();
+                    try {
+                        return method.invoke(studentService, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        serviceTimes[served.getAndIncrement()] = System.nanoTime() - begin;
+                        running.decrementAndGet();
+                    }
+                });
+
+        try (BoundedExecutor executor = BoundedExecutor.forConnectionPool()) {
+            AsyncStudentService students = new AsyncStudentService(counting, executor);
+            long[] latencies = new long[CALLS];
+            List<CompletableFuture<?>> futures = new ArrayList<>(CALLS);
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                int call = i;
+                String email = EMAILS[i % EMAILS.length];
+                long submitted = System.nanoTime();
+                CompletableFuture<?> future = i % 2 == 0
+                        ? students.validateStudent(email, "password")
+                        : students.getStudentCourses(email);
+                futures.add(future.whenComplete((result, error) -> latencies[call] = System.nanoTime() - submitted));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            long[] service = Arrays.copyOf(serviceTimes, CALLS);
+            Arrays.sort(service);
+            System.out.printf("%d calls in %.2fs (%s threads), peak in flight %d/%d, "
+                            + "service time p50 %.2fms p99 %.2fms, end to end p50 %.0fms p99 %.0fms%n",
+                    CALLS, seconds, executor.usesVirtualThreads() ? "virtual" : "platform", peak.get(),
+                    executor.getMaxInFlight(), service[CALLS / 2] / 1e6, service[CALLS * 99 / 100] / 1e6,
+                    latencies[CALLS / 2] / 1e6, latencies[CALLS * 99 / 100] / 1e6);
+            assertThat(peak.get()).isLessThanOrEqualTo(executor.getMaxInFlight());
+            // admitted calls keep an uncontended service time, the wait happens in the submitting thread
+            assertThat(service[CALLS / 2]).isLessThan(TimeUnit.MILLISECONDS.toNanos(5));
+            assertThat(futures).allMatch(f -> !f.isCompletedExceptionally());
+            assertThat(students.getStudentCourses("reema@gmail.com").get()).hasSize(2);
+            assertThat(students.validateStudent("reema@gmail.com", "wrong").get()).isFalse();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package sba.sms.services;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class CachedCourseServiceTest {
+    CachedCourseService cService;
+    Statistics statistics;
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        cService = new CachedCourseService(new CourseService());
+        statistics = HibernateUtil.getSessionFactory().getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    // After the first load the catalog and every course by id are served without SQL
+    public void testRepeatedReadsCostNoStatements() {
+        int size = cService.getAllCourses().size();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        statistics.clear();
+        for (int i = 0; i < 100; i++) {
+            assertThat(cService.getAllCourses()).hasSize(size);
+            assertThat(cService.getCourseById(1).getName()).isEqualTo("Java");
+        }
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(cService.getCatalogStats().getHits()).isEqualTo(100);
+        assertThat(cService.getCourseStats().getHits()).isEqualTo(100);
+        assertThat(cService.getCourseStats().getMisses()).isZero();
+    }
+
+    @Test
+    // createCourse invalidates the cache so the new course is visible on the next read
+    public void testCreateCourseInvalidates() {
+        int size = cService.getAllCourses().size();
+        cService.createCourse(new Course("Docker", "Jane Doe"));
+        assertThat(cService.getAllCourses()).hasSize(size + 1);
+        assertThat(cService.getCatalogStats().getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    // The by-id cache is bounded and evicts the least recently used course
+    public void testBoundedSize() {
+        CachedCourseService small = new CachedCourseService(new CourseService(), 2, 60_000);
+        small.getCourseById(1);
+        small.getCourseById(2);
+        small.getCourseById(3);
+        assertThat(small.getCourseStats().getSize()).isEqualTo(2);
+        assertThat(small.getCourseStats().getEvictions()).isEqualTo(1);
+        statistics.clear();
+        small.getCourseById(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        // a catalog larger than the bound is not kept, nor are its courses by id
+        statistics.clear();
+        int size = small.getAllCourses().size();
+        assertThat(small.getAllCourses()).hasSize(size).hasSizeGreaterThan(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(small.getCatalogStats().getSize()).isZero();
+        assertThat(small.getCourseStats().getSize()).isEqualTo(2);
+    }
+}
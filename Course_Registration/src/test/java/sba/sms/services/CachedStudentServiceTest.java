@@ -0,0 +1,85 @@
+package sba.sms.services;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.Student;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class CachedStudentServiceTest {
+    CachedStudentService sService;
+    Statistics statistics;
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        sService = new CachedStudentService(new StudentService());
+        statistics = HibernateUtil.getSessionFactory().getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    // One login reads the profile several times but queries once
+    public void testRepeatedReadsCostNoStatements() {
+        assertThat(sService.getStudentByEmail("annette@gmail.com").getName()).isEqualTo("annette allen");
+        statistics.clear();
+        for (int i = 0; i < 10; i++) {
+            sService.getStudentByEmail("annette@gmail.com");
+        }
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(sService.getStats().getHits()).isEqualTo(10);
+    }
+
+    @Test
+    // A registration drops the cached profile so the new course shows up
+    public void testRegistrationInvalidatesProfile() {
+        assertThat(sService.getStudentByEmail("bolaji@gmail.com").getCourses()).isEmpty();
+        sService.registerStudentToCourse("bolaji@gmail.com", 3);
+        assertThat(sService.getStudentByEmail("bolaji@gmail.com").getCourses())
+                .extracting(Course::getId).containsExactly(3);
+    }
+
+    @Test
+    // Concurrent readers never keep a profile older than the last committed registration
+    public void testConcurrentReadersAndWriters() throws Exception {
+        String email = "anthony@gmail.com";
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int courseId = 1; courseId <= 8; courseId++) {
+            int id = courseId;
+            futures.add(executor.submit(() -> sService.registerStudentToCourse(email, id)));
+            for (int r = 0; r < 5; r++) {
+                futures.add(executor.submit(() -> sService.getStudentByEmail(email)));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Student cached = sService.getStudentByEmail(email);
+        assertThat(cached.getCourses()).hasSize(8);
+    }
+}
@@ -0,0 +1,72 @@
+package sba.sms.services;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class EnrollmentThroughputTest {
+    static final int STUDENTS = 200;
+    static final int COURSES = 10;
+    static final StudentService studentService = new StudentService();
+    static final CourseService courseService = new CourseService();
+
+    @BeforeAll
+    // Seeds students and courses into a fresh in-memory database
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        for (int c = 0; c < COURSES; c++) {
+            courseService.createCourse(new Course("course " + c, "instructor " + c));
+        }
+        for (int s = 0; s < STUDENTS; s++) {
+            studentService.createStudent(new Student(email(s), "student " + s, "password"));
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    static String email(int s) {
+        return "student" + s + "@example.com";
+    }
+
+    @Test
+    // Compares one transaction per pair to the chunked, batched path on disjoint pairs
+    public void testBatchThroughput() {
+        List<Enrollment> singles = new ArrayList<>();
+        List<Enrollment> batch = new ArrayList<>();
+        for (int s = 0; s < STUDENTS; s++) {
+            singles.add(new Enrollment(email(s), 1));
+            for (int c = 2; c <= COURSES; c++) {
+                batch.add(new Enrollment(email(s), c));
+            }
+        }
+
+        long start = System.nanoTime();
+        for (Enrollment enrollment : singles) {
+            studentService.registerStudentToCourse(enrollment.getEmail(), enrollment.getCourseId());
+        }
+        double singleRate = singles.size() / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        List<EnrollmentStatus> results = studentService.registerStudentsToCourses(batch);
+        double batchRate = batch.size() / ((System.nanoTime() - start) / 1e9);
+
+        System.out.printf("single pair: %.0f enrollments/s, batch: %.0f enrollments/s%n", singleRate, batchRate);
+        assertThat(results).hasSize(batch.size()).containsOnly(EnrollmentStatus.ADDED);
+        assertThat(studentService.getStudentCourses(email(0))).hasSize(COURSES);
+        assertThat(batchRate).isGreaterThan(singleRate);
+    }
+}
@@ -0,0 +1,125 @@
+package sba.sms.services;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.Student;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class FetchPlanTest {
+    static final StudentService studentService = new StudentService();
+    static final CourseService courseService = new CourseService();
+    Statistics statistics;
+
+    @BeforeAll
+    // Seeds the dummy data and enrolls reema in three courses
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+        studentService.registerStudentsToCourses(List.of(
+                new Enrollment("reema@gmail.com", 1),
+                new Enrollment("reema@gmail.com", 2),
+                new Enrollment("reema@gmail.com", 3),
+                new Enrollment("annette@gmail.com", 1)));
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @BeforeEach
+    public void resetStatistics() {
+        statistics = HibernateUtil.getSessionFactory().getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void testGetAllStudents() {
+        List<Student> students = studentService.getAllStudents();
+        assertThat(students).hasSizeGreaterThanOrEqualTo(6);
+        assertCounts(1, students.size(), 0);
+    }
+
+    @Test
+    public void testGetStudentByEmail() {
+        Student student = studentService.getStudentByEmail("reema@gmail.com");
+        assertCounts(1, 4, 1);
+        assertThat(student.getCourses()).hasSize(3);
+    }
+
+    @Test
+    public void testValidateStudent() {
+        assertThat(studentService.validateStudent("reema@gmail.com", "password")).isTrue();
+        // selects the password hash only
+        assertCounts(1, 0, 0);
+    }
+
+    @Test
+    public void testGetStudentCourses() {
+        assertThat(studentService.getStudentCourses("reema@gmail.com")).hasSize(3);
+        assertCounts(1, 3, 0);
+    }
+
+    @Test
+    public void testRegisterStudentToCourse() {
+        studentService.registerStudentToCourse("shirese@gmail.com", 4);
+        // join row insert, seat update, nothing loaded
+        assertCounts(2, 0, 0);
+    }
+
+    @Test
+    public void testRegisterStudentsToCourses() {
+        studentService.registerStudentsToCourses(List.of(
+                new Enrollment("bolaji@gmail.com", 5),
+                new Enrollment("bolaji@gmail.com", 6),
+                new Enrollment("ariadna@gmail.com", 5)));
+        // students with courses, locked courses, batched join rows, batched seat updates
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testCreateStudent() {
+        studentService.createStudent(new Student("akira@gmail.com", "akira tran", "password"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCreateCourse() {
+        courseService.createCourse(new Course("Docker", "Jane Doe"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGetAllCourses() {
+        assertThat(courseService.getAllCourses()).hasSizeGreaterThanOrEqualTo(8);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+    }
+
+    @Test
+    public void testGetCourseById() {
+        assertThat(courseService.getCourseById(1).getName()).isEqualTo("Java");
+        assertCounts(1, 1, 0);
+    }
+
+    // Checks SQL statements prepared, entities loaded and collections fetched by the last call
+    private void assertCounts(long statements, long entities, long collections) {
+        assertThat(statistics.getPrepareStatementCount()).as("statements").isEqualTo(statements);
+        assertThat(statistics.getEntityLoadCount()).as("entities").isEqualTo(entities);
+        assertThat(statistics.getCollectionLoadCount()).as("collections").isEqualTo(collections);
+    }
+}
@@ -0,0 +1,86 @@
+package sba.sms.services;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.utils.DataGenerator;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class IndexedCourseServiceTest {
+    static final List<String> QUERIES = List.of("java", "Data", "sys", "li", "m", "machine learning", "101",
+            "sql 10", "garcia", "chen", "a", "testing novak", "ing 1", "cobol");
+    static final CourseService courseService = new CourseService();
+    static IndexedCourseService cService;
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        new DataGenerator(3, 0, 400, 0, 1.0).generate();
+        cService = new IndexedCourseService(courseService);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    static List<Integer> ids(List<Course> courses) {
+        return courses.stream().map(Course::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    // The index finds the same courses as the LIKE search of the database
+    public void testIndexMatchesSql() {
+        for (String query : QUERIES) {
+            assertThat(ids(cService.searchCourses(query, 1_000))).as(query)
+                    .containsExactlyInAnyOrderElementsOf(ids(courseService.searchCourses(query, 1_000)));
+        }
+        assertThat(cService.searchCourses("java", 1_000)).isNotEmpty();
+        assertThat(cService.searchCourses("cobol", 10)).isEmpty();
+        // both put the names starting with the query first, the shorter name first
+        assertThat(cService.searchCourses("java", 1).get(0).getName()).isEqualTo("Java 101");
+        assertThat(courseService.searchCourses("java", 1).get(0).getName()).isEqualTo("Java 101");
+    }
+
+    @Test
+    // Punctuation in the names and the query is a word break for the database as for the index
+    public void testPunctuation() {
+        Course cpp = new Course("C++ Primer", "Stanley Lippman");
+        Course boot = new Course("Spring-Boot: Microservices", "Josh O'Long");
+        courseService.createCourse(cpp);
+        courseService.createCourse(boot);
+        IndexedCourseService index = new IndexedCourseService(courseService);
+        for (String query : List.of("C++", "c", "spring boot", "Spring-Boot", "boot:micro", "o'long", "josh o")) {
+            assertThat(ids(courseService.searchCourses(query, 1_000))).as(query)
+                    .containsExactlyInAnyOrderElementsOf(ids(index.searchCourses(query, 1_000)));
+        }
+        assertThat(ids(courseService.searchCourses("c++ primer", 5))).containsExactly(cpp.getId());
+        assertThat(ids(courseService.searchCourses("Spring Boot", 5))).containsExactly(boot.getId());
+        assertThat(ids(courseService.searchCourses("spring-boot microservices", 5))).containsExactly(boot.getId());
+        assertThat(ids(courseService.searchCourses("long", 5))).contains(boot.getId());
+    }
+
+    @Test
+    // Courses created through the service are found, searches cost no statements once the index is filled
+    public void testCreateKeepsIndexCurrent() {
+        cService.getIndex();
+        Statistics statistics = HibernateUtil.getSessionFactory().getStatistics();
+        statistics.clear();
+        assertThat(cService.searchCourses("networks", 5)).hasSize(5);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        Course course = new Course("Distributed Systems", "Leslie Lamport");
+        cService.createCourse(course);
+        assertThat(cService.searchCourses("lamport", 5)).containsExactly(course);
+        assertThat(cService.searchCourses("distributed sys", 5)).extracting(Course::getId).containsExactly(course.getId());
+        assertThat(ids(courseService.searchCourses("lamport", 5))).containsExactly(course.getId());
+    }
+}
@@ -0,0 +1,90 @@
+package sba.sms.services;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.EnrollmentIndex;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class IndexedStudentServiceTest {
+    static IndexedStudentService sService;
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+        new StudentService().registerStudentToCourse("reema@gmail.com", 1);
+        sService = new IndexedStudentService(new StudentService(), EnrollmentIndex.load());
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Test
+    // Successful registrations show up in the index, failed ones do not
+    public void testRegistrationUpdatesIndex() {
+        EnrollmentIndex index = sService.getIndex();
+        assertThat(index.isEnrolled("reema@gmail.com", 1)).isTrue();
+        Course small = new Course("Index Tuning", "Jim Gray", 1);
+        new CourseService().createCourse(small);
+
+        assertThat(sService.registerStudentToCourse("annette@gmail.com", small.getId())).isEqualTo(EnrollmentStatus.ADDED);
+        assertThat(sService.registerStudentToCourse("bolaji@gmail.com", small.getId())).isEqualTo(EnrollmentStatus.COURSE_FULL);
+        assertThat(sService.registerStudentToCourse("nobody@example.com", 2)).isEqualTo(EnrollmentStatus.UNKNOWN_STUDENT);
+        assertThat(sService.registerStudentsToCourses(List.of(
+                new Enrollment("bolaji@gmail.com", 2),
+                new Enrollment("bolaji@gmail.com", 999))))
+                .containsExactly(EnrollmentStatus.ADDED, EnrollmentStatus.UNKNOWN_COURSE);
+
+        assertThat(index.getRoster(small.getId())).containsExactly("annette@gmail.com");
+        assertThat(index.isEnrolled("bolaji@gmail.com", small.getId())).isFalse();
+        assertThat(index.isEnrolled("nobody@example.com", 2)).isFalse();
+        assertThat(index.getCourseIds("bolaji@gmail.com")).containsExactly(2);
+        assertThat(index.getEnrolledCount(999)).isZero();
+    }
+
+    @Test
+    // A batch session adds its registrations to the index when they commit, not when they roll back
+    public void testBatchSessionUpdatesIndexOnCommit() {
+        EnrollmentIndex index = sService.getIndex();
+        try (BatchSession batch = new BatchSession(index)) {
+            assertThat(batch.registerStudentToCourse("annette@gmail.com", 3)).isEqualTo(EnrollmentStatus.ADDED);
+            batch.rollback();
+            assertThat(index.isEnrolled("annette@gmail.com", 3)).isFalse();
+
+            assertThat(batch.registerStudentToCourse("annette@gmail.com", 4)).isEqualTo(EnrollmentStatus.ADDED);
+            assertThat(batch.registerStudentToCourse("nobody@example.com", 4)).isEqualTo(EnrollmentStatus.UNKNOWN_STUDENT);
+            assertThat(index.isEnrolled("annette@gmail.com", 4)).isFalse();
+            batch.commit();
+        }
+        assertThat(index.isEnrolled("annette@gmail.com", 4)).isTrue();
+        assertThat(index.isEnrolled("annette@gmail.com", 3)).isFalse();
+        assertThat(index.isEnrolled("nobody@example.com", 4)).isFalse();
+    }
+
+    @Test
+    // Roster and membership questions cost no statements
+    public void testQueriesRunWithoutSql() {
+        EnrollmentIndex index = sService.getIndex();
+        Statistics statistics = HibernateUtil.getSessionFactory().getStatistics();
+        statistics.clear();
+        for (int i = 0; i < 100; i++) {
+            index.isEnrolled("reema@gmail.com", 1);
+            index.getRoster(1);
+            index.getEnrolledCount(1);
+        }
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+}
@@ -0,0 +1,120 @@
+package sba.sms.services;
+
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sba.sms.dao.CourseI;
+import sba.sms.dao.StudentI;
+import sba.sms.models.Enrollment;
+import sba.sms.models.Student;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.ServiceMetrics;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class InstrumentedServiceTest {
+    static final StudentI studentService = new InstrumentedStudentService(new StudentService());
+    static final CourseI courseService = new InstrumentedCourseService(new CachedCourseService(new CourseService()));
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+        new StudentService().registerStudentsToCourses(List.of(
+                new Enrollment("reema@gmail.com", 1),
+                new Enrollment("reema@gmail.com", 2),
+                new Enrollment("reema@gmail.com", 3)));
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @BeforeEach
+    public void reset() {
+        ServiceMetrics.reset();
+    }
+
+    static ServiceMetrics.Snapshot snapshot(String name) {
+        return ServiceMetrics.operation(name).snapshot();
+    }
+
+    @Test
+    // Each call reports the statements and loads of that call only
+    public void testSqlPerCall() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(studentService.getStudentByEmail("reema@gmail.com").getCourses()).hasSize(3);
+            assertThat(studentService.validateStudent("reema@gmail.com", "password")).isTrue();
+        }
+        ServiceMetrics.Snapshot byEmail = snapshot("StudentI.getStudentByEmail");
+        assertThat(byEmail.getCalls()).isEqualTo(10);
+        assertThat(byEmail.getStatementsPerCall()).isEqualTo(1);
+        assertThat(byEmail.getEntitiesPerCall()).isEqualTo(4);
+        assertThat(byEmail.getCollectionsPerCall()).isEqualTo(1);
+        assertThat(byEmail.getPercentileMicros(99)).isPositive().isLessThanOrEqualTo(byEmail.getMaxMicros());
+
+        // the first login checks the password, the others hit the verified login cache
+        ServiceMetrics.Snapshot login = snapshot("StudentI.validateStudent");
+        assertThat(login.getStatements()).isLessThanOrEqualTo(1);
+        assertThat(login.getEntities()).isZero();
+    }
+
+    @Test
+    // Catalog reads answered by the cache report no SQL
+    public void testCachedCallsRunNoSql() {
+        courseService.getAllCourses();
+        courseService.getAllCourses();
+        courseService.getCourseById(1);
+        assertThat(snapshot("CourseI.getAllCourses").getStatements()).isEqualTo(1);
+        assertThat(snapshot("CourseI.getAllCourses").getMaxStatements()).isEqualTo(1);
+        assertThat(snapshot("CourseI.getCourseById").getStatements()).isZero();
+    }
+
+    @Test
+    // Failed calls are counted as calls and errors, and rethrown unchanged
+    public void testErrorsAreCounted() {
+        Student duplicate = new Student("reema@gmail.com", "reema brown", "password");
+        assertThatThrownBy(() -> studentService.createStudent(duplicate)).isInstanceOf(PersistenceException.class);
+        ServiceMetrics.Snapshot create = snapshot("StudentI.createStudent");
+        assertThat(create.getCalls()).isEqualTo(1);
+        assertThat(create.getErrors()).isEqualTo(1);
+    }
+
+    @Test
+    // Concurrent callers each add their own statements, none are lost or double counted
+    public void testConcurrentCalls() {
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[8];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 25; j++) {
+                    studentService.getStudentCourses("reema@gmail.com");
+                }
+            });
+        }
+        CompletableFuture.allOf(calls).join();
+        ServiceMetrics.Snapshot courses = snapshot("StudentI.getStudentCourses");
+        assertThat(courses.getCalls()).isEqualTo(200);
+        assertThat(courses.getStatements()).isEqualTo(200);
+        assertThat(courses.getEntities()).isEqualTo(600);
+    }
+
+    @Test
+    // Nothing is recorded while metrics are switched off
+    public void testDisabled() {
+        ServiceMetrics.setEnabled(false);
+        try {
+            studentService.getAllStudents();
+        } finally {
+            ServiceMetrics.setEnabled(true);
+        }
+        assertThat(snapshot("StudentI.getAllStudents").getCalls()).isZero();
+    }
+}
@@ -0,0 +1,126 @@
+package sba.sms.services;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentEvent;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.EventLog;
+import sba.sms.utils.HibernateUtil;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class OutboxRelayTest {
+    static final StudentService studentService = new StudentService();
+    static final CourseService courseService = new CourseService();
+
+    @TempDir
+    static Path directory;
+    static EventLog log;
+    static OutboxRelay relay;
+
+    @BeforeAll
+    public static void seed() {
+        System.setProperty(HibernateUtil.OUTBOX_PROPERTY, "true");
+        HibernateUtil.useProfile("h2");
+        log = EventLog.open(directory, EventLog.MIN_SEGMENT_BYTES);
+        relay = new OutboxRelay(HibernateUtil.getSessionFactory(), log, 5);
+        CommandLine.addData();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        relay.close();
+        log.close();
+        HibernateUtil.shutdown();
+        System.clearProperty(HibernateUtil.OUTBOX_PROPERTY);
+    }
+
+    static long outboxRows() {
+        return HibernateUtil.getSessionFactory().fromSession(session ->
+                ((Number) session.createNativeQuery("SELECT COUNT(*) FROM enrollment_outbox").getSingleResult()).longValue());
+    }
+
+    @Test
+    // Only committed writes reach the log, and replaying it rebuilds the enrollments of the database
+    public void testReplayMatchesDatabase() {
+        Course seminar = new Course("Event Sourcing", "Greg Young", 2);
+        courseService.createCourse(seminar);
+        assertThat(studentService.registerStudentToCourse("reema@gmail.com", seminar.getId())).isEqualTo(EnrollmentStatus.ADDED);
+        assertThat(studentService.registerStudentToCourse("reema@gmail.com", seminar.getId())).isEqualTo(EnrollmentStatus.ALREADY_ENROLLED);
+        assertThat(studentService.registerStudentToCourse("nobody@example.com", seminar.getId())).isEqualTo(EnrollmentStatus.UNKNOWN_STUDENT);
+        assertThat(studentService.registerStudentsToCourses(List.of(new Enrollment("annette@gmail.com", seminar.getId()),
+                new Enrollment("anthony@gmail.com", seminar.getId()), new Enrollment("annette@gmail.com", 1))))
+                .containsExactly(EnrollmentStatus.ADDED, EnrollmentStatus.COURSE_FULL, EnrollmentStatus.ADDED);
+        try (BatchSession batch = new BatchSession()) {
+            batch.createStudent(new Student("kept@example.com", "kept", "password"));
+            batch.registerStudentToCourse("kept@example.com", 2);
+            batch.commit();
+            batch.createStudent(new Student("rolledback@example.com", "rolled back", "password"));
+            batch.rollback();
+        }
+
+        relay.relayPending();
+        assertThat(outboxRows()).isZero();
+        EnrollmentReplay replay = EnrollmentReplay.of(directory);
+        assertThat(replay.getOffset()).isEqualTo(log.getEndOffset());
+
+        Set<String> emails = new HashSet<>();
+        for (Student student : studentService.getAllStudents()) {
+            emails.add(student.getEmail());
+            Set<Integer> courses = new HashSet<>();
+            studentService.getStudentCourses(student.getEmail()).forEach(course -> courses.add(course.getId()));
+            assertThat(replay.getStudentCourses(student.getEmail())).isEqualTo(courses);
+        }
+        assertThat(replay.getStudents()).isEqualTo(emails).doesNotContain("rolledback@example.com");
+        for (Course course : courseService.getAllCourses()) {
+            assertThat(replay.getCourses()).contains(course.getId());
+            assertThat(replay.getEnrolledPerCourse().getOrDefault(course.getId(), 0)).isEqualTo(course.getEnrolled());
+        }
+    }
+
+    @Test
+    // A consumer resumes from its offset, and events relayed twice after a crash do not change the replay
+    public void testTailFromOffsetAndRepeatedEvents() {
+        relay.relayPending();
+        long offset = log.getEndOffset();
+        EnrollmentReplay replay = EnrollmentReplay.of(directory);
+
+        Course course = new Course("Stream Processing", "Tyler Akidau");
+        courseService.createCourse(course);
+        studentService.createStudent(new Student("tail@example.com", "tail", "password"));
+        studentService.registerStudentToCourse("tail@example.com", course.getId());
+        relay.relayPending();
+
+        List<EnrollmentEvent> events = new ArrayList<>();
+        try (EventLog.Tailer tailer = log.tail(offset)) {
+            EnrollmentEvent event;
+            while ((event = tailer.poll()) != null) {
+                events.add(event);
+            }
+        }
+        assertThat(events).extracting(EnrollmentEvent::getType).containsExactly(EnrollmentEvent.Type.COURSE_CREATED,
+                EnrollmentEvent.Type.STUDENT_CREATED, EnrollmentEvent.Type.ENROLLMENT_ADDED);
+        assertThat(events).extracting(EnrollmentEvent::getSequence).isSorted();
+        assertThat(events.get(2).getEmail()).isEqualTo("tail@example.com");
+        assertThat(events.get(2).getCourseId()).isEqualTo(course.getId());
+
+        // the batch is appended again, as after a crash between forcing the log and deleting the rows
+        events.forEach(log::append);
+        assertThat(replay.resume(directory)).isEqualTo(6);
+        assertThat(replay.getStudentCourses("tail@example.com")).containsExactly(course.getId());
+        assertThat(replay.getEnrolledPerCourse()).containsEntry(course.getId(), 1);
+    }
+}
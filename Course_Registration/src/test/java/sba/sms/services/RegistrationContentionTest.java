@@ -0,0 +1,113 @@
+package sba.sms.services;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import sba.sms.models.Course;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class RegistrationContentionTest {
+    static final int STUDENTS = 200;
+    static final int CAPACITY = 50;
+    static final StudentService studentService = new StudentService();
+    static final CourseService courseService = new CourseService();
+
+    @BeforeAll
+    // Seeds students into a fresh in-memory database
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        for (int s = 0; s < STUDENTS; s++) {
+            studentService.createStudent(new Student("student" + s + "@example.com", "student " + s, "password"));
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8, 64})
+    // Every student asks twice for one course; exactly CAPACITY seats are handed out
+    public void testNoOverbooking(int threads) throws Exception {
+        Course course = new Course("popular " + threads, "instructor", CAPACITY);
+        courseService.createCourse(course);
+        int courseId = course.getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<EnrollmentStatus>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int round = 0; round < 2; round++) {
+            for (int s = 0; s < STUDENTS; s++) {
+                String email = "student" + s + "@example.com";
+                futures.add(executor.submit(() -> studentService.registerStudentToCourse(email, courseId)));
+            }
+        }
+        Map<EnrollmentStatus, Integer> counts = new EnumMap<>(EnrollmentStatus.class);
+        for (Future<EnrollmentStatus> future : futures) {
+            counts.merge(future.get(), 1, Integer::sum);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        System.out.printf("%2d threads: %.0f registrations/s %s%n", threads, futures.size() / seconds, counts);
+        assertThat(counts.get(EnrollmentStatus.ADDED)).isEqualTo(CAPACITY);
+        assertThat(counts).containsOnlyKeys(EnrollmentStatus.ADDED, EnrollmentStatus.ALREADY_ENROLLED, EnrollmentStatus.COURSE_FULL);
+        assertThat(courseService.getCourseById(courseId).getEnrolled()).isEqualTo(CAPACITY);
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            assertThat(session.find(Course.class, courseId,
+                    Map.of(StudentService.FETCH_GRAPH, session.getEntityGraph(Course.WITH_STUDENTS))).getStudents())
+                    .hasSize(CAPACITY);
+        }
+    }
+
+    @Test
+    // The same pair sent by many threads at once is added once, the others see ALREADY_ENROLLED
+    public void testConcurrentDuplicates() throws Exception {
+        Course course = new Course("duplicates", "instructor");
+        courseService.createCourse(course);
+        int courseId = course.getId();
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int s = 0; s < 20; s++) {
+                String email = "student" + s + "@example.com";
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<EnrollmentStatus>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return studentService.registerStudentToCourse(email, courseId);
+                    }));
+                }
+                start.countDown();
+                Map<EnrollmentStatus, Integer> counts = new EnumMap<>(EnrollmentStatus.class);
+                for (Future<EnrollmentStatus> future : futures) {
+                    counts.merge(future.get(), 1, Integer::sum);
+                }
+                assertThat(counts).containsEntry(EnrollmentStatus.ADDED, 1)
+                        .containsEntry(EnrollmentStatus.ALREADY_ENROLLED, threads - 1);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(courseService.getCourseById(courseId).getEnrolled()).isEqualTo(20);
+    }
+}
@@ -0,0 +1,163 @@
+package sba.sms.services;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class RegistrationQueueTest {
+    static final int STUDENTS = 400;
+    static final StudentService studentService = new StudentService();
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+        for (int s = 0; s < STUDENTS; s++) {
+            studentService.createStudent(new Student(email(s), "student " + s, "password"));
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    static String email(int s) {
+        return "queue" + s + "@example.com";
+    }
+
+    @Test
+    // Each caller gets the status of their own registration, duplicates in one batch included
+    public void testResults() throws Exception {
+        Course small = new Course("Queueing Theory", "Leonard Kleinrock", 1);
+        new CourseService().createCourse(small);
+        try (RegistrationQueue queue = new RegistrationQueue(studentService, 100, 10, 50)) {
+            CompletableFuture<EnrollmentStatus> added = queue.submit("reema@gmail.com", small.getId());
+            CompletableFuture<EnrollmentStatus> again = queue.submit("reema@gmail.com", small.getId());
+            CompletableFuture<EnrollmentStatus> full = queue.submit("annette@gmail.com", small.getId());
+            CompletableFuture<EnrollmentStatus> unknownStudent = queue.submit("nobody@example.com", 1);
+            CompletableFuture<EnrollmentStatus> unknownCourse = queue.submit("annette@gmail.com", 999);
+
+            assertThat(added.get(5, TimeUnit.SECONDS)).isEqualTo(EnrollmentStatus.ADDED);
+            assertThat(again.get(5, TimeUnit.SECONDS)).isEqualTo(EnrollmentStatus.ALREADY_ENROLLED);
+            assertThat(full.get(5, TimeUnit.SECONDS)).isEqualTo(EnrollmentStatus.COURSE_FULL);
+            assertThat(unknownStudent.get(5, TimeUnit.SECONDS)).isEqualTo(EnrollmentStatus.UNKNOWN_STUDENT);
+            assertThat(unknownCourse.get(5, TimeUnit.SECONDS)).isEqualTo(EnrollmentStatus.UNKNOWN_COURSE);
+            // submitted within the linger time, so written together
+            assertThat(queue.getBatches()).isEqualTo(1);
+        }
+        assertThat(studentService.getStudentCourses("reema@gmail.com")).extracting(Course::getId).contains(small.getId());
+    }
+
+    @Test
+    // A burst of concurrent callers is written with a fraction of the commits
+    public void testBurstIsGroupCommitted() throws Exception {
+        Statistics statistics = HibernateUtil.getSessionFactory().getStatistics();
+        statistics.clear();
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        List<CompletableFuture<EnrollmentStatus>> results = new ArrayList<>();
+        try (RegistrationQueue queue = new RegistrationQueue(studentService, 1_000, 50, 20)) {
+            List<CompletableFuture<CompletableFuture<EnrollmentStatus>>> submitted = new ArrayList<>();
+            for (int s = 0; s < STUDENTS; s++) {
+                String email = email(s);
+                int courseId = s % 8 + 1;
+                submitted.add(CompletableFuture.supplyAsync(() -> queue.submit(email, courseId), callers));
+            }
+            for (CompletableFuture<CompletableFuture<EnrollmentStatus>> future : submitted) {
+                results.add(future.get());
+            }
+            for (CompletableFuture<EnrollmentStatus> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(EnrollmentStatus.ADDED);
+            }
+            assertThat(queue.getRegistrations()).isEqualTo(STUDENTS);
+            assertThat(queue.getBatches()).isLessThanOrEqualTo(STUDENTS / 5);
+        } finally {
+            callers.shutdown();
+        }
+        assertThat(statistics.getSuccessfulTransactionCount()).isLessThanOrEqualTo(STUDENTS / 5);
+        assertThat(studentService.getStudentCourses(email(9))).extracting(Course::getId).containsExactly(2);
+    }
+
+    @Test
+    // A full queue blocks the caller until the writer takes a registration
+    public void testFullQueuePushesBack() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StudentService blocked = new StudentService() {
+            @Override
+            public List<EnrollmentStatus> registerStudentsToCourses(Collection<Enrollment> enrollments) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.registerStudentsToCourses(enrollments);
+            }
+        };
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try (RegistrationQueue queue = new RegistrationQueue(blocked, 1, 1, 0)) {
+            // the first is taken by the writer, which blocks, the second fills the queue
+            queue.submit("ariadna@gmail.com", 1);
+            while (queue.getQueued() > 0) {
+                Thread.sleep(1);
+            }
+            queue.submit("ariadna@gmail.com", 2);
+            CompletableFuture<CompletableFuture<EnrollmentStatus>> third =
+                    CompletableFuture.supplyAsync(() -> queue.submit("ariadna@gmail.com", 3), caller);
+            Thread.sleep(200);
+            assertThat(third).isNotDone();
+
+            release.countDown();
+            assertThat(third.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS)).isEqualTo(EnrollmentStatus.ADDED);
+        } finally {
+            caller.shutdown();
+        }
+        assertThat(studentService.getStudentCourses("ariadna@gmail.com")).hasSize(3);
+    }
+
+    @Test
+    // When a batch fails, its registrations run alone and only the failing one fails
+    public void testFailedBatchIsReplayed() throws Exception {
+        StudentService failing = new StudentService() {
+            @Override
+            public List<EnrollmentStatus> registerStudentsToCourses(Collection<Enrollment> enrollments) {
+                throw new IllegalStateException("batch failed");
+            }
+
+            @Override
+            public EnrollmentStatus registerStudentToCourse(String email, int courseId) {
+                if (courseId == 7) {
+                    throw new IllegalStateException("course 7 failed");
+                }
+                return super.registerStudentToCourse(email, courseId);
+            }
+        };
+        try (RegistrationQueue queue = new RegistrationQueue(failing, 10, 10, 50)) {
+            CompletableFuture<EnrollmentStatus> ok = queue.submit("shirese@gmail.com", 6);
+            CompletableFuture<EnrollmentStatus> bad = queue.submit("shirese@gmail.com", 7);
+            assertThat(ok.get(5, TimeUnit.SECONDS)).isEqualTo(EnrollmentStatus.ADDED);
+            assertThatThrownBy(() -> bad.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasRootCauseMessage("course 7 failed");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package sba.sms.services;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.ReplicaRouter;
+import sba.sms.utils.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class ReplicaRoutingTest {
+    static final long WINDOW_MILLIS = 300;
+    // two more in-memory databases stand in for the replicas, each with a course of its own
+    static final String[] REPLICAS = {"jdbc:h2:mem:smsreplica0;DB_CLOSE_DELAY=-1", "jdbc:h2:mem:smsreplica1;DB_CLOSE_DELAY=-1"};
+    static final CourseService courseService = new CourseService();
+    static final StudentService studentService = new StudentService();
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        for (int r = 0; r < REPLICAS.length; r++) {
+            try (Connection connection = DriverManager.getConnection(REPLICAS[r], "sa", "");
+                 Statement statement = connection.createStatement()) {
+                SchemaMigrator.migrate(connection);
+                statement.executeUpdate("INSERT INTO course (name, instructor) VALUES ('replica " + r + "', 'replica')");
+            }
+        }
+        System.setProperty(HibernateUtil.REPLICA_URLS_PROPERTY, String.join(",", REPLICAS));
+        System.setProperty(HibernateUtil.READ_YOUR_WRITES_PROPERTY, String.valueOf(WINDOW_MILLIS));
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+        Thread.sleep(WINDOW_MILLIS + 50);
+    }
+
+    @AfterAll
+    public static void tearDown() throws SQLException {
+        HibernateUtil.shutdown();
+        System.clearProperty(HibernateUtil.REPLICA_URLS_PROPERTY);
+        System.clearProperty(HibernateUtil.READ_YOUR_WRITES_PROPERTY);
+        for (String replica : REPLICAS) {
+            try (Connection connection = DriverManager.getConnection(replica, "sa", "")) {
+                SchemaMigrator.drop(connection);
+            }
+        }
+    }
+
+    static List<String> courseNames() {
+        return courseService.getAllCourses().stream().map(Course::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    // Reads are spread round-robin over the replicas and never reach the primary
+    public void testReadsGoToReplicas() {
+        List<String> first = courseNames();
+        List<String> second = courseNames();
+        assertThat(first).hasSize(1).doesNotContain("Java");
+        assertThat(second).hasSize(1).doesNotContain("Java");
+        assertThat(List.of(first.get(0), second.get(0))).containsExactlyInAnyOrder("replica 0", "replica 1");
+    }
+
+    @Test
+    // Writes go to the primary, where the students are, and the writer reads them back from there
+    public void testReadYourWrites() throws Exception {
+        assertThat(studentService.registerStudentToCourse("bolaji@gmail.com", 1)).isEqualTo(EnrollmentStatus.ADDED);
+        courseService.createCourse(new Course("Replication", "Leslie Lamport"));
+
+        assertThat(courseNames()).contains("Java", "Replication");
+        assertThat(studentService.getStudentCourses("bolaji@gmail.com")).extracting(Course::getName).containsExactly("Java");
+        // another caller, which did not write, still reads from a replica
+        assertThat(CompletableFuture.supplyAsync(ReplicaRoutingTest::courseNames).get()).doesNotContain("Replication");
+
+        Thread.sleep(WINDOW_MILLIS + 50);
+        assertThat(courseNames()).doesNotContain("Replication");
+    }
+
+    @Test
+    // Least-loaded selection skips the replica whose connections are in use
+    public void testLeastLoaded() {
+        List<SessionFactory> replicas = HibernateUtil.getReplicaRouter().getReplicas();
+        ReplicaRouter router = new ReplicaRouter(HibernateUtil.getSessionFactory(), replicas,
+                ReplicaRouter.selectionOf("least-loaded"), WINDOW_MILLIS);
+        try (Session busy = replicas.get(0).openSession()) {
+            busy.beginTransaction();
+            busy.createNativeQuery("SELECT 1").getSingleResult();
+            for (int i = 0; i < 4; i++) {
+                assertThat(router.forRead()).isSameAs(replicas.get(1));
+            }
+            busy.getTransaction().rollback();
+        }
+        assertThat(router.getReplicaReads()).isEqualTo(4);
+    }
+}
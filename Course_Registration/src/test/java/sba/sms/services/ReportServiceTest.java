@@ -0,0 +1,147 @@
+package sba.sms.services;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.CourseEnrollment;
+import sba.sms.models.InstructorLoad;
+import sba.sms.models.Student;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class ReportServiceTest {
+    static final int ROWS = Integer.getInteger("sms.test.exportRows", 200_000);
+    static final int COURSES = 1_000;
+    static final int COURSES_PER_STUDENT = 4;
+    static final ReportService reportService = new ReportService();
+    static Course quoted;
+
+    @BeforeAll
+    // The fixture plus ROWS enrollments generated in the database itself, so the test heap starts empty
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+        StudentService studentService = new StudentService();
+        quoted = new Course("Data, \"Big\" and Small", "Grace Hopper");
+        new CourseService().createCourse(quoted);
+        studentService.createStudent(new Student("quote@example.com", "o'neil, \"q\"", "password"));
+        studentService.registerStudentToCourse("quote@example.com", quoted.getId());
+        studentService.registerStudentToCourse("reema@gmail.com", quoted.getId());
+        studentService.registerStudentToCourse("reema@gmail.com", 1);
+
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO course (name, instructor, capacity, enrolled) " +
+                            "SELECT 'course ' || X, 'instructor ' || MOD(X, 40), " + Course.UNLIMITED_CAPACITY + ", 0 " +
+                            "FROM SYSTEM_RANGE(1, " + COURSES + ")")
+                    .executeUpdate();
+            session.createNativeQuery("INSERT INTO student (email, name, password) " +
+                            "SELECT 'student' || LPAD(X, 7, '0') || '@example.com', 'student ' || X, 'password' " +
+                            "FROM SYSTEM_RANGE(1, " + ROWS / COURSES_PER_STUDENT + ")")
+                    .executeUpdate();
+            session.createNativeQuery("INSERT INTO student_course (student_email, course_id) " +
+                            "SELECT 'student' || LPAD(S.X, 7, '0') || '@example.com', 10 + MOD(S.X * 7 + C.X, " + COURSES + ") " +
+                            "FROM SYSTEM_RANGE(1, " + ROWS / COURSES_PER_STUDENT + ") S, SYSTEM_RANGE(1, " + COURSES_PER_STUDENT + ") C")
+                    .executeUpdate();
+            session.createNativeQuery("UPDATE course c SET enrolled = " +
+                            "(SELECT COUNT(*) FROM student_course sc WHERE sc.course_id = c.id)")
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Test
+    // Every course is counted, empty ones included, and the counts agree with the seat counters
+    public void testEnrollmentPerCourse() {
+        List<CourseEnrollment> report = reportService.getEnrollmentPerCourse();
+        assertThat(report).hasSize(COURSES + 9).extracting(CourseEnrollment::getCourseId).isSorted();
+        assertThat(report.get(0)).isEqualTo(new CourseEnrollment(1, "Java", "Roger Boaitey", Course.UNLIMITED_CAPACITY, 1));
+        assertThat(report.get(1).getEnrolled()).isZero();
+        assertThat(report.get(8).getEnrolled()).isEqualTo(2);
+        assertThat(report.stream().mapToLong(CourseEnrollment::getEnrolled).sum()).isEqualTo(ROWS + 3);
+
+        Map<Integer, Integer> seats = new CourseService().getAllCourses().stream()
+                .collect(Collectors.toMap(Course::getId, Course::getEnrolled));
+        for (CourseEnrollment course : report) {
+            assertThat(course.getEnrolled()).as("course %d", course.getCourseId()).isEqualTo((long) seats.get(course.getCourseId()));
+        }
+    }
+
+    @Test
+    // Instructors are ordered by enrollments, distinct students are counted once per instructor
+    public void testInstructorLoads() {
+        List<InstructorLoad> report = reportService.getInstructorLoads();
+        // the 8 fixture instructors, Grace Hopper and 40 generated ones
+        assertThat(report).hasSize(49);
+        assertThat(report).extracting(InstructorLoad::getEnrollments).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+        assertThat(report.stream().mapToLong(InstructorLoad::getCourses).sum()).isEqualTo(COURSES + 9);
+        assertThat(report.stream().mapToLong(InstructorLoad::getEnrollments).sum()).isEqualTo(ROWS + 3);
+        assertThat(report).contains(new InstructorLoad("Grace Hopper", 1, 2, 2), new InstructorLoad("William Roales", 1, 0, 0));
+        // each of the 25 courses of an instructor has 200 students, and no student takes two of them
+        assertThat(report).filteredOn(load -> load.getInstructor().startsWith("instructor "))
+                .allSatisfy(load -> assertThat(load.getStudents()).isEqualTo(load.getEnrollments()));
+    }
+
+    @Test
+    // Values with separators or quotes are quoted, rows come in student and course order
+    public void testExportFormat() {
+        StringWriter out = new StringWriter();
+        assertThat(reportService.exportRoster(out)).isEqualTo(ROWS + 3);
+        List<String> lines = out.toString().lines().limit(5).collect(Collectors.toList());
+        assertThat(lines).containsExactly(
+                ReportService.ROSTER_HEADER,
+                "9,\"Data, \"\"Big\"\" and Small\",Grace Hopper,quote@example.com,\"o'neil, \"\"q\"\"\"",
+                "1,Java,Roger Boaitey,reema@gmail.com,reema brown",
+                "9,\"Data, \"\"Big\"\" and Small\",Grace Hopper,reema@gmail.com,reema brown",
+                "18,course 9,instructor 9,student0000001@example.com,student 1");
+    }
+
+    @Test
+    // Exported rows are not retained: the heap stays flat however many rows are written
+    public void testExportHasBoundedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long baseline = runtime.totalMemory() - runtime.freeMemory();
+        long[] peak = {0};
+        long[] lines = {0};
+        long written = reportService.exportRoster(new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) {
+                for (int i = offset; i < offset + length; i++) {
+                    if (chars[i] == '\n' && ++lines[0] % 50_000 == 0) {
+                        System.gc();
+                        peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory() - baseline);
+                    }
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        System.out.printf("exported %d enrollments, peak heap growth %.1f MB%n", written, peak[0] / 1e6);
+        assertThat(written).isEqualTo(ROWS + 3);
+        assertThat(lines[0]).isEqualTo(written + 1);
+        assertThat(peak[0]).isLessThan(32_000_000L);
+    }
+}
@@ -0,0 +1,177 @@
+package sba.sms.services;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.BoundedExecutor;
+import sba.sms.utils.EnrollmentIndex;
+import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.ShardSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class ShardedStudentServiceTest {
+    static final int STUDENTS = 600;
+    // the primary is shard 0, two more in-memory databases are shards 1 and 2
+    static final String SHARDS = "jdbc:h2:mem:smsshard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:smsshard2;DB_CLOSE_DELAY=-1";
+    static ShardSet shards;
+    static BoundedExecutor executor;
+    static ShardedStudentService studentService;
+    static ShardedCourseService courseService;
+
+    @BeforeAll
+    public static void seed() {
+        System.setProperty(HibernateUtil.SHARD_URLS_PROPERTY, SHARDS);
+        HibernateUtil.useProfile("h2");
+        shards = ShardSet.fromProfile();
+        executor = new BoundedExecutor(4);
+        studentService = new ShardedStudentService(shards, executor);
+        courseService = new ShardedCourseService(shards);
+        for (int c = 0; c < 4; c++) {
+            courseService.createCourse(new Course("course " + c, "instructor " + c));
+        }
+        for (int s = 0; s < STUDENTS; s++) {
+            studentService.createStudent(new Student(email(s), "student " + s, "password"));
+            studentService.registerStudentToCourse(email(s), s % 4 + 1);
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        executor.close();
+        HibernateUtil.shutdown();
+        System.clearProperty(HibernateUtil.SHARD_URLS_PROPERTY);
+    }
+
+    static String email(int s) {
+        return "shard" + s + "@example.com";
+    }
+
+    // the students stored on each shard, read past the sharded service
+    static List<List<String>> studentsPerShard() {
+        List<List<String>> perShard = new ArrayList<>();
+        for (SessionFactory shard : shards.getShards()) {
+            List<String> emails = new ArrayList<>();
+            new StudentService(shard).forEachStudent(student -> emails.add(student.getEmail()));
+            perShard.add(emails);
+        }
+        return perShard;
+    }
+
+    @Test
+    // An index loaded from every shard holds every seeded enrollment and follows new ones
+    public void testIndexAcrossShards() {
+        EnrollmentIndex index = EnrollmentIndex.load(shards.getShards());
+        for (int s = 0; s < STUDENTS; s++) {
+            assertThat(index.isEnrolled(email(s), s % 4 + 1)).isTrue();
+        }
+        IndexedStudentService indexed = new IndexedStudentService(studentService, index);
+        assertThat(indexed.registerStudentToCourse(email(1), 4)).isIn(EnrollmentStatus.ADDED, EnrollmentStatus.ALREADY_ENROLLED);
+        assertThat(index.isEnrolled(email(1), 4)).isTrue();
+    }
+
+    @Test
+    // Every student lives on the shard of their email only, the course catalog on every shard
+    public void testPlacement() {
+        List<List<String>> perShard = studentsPerShard();
+        assertThat(perShard.stream().mapToInt(List::size).sum()).isEqualTo(STUDENTS);
+        for (int shard = 0; shard < perShard.size(); shard++) {
+            assertThat(perShard.get(shard)).isNotEmpty();
+            for (String email : perShard.get(shard)) {
+                assertThat(shards.shardOf(email)).isEqualTo(shard);
+            }
+        }
+        for (SessionFactory shard : shards.getShards()) {
+            assertThat(new CourseService(shard).getAllCourses()).extracting(Course::getId)
+                    .containsAll(courseService.getAllCourses().stream().map(Course::getId).collect(Collectors.toList()));
+        }
+        assertThat(studentService.getStudentByEmail(email(7)).getCourses()).extracting(Course::getName).containsExactly("course 3");
+        assertThat(studentService.validateStudent(email(7), "password")).isTrue();
+    }
+
+    @Test
+    // The students of all shards are gathered in email order, in one list or page by page
+    public void testScatterGather() {
+        List<Student> all = studentService.getAllStudents();
+        assertThat(all).hasSize(STUDENTS).isSortedAccordingTo((a, b) -> a.getEmail().compareTo(b.getEmail()));
+
+        List<Student> paged = new ArrayList<>();
+        List<Student> page = studentService.getStudentsPage(null, 70);
+        while (!page.isEmpty()) {
+            paged.addAll(page);
+            page = studentService.getStudentsPage(page.get(page.size() - 1).getEmail(), 70);
+        }
+        assertThat(paged).extracting(Student::getEmail).containsExactlyElementsOf(
+                all.stream().map(Student::getEmail).collect(Collectors.toList()));
+        assertThat(studentService.forEachStudent(student -> { })).isEqualTo(STUDENTS);
+    }
+
+    @Test
+    // The catalog counts the seats of every shard, whichever shard the students live on
+    public void testCapacityAcrossShards() {
+        int seats = shards.getShards().size();
+        Course seminar = new Course("Distributed Systems", "Barbara Liskov", seats);
+        courseService.createCourse(seminar);
+        // one student of each shard, then one more
+        Map<Integer, String> byShard = new HashMap<>();
+        for (int s = 0; byShard.size() < shards.getShards().size(); s++) {
+            byShard.putIfAbsent(shards.shardOf(email(s)), email(s));
+        }
+        for (String email : byShard.values()) {
+            assertThat(studentService.registerStudentToCourse(email, seminar.getId())).isEqualTo(EnrollmentStatus.ADDED);
+        }
+        String late = email(STUDENTS - 1);
+        assertThat(studentService.registerStudentToCourse(late, seminar.getId())).isEqualTo(EnrollmentStatus.COURSE_FULL);
+        assertThat(studentService.registerStudentToCourse(byShard.get(1), seminar.getId())).isEqualTo(EnrollmentStatus.ALREADY_ENROLLED);
+        assertThat(studentService.registerStudentToCourse("nobody@example.com", seminar.getId())).isEqualTo(EnrollmentStatus.UNKNOWN_STUDENT);
+        assertThat(studentService.registerStudentToCourse(late, 999)).isEqualTo(EnrollmentStatus.UNKNOWN_COURSE);
+
+        assertThat(courseService.getCourseById(seminar.getId()).getEnrolled()).isEqualTo(seats);
+        assertThat(studentService.getStudentCourses(byShard.get(2))).extracting(Course::getName).contains("Distributed Systems");
+    }
+
+    @Test
+    // A new shard takes about a quarter of the students, with their courses, from the old shards only
+    public void testRebalanceOnAddedShard() {
+        Map<String, Integer> before = new HashMap<>();
+        Map<String, List<Integer>> coursesBefore = new HashMap<>();
+        for (int s = 0; s < STUDENTS; s++) {
+            before.put(email(s), shards.shardOf(email(s)));
+            coursesBefore.put(email(s), ids(studentService.getStudentCourses(email(s))));
+        }
+        long enrolled = courseService.getAllCourses().stream().mapToLong(Course::getEnrolled).sum();
+
+        long moved = shards.addShard(HibernateUtil.addShard("jdbc:h2:mem:smsshard3;DB_CLOSE_DELAY=-1"));
+
+        assertThat(moved).isBetween(STUDENTS / 4 - STUDENTS / 10L, STUDENTS / 4 + STUDENTS / 10L);
+        List<List<String>> perShard = studentsPerShard();
+        assertThat(perShard).hasSize(4);
+        assertThat(perShard.get(3)).hasSize((int) moved);
+        for (int s = 0; s < STUDENTS; s++) {
+            int shard = shards.shardOf(email(s));
+            assertThat(shard).isIn(before.get(email(s)), 3);
+            assertThat(perShard.get(shard)).contains(email(s));
+            assertThat(ids(studentService.getStudentCourses(email(s)))).isEqualTo(coursesBefore.get(email(s)));
+        }
+        assertThat(courseService.getAllCourses().stream().mapToLong(Course::getEnrolled).sum()).isEqualTo(enrolled);
+        assertThat(studentService.getAllStudents()).hasSize(STUDENTS);
+    }
+
+    static List<Integer> ids(List<Course> courses) {
+        List<Integer> ids = new ArrayList<>();
+        courses.forEach(course -> ids.add(course.getId()));
+        ids.sort(null);
+        return ids;
+    }
+}
@@ -0,0 +1,213 @@
+package sba.sms.services;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.dao.CourseI;
+import sba.sms.dao.ReportI;
+import sba.sms.dao.StatementBudget;
+import sba.sms.dao.StudentI;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
+import sba.sms.models.Student;
+import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
+import sba.sms.utils.ThreadStatistics;
+
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+/**
+ * Runs every StudentI, CourseI and ReportI method against a database where each student takes
+ * several courses and fails when a call runs more statements than the
+ * {@link StatementBudget} declared on the interface.
+ */
+class StatementBudgetTest {
+    static final int STUDENTS = 30;
+    static final int COURSES = 20;
+    static final int COURSES_PER_STUDENT = 8;
+    static final Set<Method> called = ConcurrentHashMap.newKeySet();
+    static final StudentI studentService = guarded(StudentI.class, new StudentService());
+    static final CourseI courseService = guarded(CourseI.class, new CourseService());
+    static final ReportI reportService = guarded(ReportI.class, new ReportService());
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+        StudentService seeder = new StudentService();
+        CourseService courses = new CourseService();
+        for (int i = courses.getAllCourses().size() + 1; i <= COURSES; i++) {
+            courses.createCourse(new Course("course " + i, "instructor " + i));
+        }
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (int i = 1; i <= STUDENTS; i++) {
+            seeder.createStudent(new Student("budget" + i + "@example.com", "budget " + i, "password"));
+            for (int c = 0; c < COURSES_PER_STUDENT; c++) {
+                enrollments.add(new Enrollment("budget" + i + "@example.com", (i + c) % COURSES + 1));
+            }
+        }
+        seeder.registerStudentsToCourses(enrollments);
+    }
+
+    @AfterAll
+    // Every method of the contract has a budget and was checked against it
+    public static void tearDown() {
+        try {
+            for (Class<?> api : List.of(StudentI.class, CourseI.class, ReportI.class)) {
+                for (Method method : api.getMethods()) {
+                    assertThat(method.getAnnotation(StatementBudget.class)).as("budget of %s", method).isNotNull();
+                    assertThat(called).as("calls checked against a budget").contains(method);
+                }
+            }
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    // Wraps a service so every call through 'api' is checked against the budget of its method
+    static <T> T guarded(Class<T> api, T target) {
+        return api.cast(Proxy.newProxyInstance(api.getClassLoader(), new Class<?>[]{api}, (proxy, method, args) -> {
+            StatementBudget budget = method.getAnnotation(StatementBudget.class);
+            assertThat(budget).as("budget of %s", method).isNotNull();
+            long chunks = chunks(budget, args);
+            long before = ThreadStatistics.current().getStatements();
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                // failed calls are held to the same budget
+                long statements = ThreadStatistics.current().getStatements() - before;
+                assertThat(statements).as("statements run by %s over %d chunk(s)", method.getName(), chunks)
+                        .isBetween(budget.min() * chunks, budget.max() * chunks);
+                called.add(method);
+            }
+        }));
+    }
+
+    // ceil(n / perItems) for the collection argument of a chunked budget, else 1
+    static long chunks(StatementBudget budget, Object[] args) {
+        if (budget.perItems() == 0) {
+            return 1;
+        }
+        for (Object arg : args) {
+            if (arg instanceof Collection) {
+                int size = ((Collection<?>) arg).size();
+                return Math.max(1, (size + budget.perItems() - 1) / budget.perItems());
+            }
+        }
+        throw new AssertionError("a budget per items needs a collection argument");
+    }
+
+    @Test
+    public void testStudentReads() {
+        assertThat(studentService.getAllStudents()).hasSizeGreaterThan(STUDENTS);
+        List<Student> page = studentService.getStudentsPage(null, 10);
+        assertThat(studentService.getStudentsPage(page.get(page.size() - 1).getEmail(), 10)).hasSize(10);
+        AtomicInteger streamed = new AtomicInteger();
+        studentService.forEachStudent(student -> streamed.incrementAndGet());
+        assertThat(streamed.get()).isGreaterThan(STUDENTS);
+
+        assertThat(studentService.getStudentByEmail("budget1@example.com").getCourses()).hasSize(COURSES_PER_STUDENT);
+        assertThatThrownBy(() -> studentService.getStudentByEmail("nobody@example.com")).isInstanceOf(RuntimeException.class);
+        assertThat(studentService.getStudentCourses("budget2@example.com")).hasSize(COURSES_PER_STUDENT);
+        assertThat(studentService.getStudentCourses("nobody@example.com")).isEmpty();
+    }
+
+    @Test
+    public void testLogins() {
+        assertThat(studentService.validateStudent("budget3@example.com", "password")).isTrue();
+        assertThat(studentService.validateStudent("budget3@example.com", "wrong")).isFalse();
+        assertThat(studentService.validateStudent("nobody@example.com", "password")).isFalse();
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO student (email, name, password) VALUES ('legacy@example.com', 'legacy', 'password')")
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+        // the legacy plaintext password is checked and rewritten as a hash
+        assertThat(studentService.validateStudent("legacy@example.com", "password")).isTrue();
+    }
+
+    @Test
+    public void testRegistrationOutcomes() {
+        Course small = new Course("budget seminar", "budget instructor", 1);
+        courseService.createCourse(small);
+        assertThat(studentService.registerStudentToCourse("budget4@example.com", small.getId())).isEqualTo(EnrollmentStatus.ADDED);
+        assertThat(studentService.registerStudentToCourse("budget4@example.com", small.getId())).isEqualTo(EnrollmentStatus.ALREADY_ENROLLED);
+        assertThat(studentService.registerStudentToCourse("budget5@example.com", small.getId())).isEqualTo(EnrollmentStatus.COURSE_FULL);
+        assertThat(studentService.registerStudentToCourse("nobody@example.com", small.getId())).isEqualTo(EnrollmentStatus.UNKNOWN_STUDENT);
+        assertThat(studentService.registerStudentToCourse("budget5@example.com", 999)).isEqualTo(EnrollmentStatus.UNKNOWN_COURSE);
+
+        studentService.createStudent(new Student("budget-new@example.com", "budget new", "password"));
+        List<Enrollment> chunk = new ArrayList<>();
+        for (int c = 1; c <= COURSES; c++) {
+            chunk.add(new Enrollment("budget-new@example.com", c));
+            chunk.add(new Enrollment("budget6@example.com", c));
+        }
+        assertThat(studentService.registerStudentsToCourses(chunk))
+                .hasSize(2 * COURSES)
+                .containsOnly(EnrollmentStatus.ADDED, EnrollmentStatus.ALREADY_ENROLLED);
+    }
+
+    @Test
+    // A call of several chunks is held to the per chunk budget times the number of chunks
+    public void testChunkedRegistration() throws NoSuchMethodException {
+        StatementBudget budget = StudentI.class.getMethod("registerStudentsToCourses", Collection.class)
+                .getAnnotation(StatementBudget.class);
+        assertThat(budget.perItems()).isEqualTo(StudentService.ENROLLMENT_CHUNK_SIZE);
+
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 1; i <= STUDENTS; i++) {
+                for (int c = 1; c <= COURSES; c++) {
+                    enrollments.add(new Enrollment("budget" + i + "@example.com", c));
+                }
+            }
+        }
+        assertThat(chunks(budget, new Object[]{enrollments})).isEqualTo(3);
+        long before = ThreadStatistics.current().getStatements();
+        assertThat(studentService.registerStudentsToCourses(enrollments))
+                .hasSize(enrollments.size())
+                .containsOnly(EnrollmentStatus.ADDED, EnrollmentStatus.ALREADY_ENROLLED);
+        // more than one chunk's worth, so the chunks were really counted separately
+        assertThat(ThreadStatistics.current().getStatements() - before).isGreaterThan(budget.max());
+        assertThat(studentService.registerStudentsToCourses(List.of())).isEmpty();
+    }
+
+    @Test
+    public void testCourses() {
+        courseService.createCourse(new Course("budget course", "budget instructor"));
+        assertThat(courseService.getAllCourses()).hasSizeGreaterThan(COURSES);
+        assertThat(courseService.getCourseById(1)).isNotNull();
+        assertThatThrownBy(() -> courseService.getCourseById(999)).isInstanceOf(RuntimeException.class);
+        List<Course> page = courseService.getCoursesPage(0, 5);
+        assertThat(courseService.getCoursesPage(page.get(page.size() - 1).getId(), 5)).hasSize(5);
+        AtomicInteger streamed = new AtomicInteger();
+        courseService.forEachCourse(course -> streamed.incrementAndGet());
+        assertThat(streamed.get()).isGreaterThan(COURSES);
+        assertThat(courseService.searchCourses("budget", 5)).isNotEmpty();
+        assertThat(courseService.searchCourses("bu in", 5)).isNotEmpty();
+    }
+
+    @Test
+    public void testReports() {
+        assertThat(reportService.getEnrollmentPerCourse()).hasSizeGreaterThanOrEqualTo(COURSES);
+        assertThat(reportService.getInstructorLoads()).isNotEmpty();
+        assertThat(reportService.exportRoster(new StringWriter())).isGreaterThanOrEqualTo(STUDENTS * COURSES_PER_STUDENT);
+    }
+}
@@ -0,0 +1,98 @@
+package sba.sms.services;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.Student;
+import sba.sms.utils.HibernateUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class StreamingTest {
+    static final int STUDENTS = Integer.getInteger("sms.test.streamRows", 100_000);
+    static final int COURSES = 1_000;
+    static final StudentService studentService = new StudentService();
+    static final CourseService courseService = new CourseService();
+
+    @BeforeAll
+    // Generates the rows in the database itself so the test heap starts empty
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO student (email, name, password) " +
+                            "SELECT 'student' || LPAD(X, 7, '0') || '@example.com', 'student ' || X, 'password' " +
+                            "FROM SYSTEM_RANGE(1, " + STUDENTS + ")")
+                    .executeUpdate();
+            session.createNativeQuery("INSERT INTO course (name, instructor, capacity, enrolled) " +
+                            "SELECT 'course ' || X, 'instructor ' || MOD(X, 40), 100, 0 FROM SYSTEM_RANGE(1, " + COURSES + ")")
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Test
+    // Walking every page visits each student once, in email order
+    public void testStudentPages() {
+        long seen = 0;
+        String after = null;
+        List<Student> page = studentService.getStudentsPage(after, 5_000);
+        while (!page.isEmpty()) {
+            if (after != null) {
+                assertThat(page.get(0).getEmail()).isGreaterThan(after);
+            }
+            seen += page.size();
+            after = page.get(page.size() - 1).getEmail();
+            page = studentService.getStudentsPage(after, 5_000);
+        }
+        assertThat(seen).isEqualTo(STUDENTS);
+    }
+
+    @Test
+    public void testCoursePages() {
+        List<Course> first = courseService.getCoursesPage(0, 300);
+        List<Course> last = courseService.getCoursesPage(900, 300);
+        assertThat(first).hasSize(300).extracting(Course::getId).isSorted();
+        assertThat(last).hasSize(100);
+        assertThat(courseService.getCoursesPage(1_000, 300)).isEmpty();
+    }
+
+    @Test
+    // Streamed students are not retained: the heap stays bounded and visited rows can be collected
+    public void testStreamingHasBoundedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long baseline = runtime.totalMemory() - runtime.freeMemory();
+        long[] peak = {0};
+        List<WeakReference<Student>> samples = new ArrayList<>();
+        long count = studentService.forEachStudent(student -> {
+            if (samples.size() * 10_000L < STUDENTS && student.getEmail().endsWith("0000@example.com")) {
+                samples.add(new WeakReference<>(student));
+            }
+            if (student.getEmail().endsWith("00000@example.com")) {
+                System.gc();
+                peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory() - baseline);
+            }
+        });
+        System.gc();
+        long collected = samples.stream().filter(ref -> ref.get() == null).count();
+        System.out.printf("streamed %d students, peak heap growth %.1f MB, %d/%d samples collected%n",
+                count, peak[0] / 1e6, collected, samples.size());
+        assertThat(count).isEqualTo(STUDENTS);
+        assertThat(collected).isEqualTo(samples.size());
+        assertThat(peak[0]).isLessThan(32_000_000L);
+        assertThat(courseService.forEachCourse(course -> { })).isEqualTo(COURSES);
+    }
+}
@@ -3,11 +3,16 @@ package sba.sms.services;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import org.junit.Before;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.models.Enrollment;
+import sba.sms.models.EnrollmentStatus;
 import sba.sms.models.Student;
 import sba.sms.utils.CommandLine;
+import sba.sms.utils.HibernateUtil;
 import jakarta.persistence.PersistenceException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -23,6 +28,19 @@ class StudentServiceTest {
     Student student3;
     StudentService sService;
 
+    @BeforeAll
+    // Seeds the dummy students and courses into a fresh in-memory database
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        CommandLine.addData();
+    }
+
+    @AfterAll
+    // Drops the in-memory database so other test classes start empty
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
     @BeforeEach
     // Sets up the students that will be tested
     public void setUp() throws Exception {
@@ -39,4 +57,53 @@ class StudentServiceTest {
         assertEquals(false, sService.validateStudent(student2.getEmail(), student2.getPassword()));
         assertEquals(true, sService.validateStudent(student3.getEmail(), student3.getPassword()));
     }
-}
\ No newline at end of file
+
+    @Test
+    // Test that a batch of enrollments reports a status per pair and writes the new rows
+    public void testRegisterStudentsToCourses() {
+        List<EnrollmentStatus> results = sService.registerStudentsToCourses(Arrays.asList(
+                new Enrollment(student1.getEmail(), 1),
+                new Enrollment(student1.getEmail(), 2),
+                new Enrollment(student1.getEmail(), 1),
+                new Enrollment(student2.getEmail(), 1),
+                new Enrollment(student3.getEmail(), 999)));
+        assertThat(results).containsExactly(
+                EnrollmentStatus.ADDED,
+                EnrollmentStatus.ADDED,
+                EnrollmentStatus.ALREADY_ENROLLED,
+                EnrollmentStatus.UNKNOWN_STUDENT,
+                EnrollmentStatus.UNKNOWN_COURSE);
+        assertThat(sService.getStudentCourses(student1.getEmail()))
+                .extracting("id").containsExactlyInAnyOrder(1, 2);
+        assertThat(sService.registerStudentsToCourses(List.of(new Enrollment(student1.getEmail(), 2))))
+                .containsExactly(EnrollmentStatus.ALREADY_ENROLLED);
+    }
+
+    @Test
+    // Test that two sections sharing a name and instructor are distinct courses to register for
+    public void testSectionsWithSameNameAreDistinct() {
+        CourseService cService = new CourseService();
+        Course first = new Course("Section Test", "Same Instructor");
+        Course second = new Course("Section Test", "Same Instructor");
+        cService.createCourse(first);
+        cService.createCourse(second);
+        assertThat(sService.registerStudentsToCourses(List.of(new Enrollment(student3.getEmail(), first.getId()))))
+                .containsExactly(EnrollmentStatus.ADDED);
+        assertThat(sService.registerStudentsToCourses(List.of(
+                new Enrollment(student3.getEmail(), second.getId()),
+                new Enrollment(student3.getEmail(), first.getId()))))
+                .containsExactly(EnrollmentStatus.ADDED, EnrollmentStatus.ALREADY_ENROLLED);
+        assertThat(sService.getStudentCourses(student3.getEmail()))
+                .extracting("id").contains(first.getId(), second.getId());
+    }
+
+    @Test
+    // Test that passwords are stored hashed and only the right password validates
+    public void testPasswordsAreHashed() {
+        Student stored = sService.getStudentByEmail(student1.getEmail());
+        assertThat(stored.getPassword()).isNotEqualTo("password").startsWith("pbkdf2$");
+        assertEquals(false, sService.validateStudent(student1.getEmail(), "wrong"));
+        assertEquals(true, sService.validateStudent(student1.getEmail(), "password"));
+        assertEquals(false, sService.validateStudent(student1.getEmail(), "wrong"));
+    }
+}
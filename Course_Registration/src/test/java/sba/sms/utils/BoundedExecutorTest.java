@@ -0,0 +1,58 @@
+package sba.sms.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class BoundedExecutorTest {
+
+    @Test
+    // On the unbounded (virtual thread) path a submitter waits for a free slot instead of queueing
+    public void testSubmitWaitsForSlotOnUnboundedExecutor() throws Exception {
+        try (BoundedExecutor executor = new BoundedExecutor(1, Executors.newCachedThreadPool())) {
+            assertSubmitterWaits(executor);
+        }
+    }
+
+    @Test
+    // On the platform thread path a submitter waits for a free slot as well
+    public void testSubmitWaitsForSlotOnPlatformPool() throws Exception {
+        try (BoundedExecutor executor = new BoundedExecutor(1, null)) {
+            assertSubmitterWaits(executor);
+        }
+    }
+
+    private static void assertSubmitterWaits(BoundedExecutor executor) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = executor.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "first";
+        });
+        AtomicReference<CompletableFuture<String>> second = new AtomicReference<>();
+        Thread submitter = new Thread(() -> second.set(executor.submit(() -> "second")));
+        submitter.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (submitter.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(submitter.getState()).isEqualTo(Thread.State.WAITING);
+        assertThat(second.get()).isNull();
+        assertThat(executor.getInFlight()).isEqualTo(1);
+
+        release.countDown();
+        submitter.join(5000);
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(second.get().get(5, TimeUnit.SECONDS)).isEqualTo("second");
+    }
+}
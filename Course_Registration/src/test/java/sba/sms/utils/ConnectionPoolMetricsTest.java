@@ -0,0 +1,89 @@
+package sba.sms.utils;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.services.CourseService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class ConnectionPoolMetricsTest {
+
+    @BeforeAll
+    public static void setUp() {
+        HibernateUtil.useProfile("h2");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Test
+    // Every service call acquires a pooled connection and lands in the histogram
+    public void testAcquiresAreRecorded() {
+        long before = HibernateUtil.getPoolMetrics().getAcquireCount();
+        CourseService courseService = new CourseService();
+        for (int i = 0; i < 20; i++) {
+            courseService.getAllCourses();
+        }
+        ConnectionPoolMetrics.Snapshot metrics = HibernateUtil.getPoolMetrics();
+        assertThat(metrics.getAcquireCount() - before).isGreaterThanOrEqualTo(20);
+        assertThat(metrics.getActive()).isZero();
+        assertThat(metrics.getIdle()).isPositive();
+        assertThat(metrics.getAcquireBuckets()).hasSize(ConnectionPoolMetrics.BUCKETS);
+        assertThat(metrics.getAcquirePercentileMicros(99)).isPositive();
+    }
+
+    @Test
+    // Holding every connection makes the next caller show up as a waiting thread
+    public void testActiveAndWaitingGauges() throws Exception {
+        SessionFactory factory = HibernateUtil.getSessionFactory();
+        int max = HibernateUtil.getPoolMetrics().getMaxPoolSize();
+        List<Session> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < max; i++) {
+                Session session = factory.openSession();
+                session.beginTransaction();
+                held.add(session);
+            }
+            assertThat(HibernateUtil.getPoolMetrics().getActive()).isEqualTo(max);
+
+            CompletableFuture<Integer> waiter = CompletableFuture.supplyAsync(
+                    () -> new CourseService().getAllCourses().size());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (HibernateUtil.getPoolMetrics().getWaiting() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(HibernateUtil.getPoolMetrics().getWaiting()).isEqualTo(1);
+
+            Session released = held.remove(0);
+            released.getTransaction().rollback();
+            released.close();
+            assertThat(waiter.get(2, TimeUnit.SECONDS)).isNotNegative();
+        } finally {
+            for (Session session : held) {
+                session.getTransaction().rollback();
+                session.close();
+            }
+        }
+        assertThat(HibernateUtil.getPoolMetrics().getActive()).isZero();
+    }
+
+    @Test
+    // Acquire times fall into power-of-two microsecond buckets
+    public void testBucketOf() {
+        assertThat(ConnectionPoolMetrics.bucketOf(500)).isZero();
+        assertThat(ConnectionPoolMetrics.bucketOf(1_000)).isEqualTo(1);
+        assertThat(ConnectionPoolMetrics.bucketOf(3_000)).isEqualTo(2);
+        assertThat(ConnectionPoolMetrics.bucketOf(Long.MAX_VALUE)).isEqualTo(ConnectionPoolMetrics.BUCKETS - 1);
+    }
+}
@@ -0,0 +1,108 @@
+package sba.sms.utils;
+
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class CourseSearchIndexTest {
+
+    static Course course(int id, String name, String instructor) {
+        Course course = new Course(name, instructor);
+        course.setId(id);
+        return course;
+    }
+
+    static CourseSearchIndex catalog() {
+        CourseSearchIndex index = new CourseSearchIndex();
+        index.add(course(1, "Java", "Phillip Witkin"));
+        index.add(course(2, "Frontend", "Kasper Kain"));
+        index.add(course(3, "JPA", "Jafer Alhaboubi"));
+        index.add(course(4, "Spring Framework", "Phillip Witkin"));
+        index.add(course(5, "SQL", "Phillip Witkin"));
+        index.add(course(6, "Advanced Java-Script", "Kasper Kain"));
+        index.add(course(7, "Java Concurrency", "Brian Goetz"));
+        return index;
+    }
+
+    @Test
+    // Case and punctuation are ignored in the courses and the query
+    public void testNormalize() {
+        assertThat(CourseSearchIndex.normalize("  Advanced Java-Script!! ")).isEqualTo("advanced java script");
+        assertThat(CourseSearchIndex.normalize("--")).isEmpty();
+        assertThat(CourseSearchIndex.normalize(null)).isEmpty();
+        assertThat(catalog().search("JAVA-script", 10)).extracting(Course::getId).containsExactly(6);
+        assertThat(catalog().search("  ", 10)).isEmpty();
+    }
+
+    @Test
+    // Names starting with the query come first, then whole words, then the shorter name
+    public void testRanking() {
+        assertThat(catalog().search("java", 10)).extracting(Course::getId).containsExactly(1, 7, 6);
+        // a name match outranks an instructor match
+        CourseSearchIndex index = catalog();
+        index.add(course(8, "Kernel Hacking", "Linus Java"));
+        assertThat(index.search("java", 10)).extracting(Course::getId).containsExactly(1, 7, 6, 8);
+        // a word inside another word ranks last
+        assertThat(catalog().search("work", 10)).extracting(Course::getId).containsExactly(4);
+        assertThat(catalog().search("ava", 10)).extracting(Course::getId).containsExactly(1, 7, 6);
+    }
+
+    @Test
+    // Words shorter than a gram only match at the start of a word
+    public void testShortWordsMatchWordStarts() {
+        assertThat(catalog().search("j", 10)).extracting(Course::getId).containsExactly(3, 1, 7, 6);
+        assertThat(catalog().search("ph", 10)).extracting(Course::getId).containsExactlyInAnyOrder(1, 4, 5);
+        assertThat(catalog().search("ad", 10)).extracting(Course::getId).containsExactly(6);
+        assertThat(catalog().search("av", 10)).isEmpty();
+        assertThat(catalog().search("q", 10)).isEmpty();
+    }
+
+    @Test
+    // Every word of the query has to match, in the name or the instructor
+    public void testAllWordsMatch() {
+        assertThat(catalog().search("java witkin", 10)).extracting(Course::getId).containsExactly(1);
+        assertThat(catalog().search("witkin java", 10)).extracting(Course::getId).containsExactly(1);
+        assertThat(catalog().search("phil sp", 10)).extracting(Course::getId).containsExactly(4);
+        assertThat(catalog().search("java cobol", 10)).isEmpty();
+        // grams of a word have to be adjacent in the text
+        assertThat(catalog().search("javaspring", 10)).isEmpty();
+    }
+
+    @Test
+    // The limit keeps the best ranked courses, a course id is only added once
+    public void testLimitAndDuplicates() {
+        CourseSearchIndex index = catalog();
+        assertThat(index.search("java", 2)).extracting(Course::getId).containsExactly(1, 7);
+        assertThat(index.search("java", 0)).isEmpty();
+        assertThat(index.add(course(1, "Java", "Phillip Witkin"))).isFalse();
+        assertThat(index.size()).isEqualTo(7);
+        assertThat(index.search("witkin", 10)).hasSize(3);
+        for (int id = 100; id < 1_100; id++) {
+            index.add(course(id, "Testing " + id, "Kent Beck"));
+        }
+        List<Course> found = index.search("testing", 5);
+        assertThat(found).extracting(Course::getId).containsExactly(100, 101, 102, 103, 104);
+        assertThat(index.search("beck 1099", 5)).extracting(Course::getId).containsExactly(1099);
+    }
+
+    @Test
+    // Skipping the courses that cannot make the limit keeps the ranking of a full search
+    public void testLimitKeepsRanking() {
+        String[] words = {"java", "javascript", "data", "database", "ma", "math", "machine", "learning", "network", "a"};
+        Random random = new Random(11);
+        CourseSearchIndex index = new CourseSearchIndex();
+        for (int id = 1; id <= 3_000; id++) {
+            index.add(course(id, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                    words[random.nextInt(words.length)] + "-" + id % 97));
+        }
+        for (String query : List.of("java", "jav", "ma", "a", "m", "data ma", "learning java", "ach", "net 4", "9")) {
+            List<Course> all = index.search(query, Integer.MAX_VALUE);
+            assertThat(index.search(query, 7)).as(query).isEqualTo(all.subList(0, Math.min(7, all.size())));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package sba.sms.utils;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.services.StudentService;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class DataGeneratorTest {
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    // seats of each course in id order, plus checksums of the join rows and students
+    static List<Object> load(DataGenerator generator) {
+        HibernateUtil.useProfile("h2");
+        DataGenerator.Report report = generator.generate();
+        assertThat(report.getRowsPerSecond()).isPositive();
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            return Arrays.asList((Object[]) session.createNativeQuery("SELECT " +
+                    "(SELECT LISTAGG(enrolled || '/' || capacity || ' ' || name, ',') WITHIN GROUP (ORDER BY id) FROM course), " +
+                    "(SELECT BIT_XOR_AGG(ORA_HASH(student_email || '/' || course_id)) FROM student_course), " +
+                    "(SELECT BIT_XOR_AGG(ORA_HASH(email || name)) FROM student)").getSingleResult());
+        }
+    }
+
+    @Test
+    // The same seed gives the same rows, another seed does not
+    public void testReproducible() {
+        List<Object> first = load(new DataGenerator(7, 2_000, 50, 4, 1.0));
+        List<Object> second = load(new DataGenerator(7, 2_000, 50, 4, 1.0));
+        List<Object> other = load(new DataGenerator(8, 2_000, 50, 4, 1.0));
+        assertThat(first).isEqualTo(second);
+        assertThat(other).isNotEqualTo(first);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    // Row counts match the report, seat counters match the join rows, popular courses dominate
+    public void testDataset() {
+        HibernateUtil.useProfile("h2");
+        DataGenerator generator = new DataGenerator(42, 5_000, 100, 5, 1.0, 500, null);
+        DataGenerator.Report report = generator.generate();
+        assertThat(report.getStudents()).isEqualTo(5_000);
+        assertThat(report.getCourses()).isEqualTo(100);
+        // between 1 and 9 courses each, 5 on average
+        assertThat(report.getEnrollments()).isBetween(23_000L, 27_000L);
+
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Number joinRows = (Number) session.createNativeQuery("SELECT COUNT(*) FROM student_course").getSingleResult();
+            assertThat(joinRows.longValue()).isEqualTo(report.getEnrollments());
+            Number mismatched = (Number) session.createNativeQuery("SELECT COUNT(*) FROM course c WHERE c.enrolled <> " +
+                    "(SELECT COUNT(*) FROM student_course sc WHERE sc.course_id = c.id) OR c.enrolled > c.capacity")
+                    .getSingleResult();
+            assertThat(mismatched.longValue()).isZero();
+            List<Number> counts = session.createNativeQuery("SELECT enrolled FROM course ORDER BY enrolled DESC").getResultList();
+            // with s = 1 the most popular course draws about a fifth of the enrollments
+            assertThat(counts.get(0).intValue()).isGreaterThan(10 * counts.get(counts.size() / 2).intValue());
+        }
+
+        // generated students can log in with the default password
+        assertThat(new StudentService().validateStudent(generator.emailOf(17), DataGenerator.DEFAULT_PASSWORD)).isTrue();
+    }
+}
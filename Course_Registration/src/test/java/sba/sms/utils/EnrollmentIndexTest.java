@@ -0,0 +1,143 @@
+package sba.sms.utils;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Student;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class EnrollmentIndexTest {
+    static DataGenerator generator;
+
+    @BeforeAll
+    public static void seed() {
+        HibernateUtil.useProfile("h2");
+        generator = new DataGenerator(17, 20_000, 200, 5, 1.0);
+        generator.generate();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Test
+    // Membership, rosters and counts follow the added enrollments, duplicates are ignored
+    public void testQueries() {
+        EnrollmentIndex index = new EnrollmentIndex();
+        assertThat(index.add("a@example.com", 1)).isTrue();
+        assertThat(index.add("b@example.com", 1)).isTrue();
+        assertThat(index.add("a@example.com", 2)).isTrue();
+        assertThat(index.add("a@example.com", 1)).isFalse();
+
+        assertThat(index.isEnrolled("a@example.com", 1)).isTrue();
+        assertThat(index.isEnrolled("b@example.com", 2)).isFalse();
+        assertThat(index.isEnrolled("c@example.com", 1)).isFalse();
+        assertThat(index.isEnrolled("a@example.com", 3)).isFalse();
+        assertThat(index.getRoster(1)).containsExactly("a@example.com", "b@example.com");
+        assertThat(index.getRoster(3)).isEmpty();
+        assertThat(index.getEnrolledCount(1)).isEqualTo(2);
+        assertThat(index.getEnrolledCount(3)).isZero();
+        assertThat(index.getCourseIds("a@example.com")).containsExactly(1, 2);
+        assertThat(index.getCourseIds("c@example.com")).isEmpty();
+        assertThat(index.getStudentCount()).isEqualTo(2);
+        assertThat(index.getCourseCount()).isEqualTo(2);
+        assertThat(index.getEnrollmentCount()).isEqualTo(3);
+    }
+
+    @Test
+    // The loaded index holds exactly the join rows of the database
+    public void testLoadMatchesDatabase() {
+        EnrollmentIndex index = EnrollmentIndex.load();
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Number rows = (Number) session.createNativeQuery("SELECT COUNT(*) FROM student_course").getSingleResult();
+            assertThat(index.getEnrollmentCount()).isEqualTo(rows.longValue());
+            assertThat(index.getCourseCount()).isEqualTo(200);
+            List<Object[]> counts = session.createNativeQuery("SELECT id, enrolled FROM course").getResultList();
+            for (Object[] count : counts) {
+                assertThat(index.getEnrolledCount(((Number) count[0]).intValue())).isEqualTo(((Number) count[1]).intValue());
+            }
+            String email = generator.emailOf(123);
+            List<Number> courses = session.createNativeQuery("SELECT course_id FROM student_course WHERE student_email = :email")
+                    .setParameter("email", email).getResultList();
+            assertThat(index.getCourseIds(email)).containsExactlyInAnyOrder(courses.stream().mapToInt(Number::intValue).toArray());
+            for (Number course : courses) {
+                assertThat(index.isEnrolled(email, course.intValue())).isTrue();
+                assertThat(index.getRoster(course.intValue())).contains(email);
+            }
+        }
+    }
+
+    @Test
+    // Readers never see a wrong answer while another thread keeps adding students and courses
+    public void testConcurrentReads() throws Exception {
+        EnrollmentIndex index = new EnrollmentIndex();
+        index.add("first@example.com", 1);
+        ExecutorService readers = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Long>> reads = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                reads.add(readers.submit(() -> {
+                    long checks = 0;
+                    while (index.getEnrolledCount(1) < 20_001) {
+                        assertThat(index.isEnrolled("first@example.com", 1)).isTrue();
+                        assertThat(index.isEnrolled("first@example.com", 2)).isFalse();
+                        checks++;
+                    }
+                    return checks;
+                }));
+            }
+            for (int i = 0; i < 20_000; i++) {
+                index.add("student" + i + "@example.com", 1);
+                index.add("student" + i + "@example.com", 3 + i % 500);
+            }
+            for (Future<Long> read : reads) {
+                assertThat(read.get()).isPositive();
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+        assertThat(index.getEnrollmentCount()).isEqualTo(40_001);
+    }
+
+    static long usedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    @Test
+    // The index takes a small fraction of the heap the entity graph of the same enrollments takes
+    public void testHeapFootprint() {
+        // the first load also fills the page cache of the database
+        EnrollmentIndex.load();
+        long before = usedHeap();
+        EnrollmentIndex index = EnrollmentIndex.load();
+        long indexBytes = usedHeap() - before;
+
+        long graphBytes;
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            before = usedHeap();
+            List<Student> students = session.createQuery("SELECT DISTINCT s FROM Student s LEFT JOIN FETCH s.courses", Student.class)
+                    .getResultList();
+            graphBytes = usedHeap() - before;
+            assertThat(students).hasSize(index.getStudentCount());
+        }
+
+        assertThat(index.estimateBytes()).isLessThan(graphBytes / 4);
+        assertThat(indexBytes).isLessThan(graphBytes / 4);
+    }
+}
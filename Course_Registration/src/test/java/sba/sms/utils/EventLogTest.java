@@ -0,0 +1,119 @@
+package sba.sms.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sba.sms.models.EnrollmentEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class EventLogTest {
+    static final int EVENTS = 1_000;
+
+    @TempDir
+    Path directory;
+
+    static EnrollmentEvent event(long sequence) {
+        return sequence % 3 == 0
+                ? new EnrollmentEvent(sequence, EnrollmentEvent.Type.COURSE_CREATED, null, (int) sequence, 1_000 + sequence)
+                : new EnrollmentEvent(sequence, EnrollmentEvent.Type.ENROLLMENT_ADDED, "student" + sequence + "@example.com",
+                                      (int) (sequence % 7) + 1, 1_000 + sequence);
+    }
+
+    static List<EnrollmentEvent> drain(EventLog.Tailer tailer) {
+        List<EnrollmentEvent> events = new ArrayList<>();
+        EnrollmentEvent event;
+        while ((event = tailer.poll()) != null) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    @Test
+    // The events come back in order across segment rollovers, from the start or from a saved offset
+    public void testAppendAndTailAcrossSegments() {
+        List<EnrollmentEvent> appended = new ArrayList<>();
+        long middle = 0;
+        try (EventLog log = EventLog.open(directory, EventLog.MIN_SEGMENT_BYTES)) {
+            for (int i = 1; i <= EVENTS; i++) {
+                appended.add(event(i));
+                long offset = log.append(event(i));
+                if (i == EVENTS / 2 + 1) {
+                    middle = offset;
+                }
+            }
+        }
+        assertThat(EventLog.segments(directory)).hasSizeGreaterThan(10);
+
+        EventLog.Tailer tailer = EventLog.tail(directory, 0);
+        assertThat(drain(tailer)).containsExactlyElementsOf(appended);
+        assertThat(EventLog.tail(directory, middle).poll()).isEqualTo(event(EVENTS / 2 + 1));
+        assertThat(drain(EventLog.tail(directory, middle))).hasSize(EVENTS / 2);
+
+        // a reopened log appends after the last event and the tailer picks it up where it stopped
+        try (EventLog log = EventLog.open(directory, EventLog.MIN_SEGMENT_BYTES)) {
+            assertThat(log.append(event(EVENTS + 1))).isEqualTo(tailer.getOffset());
+        }
+        assertThat(tailer.poll()).isEqualTo(event(EVENTS + 1));
+        assertThat(tailer.poll()).isNull();
+    }
+
+    @Test
+    // A tailer on another thread sees every event while they are appended
+    public void testTailWhileAppending() {
+        try (EventLog log = EventLog.open(directory, EventLog.MIN_SEGMENT_BYTES)) {
+            CompletableFuture<List<EnrollmentEvent>> tailed = CompletableFuture.supplyAsync(() -> {
+                List<EnrollmentEvent> events = new ArrayList<>();
+                EventLog.Tailer tailer = log.tail(0);
+                while (events.size() < EVENTS) {
+                    EnrollmentEvent event = tailer.poll(5, TimeUnit.SECONDS);
+                    if (event == null) {
+                        break;
+                    }
+                    events.add(event);
+                }
+                return events;
+            });
+            for (int i = 1; i <= EVENTS; i++) {
+                log.append(event(i));
+            }
+            List<EnrollmentEvent> events = tailed.join();
+            assertThat(events).hasSize(EVENTS);
+            for (int i = 0; i < EVENTS; i++) {
+                assertThat(events.get(i).getSequence()).isEqualTo(i + 1);
+            }
+        }
+    }
+
+    @Test
+    // A torn record at the end of the log is cut off when it is opened again
+    public void testRecoveryCutsTornRecord() throws IOException {
+        long end;
+        try (EventLog log = EventLog.open(directory, EventLog.MIN_SEGMENT_BYTES)) {
+            log.append(event(1));
+            log.append(event(2));
+            end = log.getEndOffset();
+        }
+        // a record whose length made it to the disk but not its body
+        try (FileChannel file = FileChannel.open(EventLog.segmentPath(directory, 0), StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.allocate(8).putInt(0, 64).putInt(4, 12345), end);
+        }
+        assertThatThrownBy(() -> drain(EventLog.tail(directory, 0))).isInstanceOf(IllegalStateException.class);
+
+        try (EventLog log = EventLog.open(directory, EventLog.MIN_SEGMENT_BYTES)) {
+            assertThat(log.getEndOffset()).isEqualTo(end);
+            log.append(event(3));
+        }
+        assertThat(drain(EventLog.tail(directory, 0))).containsExactly(event(1), event(2), event(3));
+    }
+}
@@ -0,0 +1,69 @@
+package sba.sms.utils;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.services.CourseService;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class HibernateUtilTest {
+    static final int REQUESTS = 50;
+
+    @BeforeAll
+    public static void setUp() {
+        HibernateUtil.useProfile("h2");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Test
+    // The factory is built once and handed to every caller
+    public void testSessionFactoryIsShared() {
+        SessionFactory first = HibernateUtil.getSessionFactory();
+        assertThat(HibernateUtil.getSessionFactory()).isSameAs(first);
+        HibernateUtil.shutdown();
+        assertThat(first.isClosed()).isTrue();
+        assertThat(HibernateUtil.getSessionFactory()).isNotSameAs(first).matches(f -> !f.isClosed());
+    }
+
+    @Test
+    // Compares a factory per request (the old service code) to the shared factory
+    public void testFirstRequestTiming() {
+        HibernateUtil.shutdown();
+        int perCallRuns = 3;
+        long start = System.nanoTime();
+        for (int i = 0; i < perCallRuns; i++) {
+            SessionFactory factory = HibernateUtil.buildSessionFactory("h2");
+            try (Session session = factory.openSession()) {
+                session.createQuery("FROM Course", Course.class).getResultList();
+            } finally {
+                factory.close();
+            }
+        }
+        long perCallNanos = (System.nanoTime() - start) / perCallRuns;
+
+        CourseService courseService = new CourseService();
+        start = System.nanoTime();
+        courseService.getAllCourses();
+        long firstRequestNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            courseService.getAllCourses();
+        }
+        long sharedNanos = (System.nanoTime() - start) / REQUESTS;
+
+        System.out.printf("factory per request: %.3f ms, first request: %.3f ms, shared factory: %.3f ms%n",
+                perCallNanos / 1e6, firstRequestNanos / 1e6, sharedNanos / 1e6);
+        assertThat(sharedNanos).isLessThan(perCallNanos);
+        assertThat(sharedNanos).isLessThan(firstRequestNanos);
+    }
+}
@@ -0,0 +1,106 @@
+package sba.sms.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class LruCacheTest {
+    final AtomicLong now = new AtomicLong();
+
+    @Test
+    // Entries expire once the ttl has passed since they were stored
+    public void testTtl() {
+        LruCache<String, String> cache = new LruCache<>(10, 100, now::get);
+        cache.put("a", "1");
+        now.addAndGet(99_000_000);
+        assertThat(cache.get("a")).isEqualTo("1");
+        now.addAndGet(1_000_000);
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.stats().getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    // The least recently used entry goes first
+    public void testLruEviction() {
+        LruCache<String, String> cache = new LruCache<>(2, 1000, now::get);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+        assertThat(cache.get("a")).isEqualTo("1");
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.stats().getSize()).isEqualTo(2);
+    }
+
+    @Test
+    // With a weigher the bound is the total weight, and a value heavier than the bound is not stored
+    public void testWeightBound() {
+        LruCache<String, String> cache = new LruCache<>(5, 1000, String::length, now::get);
+        cache.put("a", "12");
+        cache.put("b", "123");
+        assertThat(cache.stats().getSize()).isEqualTo(2);
+        cache.put("c", "1");
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("b")).isEqualTo("123");
+        assertThat(cache.get("big", key -> "123456")).isEqualTo("123456");
+        assertThat(cache.get("big")).isNull();
+        assertThat(cache.get("b")).isEqualTo("123");
+        cache.put("b", "1234");
+        assertThat(cache.get("c")).isEqualTo("1");
+        assertThat(cache.stats().getSize()).isEqualTo(2);
+    }
+
+    @Test
+    // A load that overlaps an invalidation is not stored
+    public void testInvalidationDuringLoad() {
+        LruCache<String, String> cache = new LruCache<>(10, 1000, now::get);
+        String loaded = cache.get("a", key -> {
+            cache.invalidate(key);
+            return "stale";
+        });
+        assertThat(loaded).isEqualTo("stale");
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("a", key -> "fresh")).isEqualTo("fresh");
+        assertThat(cache.get("a")).isEqualTo("fresh");
+    }
+
+    @Test
+    // Invalidating one key or the whole cache only discards the loads it overlaps, not loads of other keys
+    public void testInvalidationIsPerKey() {
+        LruCache<String, String> cache = new LruCache<>(10, 1000, now::get);
+        cache.put("a", "1");
+        assertThat(cache.get("b", key -> {
+            cache.invalidate("a");
+            return "2";
+        })).isEqualTo("2");
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("b")).isEqualTo("2");
+
+        assertThat(cache.get("c", key -> {
+            cache.invalidateAll();
+            return "3";
+        })).isEqualTo("3");
+        assertThat(cache.get("c")).isNull();
+        assertThat(cache.get("c", key -> "3")).isEqualTo("3");
+        assertThat(cache.get("c")).isEqualTo("3");
+    }
+
+    @Test
+    // One eviction pass drops the least recently used entries down to a sixteenth below the bound
+    public void testEvictionPass() {
+        LruCache<Integer, String> cache = new LruCache<>(32, 1000, now::get);
+        for (int i = 0; i < 32; i++) {
+            cache.put(i, "v" + i);
+        }
+        cache.get(0);
+        cache.put(32, "v32");
+        assertThat(cache.stats().getSize()).isEqualTo(30);
+        assertThat(cache.stats().getEvictions()).isEqualTo(3);
+        assertThat(cache.get(0)).isEqualTo("v0");
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(4)).isEqualTo("v4");
+    }
+}
@@ -0,0 +1,56 @@
+package sba.sms.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class PasswordHasherTest {
+
+    @Test
+    // Two hashes of the same password differ by salt and both verify
+    public void testHashAndVerify() {
+        String first = PasswordHasher.hash("password");
+        String second = PasswordHasher.hash("password");
+        assertThat(first).isNotEqualTo(second);
+        assertThat(PasswordHasher.isHashed(first)).isTrue();
+        assertThat(PasswordHasher.verify("password", first)).isTrue();
+        assertThat(PasswordHasher.verify("password", second)).isTrue();
+        assertThat(PasswordHasher.verify("Password", first)).isFalse();
+    }
+
+    @Test
+    // The work factor travels with the hash
+    public void testIterationsAreEncoded() {
+        String hash = PasswordHasher.hash("password");
+        assertThat(hash).startsWith("pbkdf2$" + PasswordHasher.iterations() + "$");
+    }
+
+    @Test
+    // Legacy plaintext values are still accepted
+    public void testLegacyPlaintext() {
+        assertThat(PasswordHasher.isHashed("password")).isFalse();
+        assertThat(PasswordHasher.verify("password", "password")).isTrue();
+        assertThat(PasswordHasher.verify("other", "password")).isFalse();
+        assertThat(PasswordHasher.verify("password", null)).isFalse();
+    }
+
+    @Test
+    // A malformed hash matches nothing instead of throwing
+    public void testMalformedHash() {
+        String salt = "c2FsdHNhbHRzYWx0c2FsdA==";
+        assertThat(PasswordHasher.verify("password", "pbkdf2$many$" + salt + "$" + salt)).isFalse();
+        assertThat(PasswordHasher.verify("password", "pbkdf2$1000$not base64!$" + salt)).isFalse();
+        assertThat(PasswordHasher.verify("password", "pbkdf2$1000$" + salt + "$%%")).isFalse();
+        assertThat(PasswordHasher.verify("password", "pbkdf2$-1$" + salt + "$" + salt)).isFalse();
+        assertThat(PasswordHasher.verify("password", "pbkdf2$1000$$" + salt)).isFalse();
+        assertThat(PasswordHasher.verify("password", "pbkdf2$1000")).isFalse();
+    }
+
+    @Test
+    // Without a stored value the check still runs a full hash and fails
+    public void testVerifyMissing() {
+        assertThat(PasswordHasher.verifyMissing("password")).isFalse();
+        assertThat(PasswordHasher.verifyMissing(null)).isFalse();
+    }
+}
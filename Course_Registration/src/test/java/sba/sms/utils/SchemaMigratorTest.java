@@ -0,0 +1,167 @@
+package sba.sms.utils;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sba.sms.models.Course;
+import sba.sms.services.CourseService;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class SchemaMigratorTest {
+
+    @BeforeAll
+    public static void setUp() {
+        HibernateUtil.useProfile("h2");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    // a database of its own, outside the session factory of the 'h2' profile
+    static Connection open() throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:mem:migratortest", "sa", "");
+    }
+
+    @Test
+    // Scripts are applied once, a second run finds the schema up to date
+    public void testMigrateIsIdempotent() throws SQLException {
+        try (Connection connection = open()) {
+            assertThat(SchemaMigrator.currentVersion(connection)).isZero();
+            assertThat(SchemaMigrator.migrate(connection)).isEqualTo(SchemaMigrator.MIGRATIONS.length);
+            assertThat(SchemaMigrator.migrate(connection)).isZero();
+            assertThat(SchemaMigrator.currentVersion(connection)).isEqualTo(SchemaMigrator.latestVersion());
+
+            SchemaMigrator.drop(connection);
+            assertThat(SchemaMigrator.currentVersion(connection)).isZero();
+        }
+    }
+
+    @Test
+    // The join table is keyed by (student_email, course_id) and indexed by course_id
+    public void testJoinTableKeys() throws SQLException {
+        try (Connection connection = open()) {
+            SchemaMigrator.migrate(connection);
+            Map<Short, String> primaryKey = new TreeMap<>();
+            try (ResultSet rs = connection.getMetaData().getPrimaryKeys(null, null, "STUDENT_COURSE")) {
+                while (rs.next()) {
+                    primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+                }
+            }
+            assertThat(primaryKey.values()).containsExactly("STUDENT_EMAIL", "COURSE_ID");
+
+            List<String> indexes = new ArrayList<>();
+            try (ResultSet rs = connection.getMetaData().getIndexInfo(null, null, "STUDENT_COURSE", false, false)) {
+                while (rs.next()) {
+                    if ("COURSE_ID".equals(rs.getString("COLUMN_NAME")) && rs.getShort("ORDINAL_POSITION") == 1) {
+                        indexes.add(rs.getString("INDEX_NAME"));
+                    }
+                }
+            }
+            assertThat(indexes).contains("IDX_STUDENT_COURSE_COURSE");
+
+            // two sections of a course may share the name and the instructor
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("INSERT INTO course (name, instructor) VALUES ('Java', 'Roger Boaitey')");
+                statement.execute("INSERT INTO course (name, instructor) VALUES ('Java', 'Roger Boaitey')");
+                try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM course WHERE name = 'Java'")) {
+                    rs.next();
+                    assertThat(rs.getInt(1)).isEqualTo(2);
+                }
+            }
+            SchemaMigrator.drop(connection);
+        }
+    }
+
+    // the tables hibernate.hbm2ddl.auto=update made from the first mapping, with three registrations
+    static void createHbm2ddlSchema(Connection connection, boolean seatColumns) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE student (email VARCHAR(255) NOT NULL, name VARCHAR(255), " +
+                    "password VARCHAR(255), PRIMARY KEY (email))");
+            statement.execute("CREATE TABLE course (id INTEGER NOT NULL AUTO_INCREMENT, instructor VARCHAR(255), " +
+                    "name VARCHAR(255), " + (seatColumns ? "capacity INTEGER NOT NULL, enrolled INTEGER NOT NULL, " : "") +
+                    "PRIMARY KEY (id))");
+            statement.execute("CREATE TABLE student_course (student_email VARCHAR(255) NOT NULL, course_id INTEGER NOT NULL, " +
+                    "PRIMARY KEY (student_email, course_id))");
+            statement.execute("ALTER TABLE student_course ADD CONSTRAINT FK1 FOREIGN KEY (course_id) REFERENCES course (id)");
+            statement.execute("ALTER TABLE student_course ADD CONSTRAINT FK2 FOREIGN KEY (student_email) REFERENCES student (email)");
+            statement.execute("INSERT INTO student (email, name, password) VALUES ('a@example.com', 'a', 'password'), " +
+                    "('b@example.com', 'b', 'password')");
+            statement.execute(seatColumns
+                    ? "INSERT INTO course (name, instructor, capacity, enrolled) VALUES ('Java', 'Roger Boaitey', 30, 0), ('SQL', 'Ezra Williams', 30, 0)"
+                    : "INSERT INTO course (name, instructor) VALUES ('Java', 'Roger Boaitey'), ('SQL', 'Ezra Williams')");
+            statement.execute("INSERT INTO student_course (student_email, course_id) VALUES ('a@example.com', 1), " +
+                    "('b@example.com', 1), ('a@example.com', 2)");
+        }
+    }
+
+    static Map<Integer, int[]> seats(Connection connection) throws SQLException {
+        Map<Integer, int[]> seats = new TreeMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, capacity, enrolled FROM course")) {
+            while (rs.next()) {
+                seats.put(rs.getInt(1), new int[]{rs.getInt(2), rs.getInt(3)});
+            }
+        }
+        return seats;
+    }
+
+    @Test
+    // A schema made by hbm2ddl is adopted at version 1, its courses get seats and their counts are filled in
+    public void testAdoptHbm2ddlSchema() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:adopttest", "sa", "")) {
+            createHbm2ddlSchema(connection, false);
+            assertThat(SchemaMigrator.migrate(connection)).isEqualTo(SchemaMigrator.MIGRATIONS.length - 1);
+            assertThat(SchemaMigrator.currentVersion(connection)).isEqualTo(SchemaMigrator.latestVersion());
+            assertThat(seats(connection)).containsOnlyKeys(1, 2);
+            assertThat(seats(connection).get(1)).containsExactly(Course.UNLIMITED_CAPACITY, 2);
+            assertThat(seats(connection).get(2)).containsExactly(Course.UNLIMITED_CAPACITY, 1);
+            assertThat(SchemaMigrator.migrate(connection)).isZero();
+            SchemaMigrator.drop(connection);
+        }
+    }
+
+    @Test
+    // When hbm2ddl already added the seat columns, version 2 is adopted too and only the counts are filled in
+    public void testAdoptHbm2ddlSchemaWithSeats() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:adoptseatstest", "sa", "")) {
+            createHbm2ddlSchema(connection, true);
+            assertThat(SchemaMigrator.migrate(connection)).isEqualTo(SchemaMigrator.MIGRATIONS.length - 2);
+            assertThat(seats(connection).get(1)).containsExactly(30, 2);
+            assertThat(seats(connection).get(2)).containsExactly(30, 1);
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT version, script FROM schema_version ORDER BY version")) {
+                rs.next();
+                assertThat(rs.getString(2)).endsWith("(adopted)");
+                rs.next();
+                assertThat(rs.getString(2)).isEqualTo("db/V2__course_seats.sql (adopted)");
+                rs.next();
+                assertThat(rs.getString(2)).isEqualTo("db/V3__enrolled_backfill.sql");
+            }
+            SchemaMigrator.drop(connection);
+        }
+    }
+
+    @Test
+    // The profile's session factory starts on the migrated schema and validates the mapping against it
+    public void testSessionFactoryStartsOnMigratedSchema() {
+        new CourseService().createCourse(new Course("Schema Design", "Edgar Codd"));
+        Integer version = HibernateUtil.getSessionFactory().fromSession(session ->
+                ((Number) session.createNativeQuery("SELECT MAX(version) FROM schema_version").getSingleResult()).intValue());
+        assertThat(version).isEqualTo(SchemaMigrator.latestVersion());
+        assertThat(new CourseService().getAllCourses()).extracting(Course::getName).contains("Schema Design");
+    }
+}
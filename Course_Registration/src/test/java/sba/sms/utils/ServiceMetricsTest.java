@@ -0,0 +1,80 @@
+package sba.sms.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class ServiceMetricsTest {
+
+    @AfterEach
+    public void restore() {
+        ServiceMetrics.setEnabled(true);
+    }
+
+    @Test
+    // Every bucket covers the durations between the previous bucket's bound and its own
+    public void testBucketBounds() {
+        assertThat(ServiceMetrics.bucketOf(0)).isZero();
+        assertThat(ServiceMetrics.bucketOf(7)).isEqualTo(7);
+        for (int bucket = 1; bucket < ServiceMetrics.BUCKETS - 1; bucket++) {
+            long upper = ServiceMetrics.upperBoundOf(bucket);
+            assertThat(ServiceMetrics.bucketOf(upper)).isEqualTo(bucket);
+            assertThat(ServiceMetrics.bucketOf(upper + 1)).isEqualTo(bucket + 1);
+        }
+        assertThat(ServiceMetrics.bucketOf(Long.MAX_VALUE)).isEqualTo(ServiceMetrics.BUCKETS - 1);
+    }
+
+    @Test
+    // Percentiles are read from the histogram, within one sub-bucket of the true value
+    public void testPercentiles() {
+        long[] buckets = new long[ServiceMetrics.BUCKETS];
+        for (long micros = 1; micros <= 1_000; micros++) {
+            buckets[ServiceMetrics.bucketOf(micros)]++;
+        }
+        ServiceMetrics.Snapshot snapshot = new ServiceMetrics.Snapshot("test", 1_000, 0,
+                500_500_000L, 1_000_000L, buckets, 0, 0, 0, 0);
+        assertThat(snapshot.getPercentileMicros(50)).isBetween(500L, 500L + 500 / 8);
+        assertThat(snapshot.getPercentileMicros(99)).isBetween(990L, 1_000L);
+        assertThat(snapshot.getPercentileMicros(100)).isEqualTo(1_000);
+        assertThat(snapshot.getMeanMicros()).isEqualTo(500.5);
+    }
+
+    @Test
+    // Calls and errors are counted while recording is on and ignored while it is off
+    public void testSwitch() {
+        ServiceMetrics.Operation operation = ServiceMetrics.operation("ServiceMetricsTest.testSwitch");
+        operation.success(operation.begin());
+        operation.failure(operation.begin(), new IllegalStateException());
+        ServiceMetrics.setEnabled(false);
+        long started = operation.begin();
+        ServiceMetrics.setEnabled(true);
+        operation.success(started);
+
+        ServiceMetrics.Snapshot snapshot = operation.snapshot();
+        assertThat(snapshot.getCalls()).isEqualTo(2);
+        assertThat(snapshot.getErrors()).isEqualTo(1);
+        assertThat(ServiceMetrics.dump()).contains("ServiceMetricsTest.testSwitch");
+    }
+
+    @Test
+    // Recording a call does not allocate once the thread's counters exist
+    public void testRecordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ServiceMetrics.Operation operation = ServiceMetrics.operation("ServiceMetricsTest.testRecordingDoesNotAllocate");
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < 10_000; i++) {
+            operation.success(operation.begin(), i);
+        }
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 100_000; i++) {
+            operation.success(operation.begin(), i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        assertThat(allocated).isLessThan(1_024);
+        assertThat(operation.snapshot().getCalls()).isEqualTo(110_000);
+    }
+}
@@ -0,0 +1,46 @@
+package sba.sms.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+class ShardRingTest {
+    static final int KEYS = 20_000;
+
+    static String key(int k) {
+        return "student" + k + "@example.com";
+    }
+
+    @Test
+    // Keys spread evenly over the shards, and the same key always lands on the same shard
+    public void testBalance() {
+        ShardRing ring = new ShardRing(4);
+        int[] counts = new int[4];
+        for (int k = 0; k < KEYS; k++) {
+            counts[ring.shardOf(key(k))]++;
+        }
+        for (int count : counts) {
+            assertThat(count).isBetween(KEYS / 4 * 3 / 4, KEYS / 4 * 5 / 4);
+        }
+        assertThat(new ShardRing(4).shardOf(key(42))).isEqualTo(ring.shardOf(key(42)));
+        assertThat(new ShardRing(1).shardOf(key(42))).isZero();
+    }
+
+    @Test
+    // A new shard takes about 1/(n+1) of the keys and no key moves between the old shards
+    public void testAddingAShardMovesFewKeys() {
+        ShardRing four = new ShardRing(4);
+        ShardRing five = new ShardRing(5);
+        int moved = 0;
+        for (int k = 0; k < KEYS; k++) {
+            int before = four.shardOf(key(k));
+            int after = five.shardOf(key(k));
+            if (before != after) {
+                assertThat(after).isEqualTo(4);
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(KEYS / 5 * 3 / 4, KEYS / 5 * 5 / 4);
+    }
+}